@@ -8,7 +8,8 @@ CREATE TABLE batch_records (
     value           NUMBER(20,4),
     category        VARCHAR2(100),
     event_ts        TIMESTAMP,
-    record_hash     VARCHAR2(64)    NOT NULL,
+    record_hash     VARCHAR2(64),                -- hex hash (batch.job.hash-mode=sha256-hex)
+    record_hash_bin RAW(32),                     -- binary hash (sha256 = 32 bytes, murmur3-128 = 16 bytes)
     job_id          VARCHAR2(100),
     partition_idx   NUMBER(4),
     created_at      TIMESTAMP       DEFAULT SYSDATE NOT NULL,
@@ -16,7 +17,11 @@ CREATE TABLE batch_records (
 ) NOLOGGING TABLESPACE batch_data;
 
 ALTER TABLE batch_records ADD CONSTRAINT uq_batch_record_hash UNIQUE (record_hash);
-CREATE INDEX idx_batch_job ON batch_records (job_id, partition_idx) NOLOGGING;
+-- Binary-hash modes: RAW(16/32) key instead of a 64-byte VARCHAR2 roughly halves the unique index
+ALTER TABLE batch_records ADD CONSTRAINT uq_batch_record_hash_bin UNIQUE (record_hash_bin);
+-- Same as schema.sql: /api/records keyset pages by job + partition, and by job only, are ordered range scans
+CREATE INDEX idx_batch_records_job_id ON batch_records (job_id, partition_idx, id) NOLOGGING;
+CREATE INDEX idx_batch_records_job_page ON batch_records (job_id, id) NOLOGGING;
 
 -- CACHE 1000: critical for parallel insert performance
 CREATE SEQUENCE batch_seq START WITH 1 INCREMENT BY 1 CACHE 1000 NOCYCLE;
@@ -30,5 +35,36 @@ CREATE TABLE job_file_log (
     error_message    VARCHAR2(4000)
 );
 
+-- Per job execution x category aggregates, maintained by CategoryAggregator during the load
+CREATE TABLE batch_category_summary (
+    job_id        VARCHAR2(100)  NOT NULL,
+    category      VARCHAR2(100)  NOT NULL,
+    file_id       VARCHAR2(255),
+    record_count  NUMBER(19)     NOT NULL,
+    value_sum     NUMBER(38,4),
+    value_min     NUMBER(20,4),
+    value_max     NUMBER(20,4),
+    updated_at    TIMESTAMP      DEFAULT SYSTIMESTAMP,
+    CONSTRAINT pk_batch_category_summary PRIMARY KEY (job_id, category)
+);
+
+-- GET /api/jobs/{fileId}/categories
+CREATE INDEX idx_batch_category_summary_file ON batch_category_summary (file_id);
+
+-- Work-unit queue for batch.job.partition-mode=units (rows dropped when the job instance COMPLETES)
+CREATE TABLE batch_work_unit (
+    job_instance_id  NUMBER(19)     NOT NULL,
+    unit_idx         NUMBER(10)     NOT NULL,
+    start_byte       NUMBER(19)     NOT NULL,
+    end_byte         NUMBER(19)     NOT NULL,
+    status           VARCHAR2(10)   DEFAULT 'PENDING' NOT NULL,
+    worker           NUMBER(10),
+    updated_at       TIMESTAMP      DEFAULT SYSTIMESTAMP,
+    CONSTRAINT pk_batch_work_unit PRIMARY KEY (job_instance_id, unit_idx)
+);
+
+-- claimNext: lowest PENDING unit of an instance
+CREATE INDEX idx_batch_work_unit_status ON batch_work_unit (job_instance_id, status, unit_idx);
+
 -- Run Spring Batch Oracle schema (from spring-batch-core jar):
 -- schema-oracle.sql from spring-batch-core-5.x.x.jar!/org/springframework/batch/core/
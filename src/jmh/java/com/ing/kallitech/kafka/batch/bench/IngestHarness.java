@@ -0,0 +1,207 @@
+package com.ing.kallitech.kafka.batch.bench;
+
+import com.ing.kallitech.kafka.batch.SpringBootKafkaBatchApplication;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process load test of the whole partition → read → process → write path.
+ *
+ * Generates a synthetic file (or takes --file), boots the application against
+ * in-memory H2 with Kafka listeners stopped, launches csvImportJob directly
+ * and reports:
+ *  - rows/s over the job's wall time
+ *  - per-partition skew (max / mean of worker step duration and read count)
+ *  - p50 / p99 chunk write time (batch.write.duration percentiles)
+ *  - chunk time split into read / process / write (batch.chunk.* timers) and
+ *    the worst partition's p99 for each
+ *  - peak heap (sum of per-pool peaks, so an upper bound)
+ *
+ * Usage: IngestHarness [--rows N] [--duplicates R] [--bad R] [--categories C]
+ *                      [--file existing.csv] [--runs K] [--set key=value]...
+ * --set overrides any application property, e.g. --set batch.job.grid-size=8.
+ * --runs K re-imports the same file K times (run 2+ exercises the dedup path).
+ */
+public final class IngestHarness {
+
+    private IngestHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        long rows = 1_000_000;
+        double duplicates = 0;
+        double bad = 0.0001;
+        int categories = 5;
+        int runs = 1;
+        Path file = null;
+        // LOCK_TIMEOUT: H2's 1s default raises SQLTimeoutException when two partitions
+        // race on the same duplicate hash, and Hikari evicts the connection mid-transaction
+        // on any SQLTimeoutException. Oracle would just wait on the row lock.
+        List<String> properties = new ArrayList<>(List.of(
+            "spring.datasource.url=jdbc:h2:mem:harness;DB_CLOSE_DELAY=-1;MODE=Oracle;LOCK_TIMEOUT=60000",
+            "spring.batch.job.enabled=false",
+            "spring.kafka.listener.auto-startup=false",
+            "spring.jpa.hibernate.ddl-auto=none",
+            "batch.job.dedup-filter.snapshot-path=",
+            "management.metrics.distribution.percentiles.batch.write.duration=0.5,0.99",
+            "logging.level.com.ing.kallitech=WARN"));
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--rows" -> rows = Long.parseLong(args[i + 1]);
+                case "--duplicates" -> duplicates = Double.parseDouble(args[i + 1]);
+                case "--bad" -> bad = Double.parseDouble(args[i + 1]);
+                case "--categories" -> categories = Integer.parseInt(args[i + 1]);
+                case "--runs" -> runs = Integer.parseInt(args[i + 1]);
+                case "--file" -> file = Paths.get(args[i + 1]);
+                case "--set" -> properties.add(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        if (file == null) {
+            file = Files.createTempFile("ingest-harness", ".csv");
+            file.toFile().deleteOnExit();
+            var stats = new SyntheticCsvGenerator(
+                new SyntheticCsvGenerator.Options(rows, duplicates, bad, categories, 42)).generate(file);
+            System.out.printf("Input: %,d rows (%,d unique, %,d duplicates, %,d bad), %,d bytes%n",
+                stats.rows(), stats.unique(), stats.duplicates(), stats.bad(), stats.bytes());
+        }
+
+        // As command-line args: builder .properties() are defaults and lose to application.yaml
+        String[] overrides = properties.stream().map(p -> "--" + p).toArray(String[]::new);
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(SpringBootKafkaBatchApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(overrides)) {
+            JobLauncher launcher = ctx.getBean(JobLauncher.class);
+            Job job = ctx.getBean("csvImportJob", Job.class);
+            MeterRegistry registry = ctx.getBean(MeterRegistry.class);
+
+            for (int run = 1; run <= runs; run++) {
+                resetPeakHeap();
+                JobExecution execution = launcher.run(job, new JobParametersBuilder()
+                    .addString("fileId", "harness-" + run + "-" + System.nanoTime())
+                    .addString("filePath", file.toString())
+                    .addLong("launchTs", System.currentTimeMillis())
+                    .toJobParameters());
+                report(run, execution, registry);
+            }
+        }
+    }
+
+    private static void report(int run, JobExecution execution, MeterRegistry registry) {
+        Duration wall = Duration.between(execution.getStartTime(), execution.getEndTime());
+        List<StepExecution> partitions = execution.getStepExecutions().stream()
+            .filter(s -> s.getStepName().contains(":partition"))
+            .toList();
+
+        long read = partitions.stream().mapToLong(StepExecution::getReadCount).sum();
+        long written = partitions.stream().mapToLong(StepExecution::getWriteCount).sum();
+        long filtered = partitions.stream().mapToLong(StepExecution::getFilterCount).sum();
+        long skipped = partitions.stream().mapToLong(StepExecution::getSkipCount).sum();
+
+        LongSummaryStatistics millis = partitions.stream()
+            .mapToLong(s -> Duration.between(s.getStartTime(), s.getEndTime()).toMillis())
+            .summaryStatistics();
+        LongSummaryStatistics reads = partitions.stream()
+            .mapToLong(StepExecution::getReadCount)
+            .summaryStatistics();
+
+        System.out.printf("%n== Run %d: %s in %,d ms ==%n", run, execution.getStatus(), wall.toMillis());
+        System.out.printf("rows       read=%,d written=%,d filtered=%,d skipped=%,d%n", read, written, filtered, skipped);
+        System.out.printf("throughput %,.0f rows/s%n", read / Math.max(0.001, wall.toMillis() / 1000.0));
+        System.out.printf("partitions %d  duration min/mean/max = %,d / %,.0f / %,d ms  skew=%.2f%n",
+            partitions.size(), millis.getMin(), millis.getAverage(), millis.getMax(),
+            millis.getMax() / Math.max(1, millis.getAverage()));
+        System.out.printf("           rows     min/mean/max = %,d / %,.0f / %,d  skew=%.2f%n",
+            reads.getMin(), reads.getAverage(), reads.getMax(), reads.getMax() / Math.max(1, reads.getAverage()));
+
+        Timer write = registry.find("batch.write.duration").timer();
+        if (write != null) {
+            StringBuilder pct = new StringBuilder();
+            for (ValueAtPercentile p : write.takeSnapshot().percentileValues()) {
+                pct.append(String.format(" p%.0f=%.1fms", p.percentile() * 100, p.value(TimeUnit.MILLISECONDS)));
+            }
+            System.out.printf("chunk write (cumulative) count=%,d mean=%.1fms%s%n",
+                write.count(), write.mean(TimeUnit.MILLISECONDS), pct);
+        }
+        reportChunkPhases(registry);
+        System.out.printf("peak heap  %,d MB%n", peakHeapBytes() >> 20);
+        execution.getAllFailureExceptions().forEach(t -> System.out.println("failure: " + t));
+    }
+
+    private static void reportChunkPhases(MeterRegistry registry) {
+        Collection<Timer> chunks = registry.find("batch.chunk.duration").timers();
+        double chunkMillis = totalMillis(chunks);
+        if (chunks.isEmpty() || chunkMillis == 0) {
+            return;
+        }
+        StringBuilder share = new StringBuilder();
+        StringBuilder p99 = new StringBuilder(String.format(" chunk=%.1fms", worstP99(chunks)));
+        for (String phase : List.of("read", "process", "write")) {
+            Collection<Timer> timers = registry.find("batch.chunk.phase.duration").tag("phase", phase).timers();
+            share.append(String.format(" %s=%.0f%%", phase, 100 * totalMillis(timers) / chunkMillis));
+            p99.append(String.format(" %s=%.1fms", phase, worstP99(timers)));
+        }
+        System.out.printf("chunk time (cumulative)%s of %,.0f ms over %,d chunks%n",
+            share, chunkMillis, chunks.stream().mapToLong(Timer::count).sum());
+        System.out.printf("           worst-partition p99%s%n", p99);
+    }
+
+    private static double totalMillis(Collection<Timer> timers) {
+        return timers.stream().mapToDouble(t -> t.totalTime(TimeUnit.MILLISECONDS)).sum();
+    }
+
+    private static double worstP99(Collection<Timer> timers) {
+        double worst = 0;
+        for (Timer t : timers) {
+            for (ValueAtPercentile p : t.takeSnapshot().percentileValues()) {
+                if (p.percentile() == 0.99) {
+                    worst = Math.max(worst, p.value(TimeUnit.MILLISECONDS));
+                }
+            }
+        }
+        return worst;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,78 @@
+package com.ing.kallitech.kafka.batch.bench;
+
+import com.ing.kallitech.kafka.batch.dedup.RecordHashFilter;
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import com.ing.kallitech.kafka.batch.service.CsvItemProcessor;
+import com.ing.kallitech.kafka.batch.service.RecordHasher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CsvItemProcessor.process per record: validation, BigDecimal rescale (wide
+ * shape has 8 decimals) and the record hash, per hash mode. The Bloom filter
+ * is disabled so no database is involved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessorBenchmark {
+
+    private static final int POOL = 1024;
+
+    @Param({"sha256-hex", "sha256", "murmur3-128"})
+    public String hashMode;
+
+    @Param({"narrow", "wide"})
+    public RecordShape shape;
+
+    private CsvItemProcessor processor;
+    private RecordDTO[] records;
+    private BigDecimal[] values;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RecordHasher hasher = new RecordHasher(hashMode);
+        RecordHashFilter noFilter = new RecordHashFilter(null, new SimpleMeterRegistry(), hasher, false, 1, 0.01, "");
+        ExecutionContext ctx = new ExecutionContext();
+        ctx.putInt("partitionIndex", 0);
+        processor = new CsvItemProcessor(MetaDataInstanceFactory.createStepExecution(ctx), hasher, noFilter);
+
+        records = new RecordDTO[POOL];
+        values = new BigDecimal[POOL];
+        for (int i = 0; i < POOL; i++) {
+            records[i] = shape.record(i);
+            values[i] = records[i].getValueRec();
+        }
+    }
+
+    @Benchmark
+    public RecordDTO process() throws Exception {
+        int i = next++ & (POOL - 1);
+        RecordDTO r = records[i];
+        // Undo the previous pass so every call rescales and hashes
+        r.setRecordHash(null);
+        r.setRecordHashBytes(null);
+        r.setValueRec(values[i]);
+        return processor.process(r);
+    }
+}
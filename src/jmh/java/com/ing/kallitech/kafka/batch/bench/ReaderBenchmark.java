@@ -0,0 +1,87 @@
+package com.ing.kallitech.kafka.batch.bench;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import com.ing.kallitech.kafka.batch.service.CsvItemReader;
+import com.ing.kallitech.kafka.batch.service.RecordHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row mapping throughput of CsvItemReader over one byte-range partition
+ * (the whole file), per engine and row shape. Score is rows/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmark {
+
+    static final int ROWS = 100_000;
+
+    @Param({"mmap", "flatfile"})
+    public String engine;
+
+    @Param({"narrow", "wide"})
+    public RecordShape shape;
+
+    private final RecordHasher hasher = new RecordHasher("sha256-hex");
+
+    private Path file;
+    private StepExecution stepExecution;
+
+    @Setup(Level.Trial)
+    public void writeFile() throws Exception {
+        file = shape.writeCsv(Files.createTempFile("reader-bench-" + shape, ".csv"), ROWS);
+        long dataStart = RecordShape.HEADER.length() + 1;
+
+        ExecutionContext ctx = new ExecutionContext();
+        ctx.putString("filePath", file.toString());
+        ctx.putLong("startByte", dataStart);
+        ctx.putLong("endByte", Files.size(file));
+        ctx.putInt("partitionIndex", 0);
+        ctx.putString("delimiter", ",");
+        stepExecution = MetaDataInstanceFactory.createStepExecution(ctx);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void readPartition(Blackhole bh) throws Exception {
+        CsvItemReader reader = new CsvItemReader(stepExecution, engine, hasher, false, 0);
+        reader.open(new ExecutionContext());
+        try {
+            RecordDTO record;
+            while ((record = reader.read()) != null) {
+                bh.consume(record);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+}
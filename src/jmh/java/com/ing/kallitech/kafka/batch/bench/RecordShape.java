@@ -0,0 +1,74 @@
+package com.ing.kallitech.kafka.batch.bench;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Row shapes shared by the benchmarks.
+ *
+ * narrow — short ids and names, 2-decimal values (typical feed)
+ * wide   — long quoted names containing delimiters, 8-decimal values that
+ *          need rescaling, non-ASCII text
+ */
+public enum RecordShape {
+
+    narrow {
+        @Override
+        String line(int i) {
+            return "EXT-" + i + ",Name " + i + "," + (i % 10_000) + ".25,CAT" + (i % 5) + ",2024-01-01T10:00:00Z";
+        }
+    },
+    wide {
+        @Override
+        String line(int i) {
+            return "EXT-WIDE-000000000000" + i + ",\"Müller, Jürgen \"\"J\"\" " + i + " – Abteilung Zahlungsverkehr\","
+                + i + ".12345678,CATEGORY-" + (i % 250) + ",2024-01-01T10:00:00." + millis(i) + "Z";
+        }
+    };
+
+    public static final String HEADER = "externalId,name,value,category,eventTs";
+
+    abstract String line(int i);
+
+    private static String millis(int i) {
+        return String.format("%03d", i % 1000);
+    }
+
+    public Path writeCsv(Path file, int rows) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write(HEADER);
+            out.write('\n');
+            for (int i = 0; i < rows; i++) {
+                out.write(line(i));
+                out.write('\n');
+            }
+        }
+        return file;
+    }
+
+    /** The parsed form of {@link #line(int)}, as the reader would hand it to the processor. */
+    public RecordDTO record(int i) {
+        RecordDTO r = new RecordDTO();
+        if (this == narrow) {
+            r.setExternalId("EXT-" + i);
+            r.setName("Name " + i);
+            r.setValueRec(new BigDecimal((i % 10_000) + ".25"));
+            r.setCategory("CAT" + (i % 5));
+            r.setEventTs(Timestamp.from(Instant.parse("2024-01-01T10:00:00Z")));
+        } else {
+            r.setExternalId("EXT-WIDE-000000000000" + i);
+            r.setName("Müller, Jürgen \"J\" " + i + " – Abteilung Zahlungsverkehr");
+            r.setValueRec(new BigDecimal(i + ".12345678"));
+            r.setCategory("CATEGORY-" + (i % 250));
+            r.setEventTs(Timestamp.from(Instant.parse("2024-01-01T10:00:00." + millis(i) + "Z")));
+        }
+        return r;
+    }
+}
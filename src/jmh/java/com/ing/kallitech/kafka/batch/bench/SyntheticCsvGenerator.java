@@ -0,0 +1,157 @@
+package com.ing.kallitech.kafka.batch.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+/**
+ * Writes CSV input in the column order CsvItemReader expects
+ * (externalId, name, value, category, eventTs), fast enough that generating
+ * 10M rows takes seconds rather than longer than loading them.
+ *
+ * Knobs:
+ *  - rows             data rows to write (excluding the header)
+ *  - duplicateRatio   share of rows that repeat an earlier row verbatim, so the
+ *                     dedup path (Bloom filter / MERGE) is exercised
+ *  - badRowRatio      share of rows the job must skip: half have a blank name
+ *                     (RecordValidationException), half an unparseable value
+ *                     (FlatFileParseException)
+ *  - categories       category cardinality
+ *  - seed             same seed ⇒ byte-identical file
+ *
+ * Unique row n is a pure function of n, so a duplicate is simply row(j) for a
+ * random j among the last DUPLICATE_WINDOW unique rows and needs no memory of
+ * them. Keeping duplicates near their original mirrors re-sent feed rows and
+ * keeps both copies in the same partition; duplicates spread across partitions
+ * make concurrent chunks lock each other's hashes, which in H2 ends in lock
+ * timeouts rather than measuring the dedup path.
+ *
+ * Usage: SyntheticCsvGenerator --rows 10000000 --out /tmp/records.csv
+ *        [--duplicates 0.1] [--bad 0.001] [--categories 5] [--seed 42]
+ */
+public final class SyntheticCsvGenerator {
+
+    public static final String HEADER = "externalId,name,value,category,eventTs";
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long DUPLICATE_WINDOW = 1_000;
+
+    public record Options(long rows, double duplicateRatio, double badRowRatio, int categories, long seed) {
+
+        public Options {
+            if (rows < 0 || categories < 1) {
+                throw new IllegalArgumentException("rows must be >= 0 and categories >= 1");
+            }
+            if (duplicateRatio < 0 || badRowRatio < 0 || duplicateRatio + badRowRatio > 1) {
+                throw new IllegalArgumentException("duplicate + bad ratios must be within [0, 1]");
+            }
+        }
+
+        public static Options of(long rows) {
+            return new Options(rows, 0, 0, 5, 42);
+        }
+    }
+
+    /** What was written: unique = rows the job should load, bad = rows it should skip. */
+    public record Stats(long rows, long unique, long duplicates, long bad, long bytes) {}
+
+    private final Options options;
+    private final StringBuilder line = new StringBuilder(128);
+
+    public SyntheticCsvGenerator(Options options) {
+        this.options = options;
+    }
+
+    public Stats generate(Path out) throws IOException {
+        SplittableRandom random = new SplittableRandom(options.seed());
+        long unique = 0;
+        long duplicates = 0;
+        long bad = 0;
+        try (BufferedWriter writer = new BufferedWriter(
+                Files.newBufferedWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            writer.write(HEADER);
+            writer.write('\n');
+            for (long i = 0; i < options.rows(); i++) {
+                double roll = random.nextDouble();
+                line.setLength(0);
+                if (roll < options.badRowRatio()) {
+                    appendBadRow(i, (i & 1) == 0);
+                    bad++;
+                } else if (roll < options.badRowRatio() + options.duplicateRatio() && unique > 0) {
+                    appendRow(random.nextLong(Math.max(0, unique - DUPLICATE_WINDOW), unique));
+                    duplicates++;
+                } else {
+                    appendRow(unique++);
+                }
+                line.append('\n');
+                writer.append(line);
+            }
+        }
+        return new Stats(options.rows(), unique, duplicates, bad, Files.size(out));
+    }
+
+    private void appendRow(long i) {
+        line.append("EXT-").append(i)
+            .append(",Name ").append(i)
+            .append(',').append(i * 314 / 100).append('.');
+        appendTwoDigits((int) (i * 314 % 100));
+        line.append(",CAT").append(i % options.categories()).append(',');
+        appendTimestamp(i);
+    }
+
+    private void appendBadRow(long i, boolean blankName) {
+        // The EXT-BAD- prefix never collides with good rows (or with each other)
+        line.append("EXT-BAD-").append(i);
+        if (blankName) {
+            line.append(",,1.00,CAT0,");
+        } else {
+            line.append(",Bad ").append(i).append(",not-a-number,CAT0,");
+        }
+        appendTimestamp(i);
+    }
+
+    /** 2024-01-01T00:00:00Z plus (i mod 1 day) seconds, without java.time formatting. */
+    private void appendTimestamp(long i) {
+        int secondOfDay = (int) (i % 86_400);
+        line.append("2024-01-01T");
+        appendTwoDigits(secondOfDay / 3600);
+        line.append(':');
+        appendTwoDigits(secondOfDay / 60 % 60);
+        line.append(':');
+        appendTwoDigits(secondOfDay % 60);
+        line.append('Z');
+    }
+
+    private void appendTwoDigits(int v) {
+        line.append((char) ('0' + v / 10)).append((char) ('0' + v % 10));
+    }
+
+    public static void main(String[] args) throws IOException {
+        long rows = 100_000;
+        Path out = Paths.get("/tmp/test.csv");
+        double duplicates = 0;
+        double bad = 0;
+        int categories = 5;
+        long seed = 42;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--rows" -> rows = Long.parseLong(args[i + 1]);
+                case "--out" -> out = Paths.get(args[i + 1]);
+                case "--duplicates" -> duplicates = Double.parseDouble(args[i + 1]);
+                case "--bad" -> bad = Double.parseDouble(args[i + 1]);
+                case "--categories" -> categories = Integer.parseInt(args[i + 1]);
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        long start = System.nanoTime();
+        Stats stats = new SyntheticCsvGenerator(new Options(rows, duplicates, bad, categories, seed)).generate(out);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %,d rows (%,d unique, %,d duplicates, %,d bad) -> %s (%,d bytes) in %.1fs%n",
+            stats.rows(), stats.unique(), stats.duplicates(), stats.bad(), out, stats.bytes(), seconds);
+    }
+}
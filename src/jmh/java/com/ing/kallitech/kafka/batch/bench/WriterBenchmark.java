@@ -0,0 +1,100 @@
+package com.ing.kallitech.kafka.batch.bench;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import com.ing.kallitech.kafka.batch.service.OracleJdbcBatchWriter;
+import com.ing.kallitech.kafka.batch.service.RecordHasher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.Chunk;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OracleJdbcBatchWriter.write against in-memory H2 (MODE=Oracle, real
+ * schema.sql) per chunk size, write mode and hash mode. Score is time per
+ * chunk; every chunk holds fresh rows unless duplicateRatio > 0, in which case
+ * that share of each chunk was already written by the previous one.
+ *
+ * H2 has no network round-trip, so this isolates the JDBC/statement cost; the
+ * absolute numbers are far below Oracle's, the relative ones are what matter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriterBenchmark {
+
+    @Param({"100", "1000"})
+    public int chunkSize;
+
+    @Param({"insert", "merge"})
+    public String writeMode;
+
+    @Param({"sha256-hex", "murmur3-128"})
+    public String hashMode;
+
+    @Param({"0.0", "0.5"})
+    public double duplicateRatio;
+
+    private JdbcTemplate jdbcTemplate;
+    private RecordHasher hasher;
+    private OracleJdbcBatchWriter writer;
+    private int nextId;
+
+    @Setup(Level.Trial)
+    public void createDatabase() {
+        // One pooled-like connection: measure statements, not connection setup
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=Oracle", "sa", "", true);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        hasher = new RecordHasher(hashMode);
+        writer = new OracleJdbcBatchWriter(jdbcTemplate, new SimpleMeterRegistry(), hasher, writeMode);
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE TABLE batch_records");
+        nextId = 0;
+    }
+
+    @Benchmark
+    public void writeChunk() {
+        writer.write(nextChunk());
+    }
+
+    private Chunk<RecordDTO> nextChunk() {
+        int overlap = (int) (chunkSize * duplicateRatio);
+        int from = Math.max(0, nextId - overlap);
+        List<RecordDTO> items = new ArrayList<>(chunkSize);
+        for (int i = from; i < from + chunkSize; i++) {
+            RecordDTO r = RecordShape.narrow.record(i);
+            r.setJobId("1");
+            r.setPartitionIndex(0);
+            hasher.hash(r);
+            items.add(r);
+        }
+        nextId = from + chunkSize;
+        return new Chunk<>(items);
+    }
+}
@@ -0,0 +1,133 @@
+package com.ing.kallitech.kafka.batch.admission;
+
+import com.ing.kallitech.kafka.batch.model.KafkaBatchMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * NEW: Size-weighted admission of jobs to this pod (replaces the Semaphore(max-concurrent-jobs)).
+ *
+ * Each trigger gets a cost in capacity units, one unit per
+ * batch.job.admission.bytes-per-unit of input (file size on the PVC, else
+ * recordCount × bytes-per-record), at least 1 and at most {@code capacity - reserve}.
+ * A unit is roughly one busy partition thread and its DB connection.
+ *
+ * A job is admitted while the units in use plus its cost fit the pod's capacity:
+ *  - small jobs (cost ≤ small-job-max-cost) may use the whole capacity
+ *  - larger jobs must leave reserved-for-small units free, so a 5-row file still
+ *    starts while a 200M-row file holds most of the budget
+ *  - max-concurrent-jobs still caps the job count (one batch-job- thread each)
+ *
+ * The cost travels with the job as the admissionCost job parameter, so
+ * JobCompletionListener releases exactly what was taken. Jobs launched without it
+ * (harness, manual runs) were never admitted here and release nothing.
+ *
+ * Metrics: batch.admission.capacity / used / jobs (gauges),
+ * batch.admission.admitted and batch.admission.rejected {size=small|large}.
+ */
+@Component
+public class JobAdmissionController {
+
+    public static final String COST_PARAMETER = "admissionCost";
+
+    private final int capacity;
+    private final int reserve;
+    private final int smallJobMaxCost;
+    private final int maxJobs;
+    private final long bytesPerUnit;
+    private final long bytesPerRecord;
+    private final MeterRegistry meterRegistry;
+
+    private int used;      // guarded by this
+    private int jobs;      // guarded by this
+
+    @Autowired
+    public JobAdmissionController(@Value("${batch.job.admission.capacity:16}") int capacity,
+                                  @Value("${batch.job.admission.reserved-for-small:2}") int reserve,
+                                  @Value("${batch.job.admission.small-job-max-cost:1}") int smallJobMaxCost,
+                                  @Value("${batch.job.max-concurrent-jobs:2}") int maxJobs,
+                                  @Value("${batch.job.admission.bytes-per-unit:536870912}") long bytesPerUnit,
+                                  @Value("${batch.job.admission.bytes-per-record:100}") long bytesPerRecord,
+                                  MeterRegistry meterRegistry) {
+        if (capacity < 1 || reserve < 0 || reserve >= capacity) {
+            throw new IllegalArgumentException("Require 0 <= reserve < capacity but was " + reserve + "/" + capacity);
+        }
+        this.capacity = capacity;
+        this.reserve = reserve;
+        this.smallJobMaxCost = smallJobMaxCost;
+        this.maxJobs = maxJobs;
+        this.bytesPerUnit = bytesPerUnit;
+        this.bytesPerRecord = bytesPerRecord;
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("batch.admission.capacity", this, c -> c.capacity);
+        meterRegistry.gauge("batch.admission.used", this, JobAdmissionController::usedUnits);
+        meterRegistry.gauge("batch.admission.jobs", this, JobAdmissionController::runningJobs);
+    }
+
+    /** Capacity units the trigger's job is expected to keep busy. */
+    public int estimateCost(KafkaBatchMessage message) {
+        long bytes = fileSize(message.getFilePath());
+        if (bytes <= 0 && message.getRecordCount() > 0) {
+            bytes = message.getRecordCount() * bytesPerRecord;
+        }
+        long units = bytes <= 0 ? 1 : (bytes + bytesPerUnit - 1) / bytesPerUnit;
+        return (int) Math.max(1, Math.min(units, capacity - reserve));
+    }
+
+    public synchronized boolean tryAdmit(int cost) {
+        boolean small = cost <= smallJobMaxCost;
+        boolean admitted = fits(cost);
+        if (admitted) {
+            used += cost;
+            jobs++;
+        }
+        meterRegistry.counter(admitted ? "batch.admission.admitted" : "batch.admission.rejected",
+            "size", small ? "small" : "large").increment();
+        return admitted;
+    }
+
+    public synchronized void release(int cost) {
+        used = Math.max(0, used - cost);
+        jobs = Math.max(0, jobs - 1);
+    }
+
+    /** True when at least a small job could be admitted now. */
+    public synchronized boolean hasCapacity() {
+        return jobs < maxJobs && used < capacity;
+    }
+
+    /** True when {@link #tryAdmit} would admit a job of {@code cost} now (nothing is taken). */
+    public synchronized boolean hasCapacityFor(int cost) {
+        return fits(cost);
+    }
+
+    private boolean fits(int cost) {
+        int budget = cost <= smallJobMaxCost ? capacity : capacity - reserve;
+        return jobs < maxJobs && used + cost <= budget;
+    }
+
+    public synchronized int usedUnits() {
+        return used;
+    }
+
+    public synchronized int runningJobs() {
+        return jobs;
+    }
+
+    private static long fileSize(String filePath) {
+        if (filePath == null) {
+            return 0;
+        }
+        try {
+            return Files.size(Path.of(filePath));
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+}
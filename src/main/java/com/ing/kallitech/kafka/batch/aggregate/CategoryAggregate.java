@@ -0,0 +1,65 @@
+package com.ing.kallitech.kafka.batch.aggregate;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Running count / sum / min / max of value_rec for one category.
+ *
+ * Not thread-safe: each instance is owned by one partition thread until it is
+ * merged. sum/min/max skip null values (SQL aggregate semantics); count does not.
+ * Serializable so CategoryAggregator can checkpoint a partition's totals in its
+ * step ExecutionContext.
+ */
+public final class CategoryAggregate implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long count;
+    private BigDecimal sum;
+    private BigDecimal min;
+    private BigDecimal max;
+
+    public void add(BigDecimal value) {
+        count++;
+        if (value == null) {
+            return;
+        }
+        sum = sum == null ? value : sum.add(value);
+        if (min == null || value.compareTo(min) < 0) {
+            min = value;
+        }
+        if (max == null || value.compareTo(max) > 0) {
+            max = value;
+        }
+    }
+
+    public void merge(CategoryAggregate other) {
+        count += other.count;
+        if (other.sum != null) {
+            sum = sum == null ? other.sum : sum.add(other.sum);
+        }
+        if (other.min != null && (min == null || other.min.compareTo(min) < 0)) {
+            min = other.min;
+        }
+        if (other.max != null && (max == null || other.max.compareTo(max) > 0)) {
+            max = other.max;
+        }
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public BigDecimal sum() {
+        return sum;
+    }
+
+    public BigDecimal min() {
+        return min;
+    }
+
+    public BigDecimal max() {
+        return max;
+    }
+}
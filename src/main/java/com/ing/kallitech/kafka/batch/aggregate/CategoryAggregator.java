@@ -0,0 +1,204 @@
+package com.ing.kallitech.kafka.batch.aggregate;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import com.ing.kallitech.kafka.batch.repository.CategorySummaryRepository;
+import com.ing.kallitech.kafka.batch.service.OracleJdbcBatchWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * NEW: Maintains count / sum / min / max of value_rec per job x category while the
+ * file loads, so "sum by category for this file" never has to scan batch_records.
+ *
+ *   afterWrite  — the chunk's LOADED rows (OracleJdbcBatchWriter marks skipped
+ *                 duplicates DUPLICATE) are folded into a chunk delta, applied to
+ *                 the partition's map only after the chunk commits; a rolled-back
+ *                 or retried chunk is never counted twice
+ *   afterStep   — the partition's map is MERGEd into batch_category_summary,
+ *                 whatever the step status: it holds exactly the committed rows
+ *
+ * Every partition flushes its own share, local or run by RemotePartitionWorker, so a
+ * job that dies after some partitions finished keeps their aggregates. The MERGE is
+ * additive, so the shares combine.
+ *
+ * A partition killed before afterStep never flushes. Its committed totals are also
+ * checkpointed in the step ExecutionContext (written in the chunk's transaction), so
+ * the restarted partition resumes from them and its afterStep stores the whole
+ * partition under the new job execution. After a flush the checkpoint is removed;
+ * only a crash between the flush and the step's final context save counts the
+ * partition twice.
+ *
+ * A failed flush is logged and counted (batch.aggregates.flush.failed) but does not
+ * fail the already-finished step.
+ */
+@Component
+public class CategoryAggregator implements StepExecutionListener, ItemWriteListener<RecordDTO> {
+
+    private static final Logger log = LoggerFactory.getLogger(CategoryAggregator.class);
+
+    /** batch_category_summary.category is NOT NULL; rows without a category land here. */
+    public static final String NO_CATEGORY = "(none)";
+
+    /** Step ExecutionContext key of the partition's committed, not yet flushed aggregates. */
+    public static final String CHECKPOINT_KEY = "categoryAggregates";
+
+    private final CategorySummaryRepository summaryRepository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+
+    /** The running partition's aggregates; each partition runs on one thread. */
+    private final ThreadLocal<PartitionAggregates> partition = new ThreadLocal<>();
+
+    public CategoryAggregator(CategorySummaryRepository summaryRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${batch.job.category-aggregates.enabled:true}") boolean enabled) {
+        this.summaryRepository = summaryRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+    }
+
+    // ========================
+    // Step Lifecycle (partition threads)
+    // ========================
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        if (!enabled) {
+            return;
+        }
+        String fileId = stepExecution.getJobExecution().getJobParameters().getString("fileId");
+        PartitionAggregates p = new PartitionAggregates(fileId, stepExecution.getExecutionContext());
+        if (stepExecution.getExecutionContext().get(CHECKPOINT_KEY) instanceof Map<?, ?> checkpoint) {
+            // Restart of a partition that never flushed: resume from its committed totals
+            checkpoint.forEach((category, a) -> p.byCategory.put((String) category, (CategoryAggregate) a));
+            log.info("Category aggregates restored: fileId={} step={} categories={}",
+                fileId, stepExecution.getStepName(), p.byCategory.size());
+        }
+        partition.set(p);
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        PartitionAggregates p = partition.get();
+        partition.remove();
+        if (p != null && flush(stepExecution.getJobExecutionId(), p.fileId, p.byCategory)) {
+            // Saved with the step's final context, so a restart does not flush it again
+            stepExecution.getExecutionContext().remove(CHECKPOINT_KEY);
+        }
+        return null;
+    }
+
+    // ========================
+    // Chunk Writes
+    // ========================
+
+    @Override
+    public void afterWrite(Chunk<? extends RecordDTO> items) {
+        PartitionAggregates p = partition.get();
+        if (p == null) {
+            return;
+        }
+        Map<String, CategoryAggregate> delta = new HashMap<>();
+        for (RecordDTO r : items) {
+            if (OracleJdbcBatchWriter.STATUS_LOADED.equals(r.getStatus())) {
+                String category = r.getCategory() == null ? NO_CATEGORY : r.getCategory();
+                delta.computeIfAbsent(category, c -> new CategoryAggregate()).add(r.getValueRec());
+            }
+        }
+        if (delta.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            p.add(delta);
+            p.commit();
+            return;
+        }
+        // The step saves its context in this transaction: checkpoint the totals as of its commit.
+        // A fault-tolerant scan writes item by item in one transaction, so deltas accumulate.
+        boolean first = p.pending.isEmpty();
+        p.add(delta);
+        if (first) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        p.commit();
+                    } else {
+                        p.rollback();
+                    }
+                }
+            });
+        }
+    }
+
+    /** Returns false only if the MERGE failed. */
+    private boolean flush(Long jobExecutionId, String fileId, Map<String, CategoryAggregate> byCategory) {
+        if (byCategory.isEmpty()) {
+            return true;
+        }
+        try {
+            summaryRepository.merge(String.valueOf(jobExecutionId), fileId, byCategory);
+            log.info("Category aggregates stored: fileId={} jobId={} categories={}",
+                fileId, jobExecutionId, byCategory.size());
+            return true;
+        } catch (DataAccessException e) {
+            meterRegistry.counter("batch.aggregates.flush.failed").increment();
+            log.error("Failed to store category aggregates: fileId={} jobId={}", fileId, jobExecutionId, e);
+            return false;
+        }
+    }
+
+    private static final class PartitionAggregates {
+        final String fileId;
+        final ExecutionContext stepContext;
+        final Map<String, CategoryAggregate> byCategory = new HashMap<>();
+        final Map<String, CategoryAggregate> pending = new HashMap<>();   // the open chunk's, until it commits
+
+        PartitionAggregates(String fileId, ExecutionContext stepContext) {
+            this.fileId = fileId;
+            this.stepContext = stepContext;
+        }
+
+        void add(Map<String, CategoryAggregate> delta) {
+            merge(pending, delta);
+            checkpoint();
+        }
+
+        void commit() {
+            merge(byCategory, pending);
+            pending.clear();
+        }
+
+        void rollback() {
+            pending.clear();
+            checkpoint();
+        }
+
+        /** Puts a copy of the committed totals plus the pending deltas into the step context. */
+        private void checkpoint() {
+            HashMap<String, CategoryAggregate> copy = new HashMap<>();
+            merge(copy, byCategory);
+            merge(copy, pending);
+            stepContext.put(CHECKPOINT_KEY, copy);
+        }
+
+        private static void merge(Map<String, CategoryAggregate> into, Map<String, CategoryAggregate> from) {
+            from.forEach((category, a) -> into.computeIfAbsent(category, c -> new CategoryAggregate()).merge(a));
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.ing.kallitech.kafka.batch.config;
 
+import com.ing.kallitech.kafka.batch.aggregate.CategoryAggregator;
+import com.ing.kallitech.kafka.batch.dedup.RecordHashFilter;
 import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import com.ing.kallitech.kafka.batch.progress.PartitionProgressTracker;
+import com.ing.kallitech.kafka.batch.remote.KafkaPartitionHandler;
 import com.ing.kallitech.kafka.batch.service.*;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.batch.core.*;
@@ -9,6 +13,7 @@ import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.core.step.builder.StepBuilder;
 import org.springframework.batch.core.step.tasklet.TaskletStep;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.partition.PartitionHandler;
 import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.repeat.RepeatStatus;
@@ -18,6 +23,7 @@ import org.springframework.batch.item.file.mapping.BeanWrapperFieldSetMapper;
 import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
 import org.springframework.dao.TransientDataAccessException;
 import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -55,6 +61,23 @@ import org.slf4j.LoggerFactory;
  *
  * 7. THREAD POOL: Was setCorePoolSize(12) = setMaxPoolSize(12) with no graceful
  *    shutdown. Fixed with CallerRunsPolicy + waitForTasksToCompleteOnShutdown.
+ *
+ * 8. FIXED POOL vs SHARED DB POOL: batch.job.executor-mode=adaptive lets
+ *    AdaptiveExecutorTuner resize the partition pool from Hikari pressure and
+ *    write latency; the executor then starts at core = max with an unbounded queue.
+ *
+ * 9. JOB ON THE CONSUMER THREAD: the default JobLauncher runs the whole job inside
+ *    run(). BatchJobLauncherService launches on jobLaunchTaskExecutor instead (one
+ *    thread per batch.job.max-concurrent-jobs slot, bounded queue), so the Kafka
+ *    listener returns as soon as the JobExecution is stored.
+ *
+ * 10. ONE POD PER FILE: batch.job.partition-handler=remote hands partitions to
+ *    KafkaPartitionHandler (RemotePartitioningConfig) instead: every replica's
+ *    RemotePartitionWorker runs workerStep for the partitions it consumes.
+ *
+ * 11. FIXED GRID: every file was cut into batch.job.grid-size partitions, so a 5-row
+ *    file paid for 20 StepExecutions. grid-size is now the upper bound and
+ *    CsvPartitioner sizes the grid from the file, the partition threads and pod load.
  */
 @Configuration
 @EnableBatchProcessing
@@ -80,6 +103,15 @@ public class BatchConfig {
     @Value("${batch.job.thread-pool-max-size:8}")
     private int threadPoolMaxSize;
 
+    @Value("${batch.job.executor-mode:fixed}")
+    private String executorMode;
+
+    @Value("${batch.job.max-concurrent-jobs:2}")
+    private int maxConcurrentJobs;
+
+    @Value("${batch.job.launcher.queue-capacity:4}")
+    private int launchQueueCapacity;
+
     // ── Job ───────────────────────────────────────────────────────────────────
 
     @Bean
@@ -108,12 +140,17 @@ public class BatchConfig {
     @Bean
     public Job csvImportJob(JobRepository jobRepository,
                             Step partitionedStep,
-                            JobCompletionListener listener) {
+                            JobCompletionListener listener,
+                            PartitionProgressTracker progressTracker,
+                            RecordHashFilter recordHashFilter) {
         log.info("Creating csvImportJob bean...");
         try {
             Job job = new JobBuilder("csvImportJob", jobRepository)
                 .incrementer(new RunIdIncrementer())
                 .listener(listener)
+                .listener(progressTracker)
+                // Saves the Bloom filter snapshot, so a killed pod need not reseed it
+                .listener((JobExecutionListener) recordHashFilter)
                 .start(partitionedStep)
                 .build();
             log.info("csvImportJob created successfully: {}", job.getName());
@@ -128,11 +165,17 @@ public class BatchConfig {
     public Step partitionedStep(JobRepository jobRepository,
                                 CsvPartitioner csvPartitioner,
                                 Step workerStep,
-                                TaskExecutor batchTaskExecutor) {
-        var handler = new TaskExecutorPartitionHandler();
-        handler.setStep(workerStep);
-        handler.setTaskExecutor(batchTaskExecutor);
-        handler.setGridSize(gridSize);
+                                TaskExecutor batchTaskExecutor,
+                                ObjectProvider<KafkaPartitionHandler> remotePartitionHandler) {
+        PartitionHandler handler = remotePartitionHandler.getIfAvailable();
+        if (handler == null) {
+            var local = new TaskExecutorPartitionHandler();
+            local.setStep(workerStep);
+            local.setTaskExecutor(batchTaskExecutor);
+            local.setGridSize(gridSize);
+            handler = local;
+        }
+        log.info("partitionedStep handler: {}", handler.getClass().getSimpleName());
 
         return new StepBuilder("partitionedStep", jobRepository)
             .partitioner("workerStep", csvPartitioner)
@@ -146,7 +189,10 @@ public class BatchConfig {
                            CsvItemReader csvItemReader,
                            CsvItemProcessor processor,
                            OracleJdbcBatchWriter writer,
-                           ChunkMetricsListener metricsListener) {
+                           ChunkMetricsListener metricsListener,
+                           RecordHashFilter recordHashFilter,
+                           PartitionProgressTracker progressTracker,
+                           CategoryAggregator categoryAggregator) {
 
         return new StepBuilder("workerStep", jobRepository)
             .<RecordDTO, RecordDTO>chunk(chunkSize, txManager)
@@ -163,16 +209,54 @@ public class BatchConfig {
             .retry(TransientDataAccessException.class)
             .retry(UncategorizedSQLException.class)
             .noRetry(RecordValidationException.class)
-            .listener((org.springframework.batch.core.SkipListener<RecordDTO, RecordDTO>) metricsListener)
+            // One listener, every face: step (meter binding), chunk, read/process/write timing, skips
+            .listener((StepExecutionListener) metricsListener)
+            .listener((ChunkListener) metricsListener)
+            .listener((ItemReadListener<RecordDTO>) metricsListener)
+            .listener((ItemProcessListener<RecordDTO, RecordDTO>) metricsListener)
+            .listener((ItemWriteListener<RecordDTO>) metricsListener)
+            .listener((SkipListener<RecordDTO, RecordDTO>) metricsListener)
+            // Adds written hashes to the Bloom filter after each chunk commits
+            .listener((ItemWriteListener<RecordDTO>) recordHashFilter)
+            // Publishes per-partition progress snapshots for /api/jobs/{fileId}/progress
+            .listener((StepExecutionListener) progressTracker)
+            .listener((ChunkListener) progressTracker)
+            // Per-category aggregates of the rows each committed chunk loaded
+            .listener((StepExecutionListener) categoryAggregator)
+            .listener((ItemWriteListener<RecordDTO>) categoryAggregator)
             .build();
     }
 
     @Bean
-    public TaskExecutor batchTaskExecutor() {
+    public ThreadPoolTaskExecutor jobLaunchTaskExecutor() {
         var exec = new ThreadPoolTaskExecutor();
-        exec.setCorePoolSize(threadPoolCoreSize);
-        exec.setMaxPoolSize(threadPoolMaxSize);
-        exec.setQueueCapacity(gridSize * 2);
+        // One thread per admissible job (JobAdmissionController caps jobs at max-concurrent-jobs);
+        // the queue only absorbs the gap between a job being released in afterJob and its
+        // thread finishing. Overflow is rejected, never
+        // run on the consumer thread.
+        exec.setCorePoolSize(maxConcurrentJobs);
+        exec.setMaxPoolSize(maxConcurrentJobs);
+        exec.setQueueCapacity(launchQueueCapacity);
+        exec.setThreadNamePrefix("batch-job-");
+        exec.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        exec.setWaitForTasksToCompleteOnShutdown(true);
+        exec.setAwaitTerminationSeconds(120);
+        exec.initialize();
+        return exec;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor batchTaskExecutor() {
+        var exec = new ThreadPoolTaskExecutor();
+        if ("adaptive".equals(executorMode)) {
+            // Concurrency == core == max, resized at runtime; partitions queue, never run on the caller
+            exec.setCorePoolSize(threadPoolCoreSize);
+            exec.setMaxPoolSize(threadPoolCoreSize);
+        } else {
+            exec.setCorePoolSize(threadPoolCoreSize);
+            exec.setMaxPoolSize(threadPoolMaxSize);
+            exec.setQueueCapacity(gridSize * 2);
+        }
         exec.setThreadNamePrefix("batch-partition-");
         exec.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
         exec.setWaitForTasksToCompleteOnShutdown(true);
@@ -0,0 +1,69 @@
+package com.ing.kallitech.kafka.batch.config;
+
+import com.ing.kallitech.kafka.batch.model.KafkaBatchMessage;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.Map;
+
+/**
+ * NEW: Container factory for kafka.listener-mode=batch (KafkaBatchMessageListener).
+ *
+ * Starts from the spring.kafka.consumer.* properties the auto-configured factory
+ * uses, then:
+ *  - deserializes values once, in the container, as KafkaBatchMessage. The
+ *    JsonDeserializer is wrapped in ErrorHandlingDeserializer, so a malformed
+ *    trigger arrives as a null value instead of failing the whole poll
+ *  - polls kafka.batch-listener.max-poll-records at a time (the record listener keeps 5),
+ *    so a backlog drain sees hundreds of triggers per idempotency query
+ *  - MANUAL_IMMEDIATE acks, required for Acknowledgment.acknowledge(index) / nack(index)
+ *  - triggerErrorHandler (TriggerErrorHandlerConfig): a BatchListenerFailedException's
+ *    record is retried, then sent to kafka.dlq-topic, the same as in record mode
+ */
+@Configuration
+@ConditionalOnProperty(name = "kafka.listener-mode", havingValue = "batch")
+public class KafkaBatchListenerConfig {
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, KafkaBatchMessage> batchKafkaListenerContainerFactory(
+            KafkaProperties kafkaProperties,
+            ObjectProvider<SslBundles> sslBundles,
+            @Value("${kafka.batch-listener.max-poll-records:500}") int maxPollRecords,
+            @Value("${kafka.batch-listener.concurrency:1}") int concurrency,
+            CommonErrorHandler triggerErrorHandler) {
+
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties(sslBundles.getIfAvailable());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.remove(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG);
+        props.remove(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG);
+
+        var valueDeserializer = new JsonDeserializer<>(KafkaBatchMessage.class, false);
+        valueDeserializer.ignoreTypeHeaders();
+        var consumerFactory = new DefaultKafkaConsumerFactory<>(
+            props,
+            new StringDeserializer(),
+            new ErrorHandlingDeserializer<>(valueDeserializer));
+
+        var factory = new ConcurrentKafkaListenerContainerFactory<String, KafkaBatchMessage>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+        factory.setCommonErrorHandler(triggerErrorHandler);
+        return factory;
+    }
+}
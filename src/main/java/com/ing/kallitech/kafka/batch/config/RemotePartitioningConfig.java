@@ -0,0 +1,110 @@
+package com.ing.kallitech.kafka.batch.config;
+
+import com.ing.kallitech.kafka.batch.remote.KafkaPartitionHandler;
+import com.ing.kallitech.kafka.batch.remote.PartitionRequest;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * NEW: Kafka plumbing for batch.job.partition-handler=remote.
+ *
+ *  - remotePartitionHandler: used by partitionedStep instead of the local
+ *    TaskExecutorPartitionHandler; publishes one PartitionRequest per partition
+ *  - partitionRequestListenerContainerFactory: RemotePartitionWorker's consumer, one
+ *    record per poll. The consumer only hands requests off, so the default
+ *    max.poll.interval applies (FIX: was 30m with the partition on the consumer thread)
+ *  - partitionWorkerExecutor: runs the partitions, worker-concurrency at a time per
+ *    pod; the queue only absorbs the gap between a partition finishing and its
+ *    thread returning to the pool
+ *
+ * Both start from the spring.kafka.* properties, so brokers and security are shared
+ * with the trigger listener.
+ */
+@Configuration
+@ConditionalOnProperty(name = "batch.job.partition-handler", havingValue = "remote")
+public class RemotePartitioningConfig {
+
+    @Value("${batch.job.remote-partitioning.topic:batch-partition-requests}")
+    private String topic;
+
+    @Bean
+    public KafkaTemplate<String, PartitionRequest> partitionRequestKafkaTemplate(
+            KafkaProperties kafkaProperties, ObjectProvider<SslBundles> sslBundles) {
+        Map<String, Object> props = kafkaProperties.buildProducerProperties(sslBundles.getIfAvailable());
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        var serializer = new JsonSerializer<PartitionRequest>();
+        serializer.setAddTypeInfo(false);
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(props, new StringSerializer(), serializer));
+    }
+
+    @Bean
+    public KafkaPartitionHandler remotePartitionHandler(
+            KafkaTemplate<String, PartitionRequest> partitionRequestKafkaTemplate,
+            JobExplorer jobExplorer,
+            @Value("${batch.job.grid-size:20}") int gridSize,
+            @Value("${batch.job.remote-partitioning.poll-interval:2s}") Duration pollInterval,
+            @Value("${batch.job.remote-partitioning.timeout:6h}") Duration timeout,
+            @Value("${batch.job.remote-partitioning.stale-after:10m}") Duration staleAfter) {
+        return new KafkaPartitionHandler(partitionRequestKafkaTemplate, jobExplorer, topic, "workerStep",
+            gridSize, pollInterval, timeout, staleAfter);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor partitionWorkerExecutor(
+            @Value("${batch.job.remote-partitioning.worker-concurrency:4}") int concurrency) {
+        var exec = new ThreadPoolTaskExecutor();
+        exec.setCorePoolSize(concurrency);
+        exec.setMaxPoolSize(concurrency);
+        exec.setQueueCapacity(concurrency);
+        exec.setThreadNamePrefix("batch-remote-partition-");
+        exec.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        exec.setWaitForTasksToCompleteOnShutdown(true);
+        exec.setAwaitTerminationSeconds(120);
+        exec.initialize();
+        return exec;
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, PartitionRequest> partitionRequestListenerContainerFactory(
+            KafkaProperties kafkaProperties,
+            ObjectProvider<SslBundles> sslBundles) {
+
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties(sslBundles.getIfAvailable());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 1);
+        props.remove(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG);
+        props.remove(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG);
+
+        var valueDeserializer = new JsonDeserializer<>(PartitionRequest.class, false);
+        valueDeserializer.ignoreTypeHeaders();
+        var factory = new ConcurrentKafkaListenerContainerFactory<String, PartitionRequest>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(
+            props, new StringDeserializer(), new ErrorHandlingDeserializer<>(valueDeserializer)));
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
+        return factory;
+    }
+}
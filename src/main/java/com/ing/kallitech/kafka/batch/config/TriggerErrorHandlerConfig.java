@@ -0,0 +1,89 @@
+package com.ing.kallitech.kafka.batch.config;
+
+import com.ing.kallitech.kafka.batch.model.KafkaBatchMessage;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.DelegatingByTypeSerializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * NEW: One error handler for trigger listeners in both kafka.listener-mode values.
+ *
+ * A trigger whose launch throws is retried (2s → 4s → 8s) and then published to
+ * kafka.dlq-topic, with the usual kafka_dlt-* exception headers. Before, record mode
+ * acked the failure in the listener and batch mode logged and skipped it, so a
+ * failed launch was lost either way.
+ *
+ * Spring Boot applies a single CommonErrorHandler bean to the auto-configured
+ * kafkaListenerContainerFactory (record mode); KafkaBatchListenerConfig sets it on
+ * the batch factory. partitionRequestListenerContainerFactory builds its own.
+ *
+ * The recoverer's template serializes whatever the container deserialized: the raw
+ * String in record mode, KafkaBatchMessage as JSON in batch mode, and the original
+ * bytes of a record that failed deserialization.
+ */
+@Configuration
+public class TriggerErrorHandlerConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(TriggerErrorHandlerConfig.class);
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Bean
+    public CommonErrorHandler triggerErrorHandler(KafkaProperties kafkaProperties,
+                                                  ObjectProvider<SslBundles> sslBundles,
+                                                  @Value("${kafka.dlq-topic}") String dlqTopic) {
+        var backOff = new ExponentialBackOff(2_000L, 2.0);
+        backOff.setMaxAttempts(MAX_ATTEMPTS);
+        backOff.setMaxInterval(30_000L);
+
+        // Partition -1: the DLQ need not have as many partitions as the trigger topic
+        var recoverer = new DeadLetterPublishingRecoverer(deadLetterTemplate(kafkaProperties, sslBundles),
+            (record, ex) -> new TopicPartition(dlqTopic, -1));
+
+        var handler = new DefaultErrorHandler((record, ex) -> {
+            log.error("Trigger sent to DLQ after retries: topic={} partition={} offset={} dlq={}: {}",
+                record.topic(), record.partition(), record.offset(), dlqTopic, ex.getMessage());
+            recoverer.accept(record, ex);
+        }, backOff);
+        handler.addNotRetryableExceptions(IllegalArgumentException.class);
+        handler.setRetryListeners((record, ex, attempt) ->
+            log.warn("Kafka retry attempt {}/{}: {}", attempt, MAX_ATTEMPTS, ex.getMessage()));
+        return handler;
+    }
+
+    private static KafkaTemplate<String, Object> deadLetterTemplate(KafkaProperties kafkaProperties,
+                                                                    ObjectProvider<SslBundles> sslBundles) {
+        Map<String, Object> props = kafkaProperties.buildProducerProperties(sslBundles.getIfAvailable());
+        props.remove(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG);
+        props.remove(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG);
+
+        Map<Class<?>, Serializer<?>> valueSerializers = new LinkedHashMap<>();
+        valueSerializers.put(String.class, new StringSerializer());
+        valueSerializers.put(byte[].class, new ByteArraySerializer());
+        valueSerializers.put(KafkaBatchMessage.class, new JsonSerializer<KafkaBatchMessage>().noTypeInfo());
+
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(props,
+            new StringSerializer(), new DelegatingByTypeSerializer(valueSerializers)));
+    }
+}
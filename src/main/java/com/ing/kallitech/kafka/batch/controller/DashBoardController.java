@@ -1,26 +1,89 @@
 package com.ing.kallitech.kafka.batch.controller;
 
 
-import com.ing.kallitech.kafka.batch.model.KafkaBatchMessage;
-import com.ing.kallitech.kafka.batch.entity.Record;
-import com.ing.kallitech.kafka.batch.repository.RecordRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ing.kallitech.kafka.batch.repository.RecordStreamRepository;
+import com.ing.kallitech.kafka.batch.repository.RecordStreamRepository.RecordRow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
+/**
+ * FIX: GET /api/records returned recordRepository.findAll() — every row of
+ * batch_records materialised as JPA entities in one List, then one JSON array.
+ * At tens of millions of rows that is an OOM.
+ *
+ * Now streams NDJSON (one JSON object per line) page by page through
+ * RecordStreamRepository's keyset queries; only one page is ever in memory and
+ * the DB connection is released before the page is written to the client.
+ *
+ *   GET /api/records?jobId=&partition=&afterId=0&limit=
+ *
+ * jobId / partition narrow the scan to idx_batch_records_job_id (partition needs
+ * jobId). afterId + limit page explicitly: resume with afterId = last id seen.
+ * Without limit the whole (filtered) table is streamed.
+ */
 @RestController
 @RequestMapping("/api")
 public class DashBoardController {
-    private final RecordRepository recordRepository;
-    public DashBoardController(RecordRepository recordRepository) {
-        this.recordRepository = recordRepository;
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final RecordStreamRepository recordStreamRepository;
+    private final ObjectMapper objectMapper;
+    private final int pageSize;
+
+    public DashBoardController(RecordStreamRepository recordStreamRepository,
+                               ObjectMapper objectMapper,
+                               @Value("${batch.records-api.page-size:1000}") int pageSize) {
+        this.recordStreamRepository = recordStreamRepository;
+        this.objectMapper = objectMapper;
+        this.pageSize = pageSize;
     }
 
     @GetMapping("/records")
-    ResponseEntity<List<Record>> createMessage() {
-        return ResponseEntity.status(200).body(recordRepository.findAll());
+    ResponseEntity<StreamingResponseBody> records(@RequestParam(required = false) String jobId,
+                                                  @RequestParam(required = false) Integer partition,
+                                                  @RequestParam(defaultValue = "0") long afterId,
+                                                  @RequestParam(required = false) Long limit) {
+        if (partition != null && jobId == null) {
+            // partition_idx alone cannot use idx_batch_records_job_id: full scan
+            return ResponseEntity.badRequest().build();
+        }
+        if (limit != null && limit < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        long max = limit == null ? Long.MAX_VALUE : limit;
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.createGenerator(out)) {
+                json.setRootValueSeparator(null);
+                long cursor = afterId;
+                long remaining = max;
+                while (remaining > 0) {
+                    int want = (int) Math.min(Math.min(pageSize, recordStreamRepository.maxPageSize()), remaining);
+                    List<RecordRow> page = recordStreamRepository.page(jobId, partition, cursor, want);
+                    for (RecordRow row : page) {
+                        json.writeObject(row);
+                        json.writeRaw('\n');
+                    }
+                    json.flush();
+                    if (page.size() < want) {
+                        break;
+                    }
+                    remaining -= page.size();
+                    cursor = page.get(page.size() - 1).id();
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
 }
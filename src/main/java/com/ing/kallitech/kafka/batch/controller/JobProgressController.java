@@ -0,0 +1,35 @@
+package com.ing.kallitech.kafka.batch.controller;
+
+import com.ing.kallitech.kafka.batch.progress.PartitionProgressTracker;
+import com.ing.kallitech.kafka.batch.progress.PartitionProgressTracker.JobProgress;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * NEW: Live progress of a csvImportJob by fileId, per partition: rows
+ * read/written/filtered/skipped, rows/s and ETA.
+ *
+ * Served from PartitionProgressTracker's in-memory snapshots — never touches
+ * BATCH_STEP_EXECUTION — so it is safe to poll every second. 404 when this pod
+ * has not run the file (or it aged out of batch.job.progress.retain-finished).
+ */
+@RestController
+@RequestMapping("/api")
+public class JobProgressController {
+
+    private final PartitionProgressTracker progressTracker;
+
+    public JobProgressController(PartitionProgressTracker progressTracker) {
+        this.progressTracker = progressTracker;
+    }
+
+    @GetMapping("/jobs/{fileId}/progress")
+    ResponseEntity<JobProgress> progress(@PathVariable String fileId) {
+        return progressTracker.progress(fileId)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
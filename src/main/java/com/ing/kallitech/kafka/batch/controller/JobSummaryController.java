@@ -0,0 +1,33 @@
+package com.ing.kallitech.kafka.batch.controller;
+
+import com.ing.kallitech.kafka.batch.repository.CategorySummaryRepository;
+import com.ing.kallitech.kafka.batch.repository.CategorySummaryRepository.CategorySummary;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * NEW: Per-category count / sum / min / max of value_rec for a loaded file, from
+ * batch_category_summary (maintained during the load by CategoryAggregator)
+ * instead of a GROUP BY over batch_records. 404 until the file's job has finished.
+ */
+@RestController
+@RequestMapping("/api")
+public class JobSummaryController {
+
+    private final CategorySummaryRepository summaryRepository;
+
+    public JobSummaryController(CategorySummaryRepository summaryRepository) {
+        this.summaryRepository = summaryRepository;
+    }
+
+    @GetMapping("/jobs/{fileId}/categories")
+    ResponseEntity<List<CategorySummary>> categories(@PathVariable String fileId) {
+        List<CategorySummary> summary = summaryRepository.findByFileId(fileId);
+        return summary.isEmpty() ? ResponseEntity.notFound().build() : ResponseEntity.ok(summary);
+    }
+}
@@ -0,0 +1,25 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+/**
+ * A reader that knows the file byte offset just past the last item it returned.
+ *
+ * The offset and line number are checkpointed in the step ExecutionContext under
+ * {@link #OFFSET_KEY} / {@link #LINE_KEY} once per chunk; readers that can seek
+ * resume there when they are opened with that context again (restart).
+ */
+public interface ByteOffsetAware {
+
+    /** Step ExecutionContext key: offset of the next unread byte, as of the last committed chunk. */
+    String OFFSET_KEY = "reader.offset";
+
+    /** Step ExecutionContext key: lines consumed up to {@link #OFFSET_KEY}, for line numbers after a restart. */
+    String LINE_KEY = "reader.line";
+
+    /** Offset of the next unread byte, or -1 when the reader cannot tell. */
+    long byteOffset();
+
+    /** Lines consumed so far (data lines, blank and comment lines included), or -1 when unknown. */
+    default long lineNumber() {
+        return -1;
+    }
+}
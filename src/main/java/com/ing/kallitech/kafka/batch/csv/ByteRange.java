@@ -0,0 +1,18 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+/**
+ * Half-open byte range [start, end) of a CSV file.
+ *
+ * Both ends are always aligned to a line start (or EOF), so a range holds
+ * only complete lines and can be read without looking at its neighbours.
+ */
+public record ByteRange(long start, long end) {
+
+    public long length() {
+        return end - start;
+    }
+
+    public boolean isEmpty() {
+        return end <= start;
+    }
+}
@@ -0,0 +1,102 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Spring {@link org.springframework.core.io.Resource} exposing only the bytes
+ * [start, end) of a file.
+ *
+ * The returned stream is positioned with a single seek, so a reader for the
+ * last partition of a 50M-row file starts emitting records immediately instead
+ * of re-reading and discarding every line before its range.
+ */
+public class ByteRangeResource extends AbstractResource {
+
+    private final Path path;
+    private final ByteRange range;
+
+    public ByteRangeResource(Path path, ByteRange range) {
+        this.path = path;
+        this.range = range;
+    }
+
+    public ByteRange getRange() {
+        return range;
+    }
+
+    @Override
+    public boolean exists() {
+        return path.toFile().exists();
+    }
+
+    @Override
+    public File getFile() {
+        return path.toFile();
+    }
+
+    @Override
+    public long contentLength() {
+        return range.length();
+    }
+
+    @Override
+    public String getDescription() {
+        return "byte range [" + range.start() + ", " + range.end() + ") of file [" + path + "]";
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        channel.position(range.start());
+        return new BoundedInputStream(Channels.newInputStream(channel), range.length());
+    }
+
+    /** Stops after {@code remaining} bytes; closing it closes the underlying channel. */
+    private static final class BoundedInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long remaining) {
+            this.in = in;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
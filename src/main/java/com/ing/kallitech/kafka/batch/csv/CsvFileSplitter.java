@@ -0,0 +1,112 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a CSV file into line-aligned byte ranges without reading it end to end.
+ *
+ * The header line is located first; the data section behind it is then cut at
+ * N approximate offsets, and each cut is moved forward to the next line start.
+ * Only a few KB around every cut are read, so splitting a 50 GB file costs the
+ * same as splitting a 5-row file.
+ *
+ * Assumes one record per physical line (no newlines inside quoted fields) —
+ * the same assumption the line-based reader already makes.
+ */
+public final class CsvFileSplitter {
+
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    private CsvFileSplitter() {
+    }
+
+    /**
+     * Returns the offset of the first data byte, i.e. the byte after the header
+     * line's terminating '\n', or the file size when there is no data line.
+     */
+    public static long dataStart(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return nextLineStart(channel, 0);
+        }
+    }
+
+    /**
+     * Splits the data section of {@code file} into at most {@code count}
+     * non-empty, line-aligned ranges that together cover every data line once.
+     */
+    public static List<ByteRange> split(Path file, int count) throws IOException {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be >= 1 but was " + count);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = nextLineStart(channel, 0);
+            return split(channel, dataStart, size, count);
+        }
+    }
+
+    /**
+     * Splits [{@code from}, {@code to}) of an open channel. {@code from} must
+     * already be a line start.
+     */
+    public static List<ByteRange> split(FileChannel channel, long from, long to, int count) throws IOException {
+        List<ByteRange> ranges = new ArrayList<>(count);
+        long dataBytes = to - from;
+        if (dataBytes <= 0) {
+            return ranges;
+        }
+
+        long previous = from;
+        for (int i = 1; i <= count; i++) {
+            long boundary = (i == count)
+                ? to
+                : Math.min(to, alignToLineStart(channel, from + dataBytes * i / count));
+            if (boundary > previous) {
+                ranges.add(new ByteRange(previous, boundary));
+                previous = boundary;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Smallest line start that is >= {@code position}: {@code position} itself
+     * when the preceding byte is '\n', otherwise the byte after the next '\n'.
+     */
+    public static long alignToLineStart(FileChannel channel, long position) throws IOException {
+        if (position <= 0) {
+            return 0;
+        }
+        return nextLineStart(channel, position - 1);
+    }
+
+    /**
+     * Offset of the byte following the first '\n' at or after {@code position},
+     * or the channel size when no newline follows.
+     */
+    public static long nextLineStart(FileChannel channel, long position) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long pos = position;
+        while (pos < size) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+}
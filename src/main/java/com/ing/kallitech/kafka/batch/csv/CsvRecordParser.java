@@ -0,0 +1,197 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.item.file.FlatFileParseException;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Tokenizes one CSV line directly from a ByteBuffer into a RecordDTO.
+ *
+ * Column order: externalId, name, value_rec, category, eventTs. Field bounds are
+ * kept as offsets into the buffer, so no line String, token array or FieldSet is
+ * created — only the final RecordDTO values are materialized. Quoted fields
+ * ("a,b", "say ""hi""") are supported. Like the non-strict DelimitedLineTokenizer,
+ * missing trailing columns read as empty and extra columns are ignored.
+ *
+ * value_rec and eventTs are decoded straight from the field bytes by
+ * {@link DecimalParser} (already at RecordDTO.VALUE_SCALE) and
+ * {@link IsoTimestampParser} (last-seen cache), without the intermediate String.
+ *
+ * Not thread-safe: holds scratch buffers, one instance per reader.
+ */
+public final class CsvRecordParser {
+
+    private static final Logger log = LoggerFactory.getLogger(CsvRecordParser.class);
+
+    static final int FIELD_COUNT = 5;
+
+    private static final int EXTERNAL_ID = 0;
+    private static final int NAME = 1;
+    private static final int VALUE = 2;
+    private static final int CATEGORY = 3;
+    private static final int EVENT_TS = 4;
+
+    private static final byte QUOTE = '"';
+
+    private final byte delimiter;
+
+    private final int[] starts = new int[FIELD_COUNT];
+    private final int[] ends = new int[FIELD_COUNT];
+    private final boolean[] quoted = new boolean[FIELD_COUNT];
+
+    private final DecimalParser decimalParser = new DecimalParser(RecordDTO.VALUE_SCALE);
+    private final IsoTimestampParser timestampParser = new IsoTimestampParser();
+
+    private byte[] bytes = new byte[256];
+
+    public CsvRecordParser(byte delimiter) {
+        if (delimiter == QUOTE || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("Unsupported delimiter: " + (char) delimiter);
+        }
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * True when {@code delimiter} is a single ASCII character this parser can handle;
+     * anything else must go through the FlatFileItemReader engine.
+     */
+    public static boolean supports(String delimiter) {
+        return delimiter != null && delimiter.length() == 1 && delimiter.charAt(0) < 0x80
+            && delimiter.charAt(0) != QUOTE && delimiter.charAt(0) != '\n' && delimiter.charAt(0) != '\r';
+    }
+
+    /**
+     * Parses the line held in {@code buf} at absolute indices [from, to), excluding
+     * the line terminator.
+     *
+     * @throws FlatFileParseException for unterminated quotes or a malformed value_rec
+     */
+    public RecordDTO parse(ByteBuffer buf, int from, int to, long lineNumber) {
+        tokenize(buf, from, to, lineNumber);
+
+        RecordDTO record = new RecordDTO();
+        record.setExternalId(readString(buf, EXTERNAL_ID));
+        record.setName(readString(buf, NAME));
+        record.setCategory(readString(buf, CATEGORY));
+
+        try {
+            record.setValueRec(readBigDecimal(buf, VALUE));
+        } catch (NumberFormatException e) {
+            throw new FlatFileParseException("Unparseable value_rec at line: " + lineNumber,
+                e, lineString(buf, from, to), (int) lineNumber);
+        }
+
+        int eventTsLength = copyField(buf, EVENT_TS);
+        try {
+            record.setEventTs(timestampParser.parse(bytes, 0, eventTsLength));
+        } catch (DateTimeParseException e) {
+            log.warn("Failed to parse timestamp: {}", new String(bytes, 0, eventTsLength, StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+
+    private void tokenize(ByteBuffer buf, int from, int to, long lineNumber) {
+        int field = 0;
+        int i = from;
+        while (field < FIELD_COUNT) {
+            int j = i;
+            while (j < to && buf.get(j) != delimiter && isBlank(buf.get(j))) {
+                j++;
+            }
+            if (j < to && buf.get(j) == QUOTE) {
+                int start = ++j;
+                while (true) {
+                    if (j >= to) {
+                        throw new FlatFileParseException("Unterminated quoted field at line: " + lineNumber,
+                            lineString(buf, from, to), (int) lineNumber);
+                    }
+                    if (buf.get(j) == QUOTE) {
+                        if (j + 1 < to && buf.get(j + 1) == QUOTE) {
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    j++;
+                }
+                starts[field] = start;
+                ends[field] = j;
+                quoted[field] = true;
+                while (j < to && buf.get(j) != delimiter) {
+                    j++;
+                }
+            } else {
+                while (j < to && buf.get(j) != delimiter) {
+                    j++;
+                }
+                starts[field] = i;
+                ends[field] = j;
+                quoted[field] = false;
+            }
+            field++;
+            if (j >= to) {
+                break;
+            }
+            i = j + 1;
+        }
+        for (; field < FIELD_COUNT; field++) {
+            starts[field] = 0;
+            ends[field] = 0;
+            quoted[field] = false;
+        }
+    }
+
+    /** Copies field {@code index} into {@link #bytes} (unescaped, trimmed) and returns its length. */
+    private int copyField(ByteBuffer buf, int index) {
+        int start = starts[index];
+        int end = ends[index];
+        while (start < end && isBlank(buf.get(start))) {
+            start++;
+        }
+        while (end > start && isBlank(buf.get(end - 1))) {
+            end--;
+        }
+        int len = end - start;
+        if (bytes.length < len) {
+            bytes = new byte[Math.max(len, bytes.length * 2)];
+        }
+        if (!quoted[index]) {
+            buf.get(start, bytes, 0, len);
+            return len;
+        }
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            bytes[n++] = b;
+            if (b == QUOTE && i + 1 < end && buf.get(i + 1) == QUOTE) {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    private String readString(ByteBuffer buf, int index) {
+        int len = copyField(buf, index);
+        return len == 0 ? "" : new String(bytes, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private BigDecimal readBigDecimal(ByteBuffer buf, int index) {
+        return decimalParser.parse(bytes, 0, copyField(buf, index));
+    }
+
+    private static boolean isBlank(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    private static String lineString(ByteBuffer buf, int from, int to) {
+        byte[] line = new byte[to - from];
+        buf.get(from, line);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+}
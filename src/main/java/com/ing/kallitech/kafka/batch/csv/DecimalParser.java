@@ -0,0 +1,125 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Parses value_rec into a BigDecimal of at most {@code maxScale} fraction digits.
+ *
+ * The common shape — optional sign, digits, optional '.' and digits — is
+ * accumulated into an unscaled long and returned via BigDecimal.valueOf(unscaled,
+ * scale): no char[] copy, no BigInteger, and fraction digits past maxScale are
+ * rounded HALF_UP in the same pass instead of by a later setScale(). Exponents,
+ * more digits than a long holds and anything malformed fall back to the
+ * BigDecimal constructor, so results and NumberFormatExceptions are identical to
+ * {@code new BigDecimal(s).setScale(maxScale, HALF_UP)} (applied only when the
+ * scale exceeds maxScale).
+ *
+ * Not thread-safe: holds scratch buffers, one instance per reader.
+ */
+public final class DecimalParser {
+
+    private static final long OVERFLOW_GUARD = (Long.MAX_VALUE - 9) / 10;
+
+    private final int maxScale;
+
+    private byte[] bytes = new byte[64];
+    private char[] chars = new char[64];
+
+    public DecimalParser(int maxScale) {
+        if (maxScale < 0) {
+            throw new IllegalArgumentException("maxScale must be >= 0 but was " + maxScale);
+        }
+        this.maxScale = maxScale;
+    }
+
+    /** Parses the ASCII bytes [off, off + len); an empty field is null. */
+    public BigDecimal parse(byte[] b, int off, int len) {
+        if (len == 0) {
+            return null;
+        }
+        int end = off + len;
+        int i = off;
+        boolean negative = false;
+        if (b[i] == '-' || b[i] == '+') {
+            negative = b[i] == '-';
+            i++;
+        }
+
+        long unscaled = 0;
+        int scale = -1;                 // -1 until the '.' is seen
+        int digits = 0;
+        boolean roundUp = false;
+        boolean truncated = false;      // a digit past maxScale was consumed
+        for (; i < end; i++) {
+            int c = b[i];
+            if (c == '.') {
+                if (scale >= 0) {
+                    return fallback(b, off, len);
+                }
+                scale = 0;
+                continue;
+            }
+            int d = c - '0';
+            if (d < 0 || d > 9) {
+                return fallback(b, off, len);   // exponent, garbage: let BigDecimal decide
+            }
+            digits++;
+            if (scale >= maxScale) {
+                if (!truncated) {
+                    roundUp = d >= 5;     // HALF_UP looks at the first dropped digit only
+                    truncated = true;
+                }
+                continue;
+            }
+            if (unscaled > OVERFLOW_GUARD) {
+                return fallback(b, off, len);
+            }
+            unscaled = unscaled * 10 + d;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (digits == 0) {
+            return fallback(b, off, len);
+        }
+        if (roundUp) {
+            unscaled++;                 // magnitude: HALF_UP rounds away from zero
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, Math.max(scale, 0));
+    }
+
+    /** Same as {@link #parse(byte[], int, int)} for an already trimmed String; empty is null. */
+    public BigDecimal parse(String s) {
+        if (s == null || s.isEmpty()) {
+            return null;
+        }
+        int len = s.length();
+        if (bytes.length < len) {
+            bytes = new byte[Math.max(len, bytes.length * 2)];
+        }
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                return slowPath(s.toCharArray(), len);   // non-ASCII digits follow BigDecimal's rules
+            }
+            bytes[i] = (byte) c;
+        }
+        return parse(bytes, 0, len);
+    }
+
+    private BigDecimal fallback(byte[] b, int off, int len) {
+        if (chars.length < len) {
+            chars = new char[Math.max(len, chars.length * 2)];
+        }
+        for (int i = 0; i < len; i++) {
+            chars[i] = (char) (b[off + i] & 0xff);
+        }
+        return slowPath(chars, len);
+    }
+
+    private BigDecimal slowPath(char[] c, int len) {
+        BigDecimal value = new BigDecimal(c, 0, len);
+        return value.scale() > maxScale ? value.setScale(maxScale, RoundingMode.HALF_UP) : value;
+    }
+}
@@ -0,0 +1,306 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Member index of a gzip file: where every gzip member starts in the compressed
+ * file and in the decompressed stream.
+ *
+ * Each member decompresses on its own, so a file written as many members — BGZF
+ * (bgzip), pigz --independent, or plain concatenated .gz parts — can be read from
+ * any member start in parallel. A single-member file yields a one-entry index and
+ * is only readable front to back.
+ *
+ * Building the index:
+ *   - BGZF members carry their compressed size in the header ("BC" extra field)
+ *     and their uncompressed size in the trailer, so only headers are read
+ *   - any other member is inflated once to find where it ends
+ * The result is cached in a sidecar file ({@code <file>.idx}) next to the input,
+ * keyed by the file's size and mtime, so the cost is paid on the first read only.
+ * A sidecar that cannot be written (read-only volume) only means rebuilding next time.
+ */
+public final class GzipBlockIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(GzipBlockIndex.class);
+
+    public static final String SIDECAR_SUFFIX = ".idx";
+
+    private static final int SIDECAR_MAGIC = 0x47424958;   // "GBIX"
+    private static final int HEADER_SCAN_SIZE = 64 * 1024;
+    private static final int INFLATE_BUFFER_SIZE = 256 * 1024;
+
+    private static final int FHCRC = 0x02;
+    private static final int FEXTRA = 0x04;
+    private static final int FNAME = 0x08;
+    private static final int FCOMMENT = 0x10;
+
+    /** Members [firstMember, endMember) as one independently decompressible span. */
+    public record Span(long compressedStart, long start, long end) {
+
+        public long length() {
+            return end - start;
+        }
+    }
+
+    private final long[] compressedOffsets;
+    private final long[] uncompressedOffsets;
+    private final long uncompressedSize;
+
+    GzipBlockIndex(long[] compressedOffsets, long[] uncompressedOffsets, long uncompressedSize) {
+        this.compressedOffsets = compressedOffsets;
+        this.uncompressedOffsets = uncompressedOffsets;
+        this.uncompressedSize = uncompressedSize;
+    }
+
+    public static boolean isGzip(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(2);
+            channel.read(magic, 0);
+            return magic.position() == 2 && (magic.get(0) & 0xff) == 0x1f && (magic.get(1) & 0xff) == 0x8b;
+        }
+    }
+
+    /** Reads the sidecar index when it matches {@code file}, otherwise builds and stores it. */
+    public static GzipBlockIndex load(Path file) throws IOException {
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        Path sidecar = sidecar(file);
+        if (Files.exists(sidecar)) {
+            try {
+                GzipBlockIndex index = readSidecar(sidecar, size, modified);
+                if (index != null) {
+                    return index;
+                }
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable gzip index {}: {}", sidecar, e.getMessage());
+            }
+        }
+
+        long started = System.nanoTime();
+        GzipBlockIndex index = build(file);
+        log.info("Indexed gzip file {}: members={} uncompressedBytes={} in {} ms", file,
+            index.memberCount(), index.uncompressedSize(), (System.nanoTime() - started) / 1_000_000);
+        try {
+            writeSidecar(sidecar, index, size, modified);
+        } catch (IOException e) {
+            log.warn("Gzip index not cached at {}: {}", sidecar, e.getMessage());
+        }
+        return index;
+    }
+
+    public static Path sidecar(Path file) {
+        return file.resolveSibling(file.getFileName() + SIDECAR_SUFFIX);
+    }
+
+    public int memberCount() {
+        return compressedOffsets.length;
+    }
+
+    public long uncompressedSize() {
+        return uncompressedSize;
+    }
+
+    /**
+     * Cuts the decompressed stream into at most {@code count} spans at member
+     * boundaries, each close to an equal share of the uncompressed bytes.
+     */
+    public List<Span> split(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be >= 1 but was " + count);
+        }
+        List<Span> spans = new ArrayList<>(count);
+        int members = memberCount();
+        if (members == 0) {
+            return spans;
+        }
+        int first = 0;
+        for (int i = 1; i <= count && first < members; i++) {
+            int end = (i == count) ? members : firstMemberAtOrAfter(uncompressedSize * i / count);
+            if (end > first) {
+                long spanEnd = end < members ? uncompressedOffsets[end] : uncompressedSize;
+                spans.add(new Span(compressedOffsets[first], uncompressedOffsets[first], spanEnd));
+                first = end;
+            }
+        }
+        return spans;
+    }
+
+    private int firstMemberAtOrAfter(long uncompressedOffset) {
+        int i = Arrays.binarySearch(uncompressedOffsets, uncompressedOffset);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    static GzipBlockIndex build(Path file) throws IOException {
+        List<long[]> members = new ArrayList<>();
+        long out = 0;
+        Inflater inflater = new Inflater(true);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long pos = 0;
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SCAN_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (pos + 18 <= size) {   // smallest member: 10-byte header, empty block, 8-byte trailer
+                head.clear();
+                head.limit((int) Math.min(HEADER_SCAN_SIZE, size - pos));
+                readFully(channel, head, pos);
+                if ((head.get(0) & 0xff) != 0x1f || (head.get(1) & 0xff) != 0x8b || head.get(2) != 8) {
+                    log.warn("Gzip file {} has {} trailing non-gzip bytes at {} — ignored", file, size - pos, pos);
+                    break;
+                }
+                int flags = head.get(3) & 0xff;
+                int p = 10;
+                int bgzfSize = -1;
+                if ((flags & FEXTRA) != 0) {
+                    int xlen = head.getShort(p) & 0xffff;
+                    int x = p + 2;
+                    int xend = x + xlen;
+                    while (x + 4 <= xend) {
+                        int slen = head.getShort(x + 2) & 0xffff;
+                        if (head.get(x) == 'B' && head.get(x + 1) == 'C' && slen == 2) {
+                            bgzfSize = (head.getShort(x + 4) & 0xffff) + 1;
+                        }
+                        x += 4 + slen;
+                    }
+                    p = xend;
+                }
+                if ((flags & FNAME) != 0) {
+                    p = skipZeroTerminated(head, p, pos);
+                }
+                if ((flags & FCOMMENT) != 0) {
+                    p = skipZeroTerminated(head, p, pos);
+                }
+                if ((flags & FHCRC) != 0) {
+                    p += 2;
+                }
+
+                long memberLength;
+                long memberBytes;
+                if (bgzfSize > 0) {
+                    memberLength = bgzfSize;
+                    ByteBuffer isize = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                    readFully(channel, isize, pos + bgzfSize - 4);
+                    memberBytes = isize.getInt(0) & 0xffffffffL;
+                } else {
+                    long[] inflated = inflateMember(channel, inflater, pos + p);
+                    memberLength = p + inflated[0] + 8;
+                    memberBytes = inflated[1];
+                }
+                if (memberBytes > 0) {   // BGZF ends with an empty EOF member
+                    members.add(new long[]{pos, out});
+                }
+                out += memberBytes;
+                pos += memberLength;
+            }
+        } finally {
+            inflater.end();
+        }
+
+        long[] compressed = new long[members.size()];
+        long[] uncompressed = new long[members.size()];
+        for (int i = 0; i < members.size(); i++) {
+            compressed[i] = members.get(i)[0];
+            uncompressed[i] = members.get(i)[1];
+        }
+        return new GzipBlockIndex(compressed, uncompressed, out);
+    }
+
+    /** Inflates one raw deflate stream; returns {compressed length, uncompressed length}. */
+    private static long[] inflateMember(FileChannel channel, Inflater inflater, long start) throws IOException {
+        inflater.reset();
+        ByteBuffer in = ByteBuffer.allocate(INFLATE_BUFFER_SIZE);
+        byte[] out = new byte[INFLATE_BUFFER_SIZE];
+        long position = start;
+        while (!inflater.finished()) {
+            if (inflater.needsInput()) {
+                in.clear();
+                int n = channel.read(in, position);
+                if (n <= 0) {
+                    throw new EOFException("Truncated gzip member starting before byte " + start);
+                }
+                position += n;
+                inflater.setInput(in.array(), 0, n);
+            }
+            try {
+                inflater.inflate(out);
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt gzip member starting before byte " + start, e);
+            }
+        }
+        return new long[]{position - start - inflater.getRemaining(), inflater.getBytesWritten()};
+    }
+
+    private static int skipZeroTerminated(ByteBuffer head, int p, long memberStart) throws IOException {
+        while (p < head.limit()) {
+            if (head.get(p++) == 0) {
+                return p;
+            }
+        }
+        throw new IOException("Gzip header at byte " + memberStart + " longer than " + HEADER_SCAN_SIZE + " bytes");
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException("Unexpected end of gzip file at byte " + (position + buffer.position()));
+            }
+        }
+    }
+
+    private static GzipBlockIndex readSidecar(Path sidecar, long size, long modified) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            if (in.readInt() != SIDECAR_MAGIC || in.readLong() != size || in.readLong() != modified) {
+                return null;   // stale: the gzip file was replaced
+            }
+            long uncompressedSize = in.readLong();
+            int count = in.readInt();
+            long[] compressed = new long[count];
+            long[] uncompressed = new long[count];
+            for (int i = 0; i < count; i++) {
+                compressed[i] = in.readLong();
+                uncompressed[i] = in.readLong();
+            }
+            return new GzipBlockIndex(compressed, uncompressed, uncompressedSize);
+        }
+    }
+
+    private static void writeSidecar(Path sidecar, GzipBlockIndex index, long size, long modified) throws IOException {
+        // Write-then-move: a concurrent reader sees the old sidecar or the complete new one
+        Path tmp = Files.createTempFile(sidecar.getParent(), sidecar.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(SIDECAR_MAGIC);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeLong(index.uncompressedSize);
+                out.writeInt(index.memberCount());
+                for (int i = 0; i < index.memberCount(); i++) {
+                    out.writeLong(index.compressedOffsets[i]);
+                    out.writeLong(index.uncompressedOffsets[i]);
+                }
+            }
+            Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
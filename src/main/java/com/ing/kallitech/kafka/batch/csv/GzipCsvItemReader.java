@@ -0,0 +1,172 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reader for one span of a gzip CSV file — the compressed counterpart of
+ * {@link MappedCsvItemReader}.
+ *
+ * The span's decompressed lines ({@link GzipRangeResource}) are read into a heap
+ * buffer and tokenized in place by {@link CsvRecordParser}, so apart from the
+ * inflater the per-row cost matches the mmap engine. The buffer grows to hold a
+ * line longer than itself. Blank and '#' lines are skipped, and byteOffset()
+ * reports the offset in the decompressed stream.
+ *
+ * Restart: a deflate stream cannot be entered mid-member, so open() with a
+ * reader.offset checkpoint inflates from the span's first member and discards
+ * everything before the checkpoint without parsing it — the rows of committed
+ * chunks are neither tokenized nor written again.
+ */
+public class GzipCsvItemReader implements ItemStreamReader<RecordDTO>, ByteOffsetAware {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024 * 1024;
+
+    private final GzipRangeResource resource;
+    private final CsvRecordParser parser;
+
+    private GzipRangeResource.LineRangeInputStream in;
+    private byte[] buffer;
+    private ByteBuffer view;
+    private int start;           // first unconsumed byte
+    private int limit;           // end of valid data
+    private boolean eof;
+    private long bufferOffset;   // decompressed offset of buffer[0]
+    private long lineNumber;
+
+    public GzipCsvItemReader(GzipRangeResource resource, byte delimiter) {
+        this.resource = resource;
+        this.parser = new CsvRecordParser(delimiter);
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        try {
+            in = resource.openLines();
+            bufferOffset = in.position();
+        } catch (IOException e) {
+            throw new ItemStreamException("Failed to open " + resource.getDescription(), e);
+        }
+        buffer = new byte[INITIAL_BUFFER_SIZE];
+        view = ByteBuffer.wrap(buffer);
+        start = 0;
+        limit = 0;
+        eof = false;
+        lineNumber = 0;
+
+        long checkpoint = executionContext.getLong(OFFSET_KEY, -1);
+        if (checkpoint > bufferOffset) {
+            try {
+                skipTo(checkpoint);
+            } catch (IOException e) {
+                throw new ItemStreamException("Failed to resume " + resource.getDescription() + " at " + checkpoint, e);
+            }
+            lineNumber = executionContext.getLong(LINE_KEY, 0);
+        }
+    }
+
+    private void skipTo(long offset) throws IOException {
+        while (bufferOffset + limit < offset && !eof) {
+            start = limit;     // everything buffered is before the checkpoint
+            fill();
+        }
+        start = (int) Math.min(limit, offset - bufferOffset);
+    }
+
+    @Override
+    public RecordDTO read() throws IOException {
+        while (true) {
+            int newline = indexOfNewline(start, limit);
+            if (newline < 0) {
+                if (eof) {
+                    if (start == limit) {
+                        return null;
+                    }
+                    newline = limit;   // last line without a trailing '\n'
+                } else {
+                    fill();
+                    continue;
+                }
+            }
+
+            int from = start;
+            start = Math.min(newline + 1, limit);
+            lineNumber++;
+
+            int to = newline;
+            if (to > from && buffer[to - 1] == '\r') {
+                to--;
+            }
+            if (to == from || buffer[from] == '#') {
+                continue;
+            }
+            return parser.parse(view, from, to, lineNumber);
+        }
+    }
+
+    private void fill() throws IOException {
+        if (start > 0) {
+            // Slide the partial line to the front
+            System.arraycopy(buffer, start, buffer, 0, limit - start);
+            bufferOffset += start;
+            limit -= start;
+            start = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            view = ByteBuffer.wrap(buffer);
+        }
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    private int indexOfNewline(int from, int to) {
+        byte[] b = buffer;
+        for (int i = from; i < to; i++) {
+            if (b[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long byteOffset() {
+        return bufferOffset + start;
+    }
+
+    @Override
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        // The checkpoint is written by the owner (CsvItemReader), which knows what the step consumed
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+        view = null;
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new ItemStreamException("Failed to close " + resource.getDescription(), e);
+            } finally {
+                in = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Spring {@link org.springframework.core.io.Resource} exposing the decompressed
+ * lines of one {@link GzipBlockIndex.Span} of a gzip file.
+ *
+ * Decompression starts at the span's first member and is read ahead on a separate
+ * thread ({@link ReadAheadInputStream}). Line ownership works in uncompressed
+ * offsets, the way Hadoop splits text: the first line (or its tail) is skipped —
+ * for the span at offset 0 that is the header — and every line that starts at or
+ * before the span's end is returned, decompressing into the next member if the
+ * last line runs past it. Adjacent spans therefore return every data line once.
+ */
+public class GzipRangeResource extends AbstractResource {
+
+    static final int READ_AHEAD_CHUNK = 1024 * 1024;
+    static final int READ_AHEAD_DEPTH = 4;
+
+    private final Path path;
+    private final GzipBlockIndex.Span span;
+    private final String threadName;
+
+    public GzipRangeResource(Path path, GzipBlockIndex.Span span, String threadName) {
+        this.path = path;
+        this.span = span;
+        this.threadName = threadName;
+    }
+
+    public GzipBlockIndex.Span getSpan() {
+        return span;
+    }
+
+    @Override
+    public boolean exists() {
+        return path.toFile().exists();
+    }
+
+    @Override
+    public File getFile() {
+        return path.toFile();
+    }
+
+    @Override
+    public String getDescription() {
+        return "gzip span [" + span.start() + ", " + span.end() + "] from member at " + span.compressedStart()
+            + " of file [" + path + "]";
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return openLines();
+    }
+
+    /** The span's lines; {@link LineRangeInputStream#position()} tracks the uncompressed offset. */
+    public LineRangeInputStream openLines() throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            channel.position(span.compressedStart());
+            InputStream gunzip = new GZIPInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel), 256 * 1024), 64 * 1024);
+            return new LineRangeInputStream(
+                new ReadAheadInputStream(gunzip, READ_AHEAD_CHUNK, READ_AHEAD_DEPTH, threadName), span);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Drops the first line, then ends after the line that contains span.end(). */
+    public static final class LineRangeInputStream extends InputStream {
+
+        private final InputStream in;
+        private final long end;
+        private final byte[] buffer = new byte[64 * 1024];
+        private int bufferPos;
+        private int bufferLimit;
+        private long position;           // uncompressed offset of buffer[bufferPos]
+        private boolean skipped;
+        private boolean done;
+
+        LineRangeInputStream(InputStream in, GzipBlockIndex.Span span) {
+            this.in = in;
+            this.end = span.end();
+            this.position = span.start();
+        }
+
+        /** Uncompressed offset of the next byte this stream returns. */
+        public long position() throws IOException {
+            skipFirstLine();
+            return position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            skipFirstLine();
+            if (len == 0) {
+                return 0;
+            }
+            if (done || !fill()) {
+                return -1;
+            }
+            int available = Math.min(len, bufferLimit - bufferPos);
+            if (position + available <= end) {
+                // No line of this chunk can start past the end: bulk copy
+                System.arraycopy(buffer, bufferPos, b, off, available);
+                bufferPos += available;
+                position += available;
+                return available;
+            }
+            int n = 0;
+            while (n < len && bufferPos < bufferLimit) {
+                byte c = buffer[bufferPos++];
+                b[off + n++] = c;
+                position++;
+                // position is now the start of the next line: owned only if <= end
+                if (c == '\n' && position > end) {
+                    done = true;
+                    break;
+                }
+            }
+            return n;
+        }
+
+        private void skipFirstLine() throws IOException {
+            if (skipped) {
+                return;
+            }
+            skipped = true;
+            while (fill()) {
+                byte c = buffer[bufferPos++];
+                position++;
+                if (c == '\n') {
+                    done = position > end;
+                    return;
+                }
+            }
+            done = true;
+        }
+
+        private boolean fill() throws IOException {
+            if (bufferPos < bufferLimit) {
+                return true;
+            }
+            int n = in.read(buffer, 0, buffer.length);
+            if (n <= 0) {
+                return false;
+            }
+            bufferPos = 0;
+            bufferLimit = n;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Parses eventTs into a Timestamp, equal to {@code Timestamp.from(Instant.parse(s))}.
+ *
+ * The shape the files use — {@code yyyy-MM-ddTHH:mm:ss[.S…]Z}, up to nine fraction
+ * digits — is decoded by position, with the epoch day computed arithmetically,
+ * so no Parsed/Instant/LocalDate objects are created. Any other text (offsets,
+ * lowercase 't'/'z', leap seconds, out-of-range fields) goes to Instant.parse,
+ * which accepts or rejects it with its usual DateTimeParseException.
+ *
+ * Rows of one file mostly share a handful of timestamps, so the last input and
+ * its result are kept: a repeat costs one byte comparison and returns the same
+ * Timestamp instance. Nothing downstream mutates eventTs; callers must not either.
+ *
+ * Not thread-safe: holds the last-seen entry, one instance per reader.
+ */
+public final class IsoTimestampParser {
+
+    private static final int MIN_LENGTH = 20;          // yyyy-MM-ddTHH:mm:ssZ
+    private static final int MAX_LENGTH = 30;          // ... .SSSSSSSSSZ
+    private static final long DAYS_0000_TO_1970 = 719_528L;
+
+    private final byte[] last = new byte[MAX_LENGTH];
+    private int lastLength = -1;
+    private Timestamp lastValue;
+
+    private final byte[] bytes = new byte[MAX_LENGTH];
+
+    /** Parses the ASCII bytes [off, off + len); an empty field is null. */
+    public Timestamp parse(byte[] b, int off, int len) {
+        if (len == 0) {
+            return null;
+        }
+        if (len == lastLength && Arrays.equals(b, off, off + len, last, 0, len)) {
+            return lastValue;
+        }
+        Timestamp value = decode(b, off, len);
+        if (value == null) {
+            value = Timestamp.from(Instant.parse(new String(b, off, len, StandardCharsets.ISO_8859_1)));
+        }
+        if (len <= MAX_LENGTH) {
+            System.arraycopy(b, off, last, 0, len);
+            lastLength = len;
+            lastValue = value;
+        }
+        return value;
+    }
+
+    /** Same as {@link #parse(byte[], int, int)} for an already trimmed String; empty is null. */
+    public Timestamp parse(String s) {
+        if (s == null || s.isEmpty()) {
+            return null;
+        }
+        int len = s.length();
+        if (len > MAX_LENGTH) {
+            return Timestamp.from(Instant.parse(s));
+        }
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                return Timestamp.from(Instant.parse(s));
+            }
+            bytes[i] = (byte) c;
+        }
+        return parse(bytes, 0, len);
+    }
+
+    /** The fast shape only; null means "let Instant.parse decide". */
+    private static Timestamp decode(byte[] b, int off, int len) {
+        if (len < MIN_LENGTH || len > MAX_LENGTH || len == MIN_LENGTH + 1
+            || b[off + 4] != '-' || b[off + 7] != '-' || b[off + 10] != 'T'
+            || b[off + 13] != ':' || b[off + 16] != ':' || b[off + len - 1] != 'Z') {
+            return null;
+        }
+        int year = digits(b, off, 4);
+        int month = digits(b, off + 5, 2);
+        int day = digits(b, off + 8, 2);
+        int hour = digits(b, off + 11, 2);
+        int minute = digits(b, off + 14, 2);
+        int second = digits(b, off + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > monthLength(year, month)
+            || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+        int nanos = 0;
+        if (len > MIN_LENGTH) {
+            // ".S…" between the seconds and the 'Z'
+            if (b[off + 19] != '.') {
+                return null;
+            }
+            int fractionDigits = len - MIN_LENGTH - 1;
+            nanos = digits(b, off + 20, fractionDigits);
+            if (nanos < 0) {
+                return null;
+            }
+            for (int i = fractionDigits; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+        long epochSecond = epochDay(year, month, day) * 86_400L + hour * 3_600L + minute * 60L + second;
+        Timestamp ts = new Timestamp(epochSecond * 1_000L);
+        ts.setNanos(nanos);
+        return ts;
+    }
+
+    /** Value of {@code count} ASCII digits, or -1 when any is not a digit. */
+    private static int digits(byte[] b, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = b[i] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private static int monthLength(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeap(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static boolean isLeap(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /** LocalDate.toEpochDay() for a proleptic-Gregorian year >= 0. */
+    private static long epochDay(int year, int month, int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367L * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeap(year)) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+}
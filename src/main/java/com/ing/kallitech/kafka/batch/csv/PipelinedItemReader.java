@@ -0,0 +1,175 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ParseException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Overlaps reading with the rest of the chunk inside one partition.
+ *
+ * A producer thread drains the delegate, runs {@code stage} on every item
+ * (e.g. hashing) and hands the results to the step thread through a bounded
+ * queue, so parsing of chunk N+1 proceeds while chunk N is in the writer's
+ * JDBC round-trip. The step thread still pulls items one by one through
+ * {@link #read()}, so chunk boundaries, transactions, skip and retry behave
+ * exactly as with the plain reader.
+ *
+ * Ordering is preserved, including errors: a parse exception is queued in the
+ * position it occurred and rethrown from read(), where the step's skip policy
+ * sees it; the producer then carries on. Any other exception ends the stream
+ * after it is rethrown.
+ *
+ * Each queued slot carries the delegate's byte offset and line number after that
+ * item, so {@link #byteOffset()} / {@link #lineNumber()} — and therefore the
+ * restart checkpoint — reflect what the step has consumed, not how far the
+ * producer has run ahead.
+ */
+public class PipelinedItemReader<T> implements ItemStreamReader<T>, ByteOffsetAware {
+
+    private static final long JOIN_TIMEOUT_MS = 10_000;
+
+    private record Slot<T>(T item, Exception error, long byteOffset, long lineNumber) {}
+
+    private final ItemStreamReader<T> delegate;
+    private final Consumer<T> stage;
+    private final int capacity;
+    private final String threadName;
+
+    private BlockingQueue<Slot<T>> queue;
+    private Thread producer;
+    private volatile boolean stopped;
+    private boolean exhausted;
+    private long byteOffset = -1;
+    private long lineNumber = -1;
+
+    public PipelinedItemReader(ItemStreamReader<T> delegate, Consumer<T> stage, int capacity, String threadName) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0 but was " + capacity);
+        }
+        this.delegate = delegate;
+        this.stage = stage;
+        this.capacity = capacity;
+        this.threadName = threadName;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        delegate.open(executionContext);
+        queue = new ArrayBlockingQueue<>(capacity);
+        stopped = false;
+        exhausted = false;
+        BlockingQueue<Slot<T>> handOff = queue;
+        producer = new Thread(() -> produce(handOff), threadName);
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    @Override
+    public T read() throws Exception {
+        if (exhausted) {
+            return null;
+        }
+        Slot<T> slot;
+        try {
+            slot = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ItemStreamException("Interrupted waiting for " + threadName, e);
+        }
+        if (slot.byteOffset() >= 0) {
+            byteOffset = slot.byteOffset();
+            lineNumber = slot.lineNumber();
+        }
+        if (slot.error() != null) {
+            throw slot.error();
+        }
+        if (slot.item() == null) {
+            exhausted = true;
+        }
+        return slot.item();
+    }
+
+    @Override
+    public long byteOffset() {
+        return byteOffset;
+    }
+
+    @Override
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        // The delegate is owned by the producer thread; state is tracked per consumed slot
+    }
+
+    @Override
+    public void close() {
+        stopped = true;
+        if (producer != null) {
+            producer.interrupt();
+            try {
+                producer.join(JOIN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            producer = null;
+        }
+        queue = null;
+        delegate.close();
+    }
+
+    private void produce(BlockingQueue<Slot<T>> handOff) {
+        try {
+            while (!stopped) {
+                T item;
+                try {
+                    item = delegate.read();
+                } catch (ParseException e) {
+                    put(handOff, new Slot<>(null, e, offset(), line()));
+                    continue;
+                } catch (Exception e) {
+                    put(handOff, new Slot<>(null, e, offset(), line()));
+                    break;
+                }
+                if (item == null) {
+                    break;
+                }
+                try {
+                    stage.accept(item);
+                } catch (RuntimeException e) {
+                    put(handOff, new Slot<>(null, e, offset(), line()));
+                    break;
+                }
+                put(handOff, new Slot<>(item, null, offset(), line()));
+            }
+            // End marker, also after a fatal error in case the step reads on
+            put(handOff, new Slot<>(null, null, offset(), line()));
+        } catch (InterruptedException e) {
+            // close() while blocked on a full queue
+        }
+    }
+
+    private void put(BlockingQueue<Slot<T>> handOff, Slot<T> slot) throws InterruptedException {
+        while (!stopped) {
+            if (handOff.offer(slot, 100, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    private long offset() {
+        return delegate instanceof ByteOffsetAware aware ? aware.byteOffset() : -1;
+    }
+
+    private long line() {
+        return delegate instanceof ByteOffsetAware aware ? aware.lineNumber() : -1;
+    }
+}
@@ -0,0 +1,132 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads {@code in} on its own thread, up to {@code depth} chunks ahead of the consumer.
+ *
+ * Wrapped around a GZIPInputStream this moves inflation off the step thread: the
+ * next chunk decompresses while the current one is tokenized. An IOException of
+ * the producer is rethrown from read() once the chunks before it are consumed.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private static final byte[] EOF = new byte[0];
+    private static final long JOIN_TIMEOUT_MS = 10_000;
+
+    private final InputStream in;
+    private final BlockingQueue<byte[]> queue;
+    private final int chunkSize;
+    private final Thread producer;
+
+    private volatile boolean closed;
+    private volatile IOException error;
+
+    private byte[] current;
+    private int position;
+
+    public ReadAheadInputStream(InputStream in, int chunkSize, int depth, String threadName) {
+        if (chunkSize <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("chunkSize and depth must be > 0");
+        }
+        this.in = in;
+        this.chunkSize = chunkSize;
+        this.queue = new ArrayBlockingQueue<>(depth);
+        this.producer = new Thread(this::produce, threadName);
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    private void produce() {
+        try {
+            while (!closed) {
+                byte[] chunk = new byte[chunkSize];
+                int n = in.readNBytes(chunk, 0, chunkSize);
+                if (n == 0) {
+                    break;
+                }
+                put(n == chunkSize ? chunk : Arrays.copyOf(chunk, n));
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            return;   // close() while blocked on a full queue
+        }
+        try {
+            put(EOF);
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    private void put(byte[] chunk) throws InterruptedException {
+        while (!closed) {
+            if (queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    private boolean fill() throws IOException {
+        if (current == EOF) {
+            return false;
+        }
+        if (current != null && position < current.length) {
+            return true;
+        }
+        try {
+            current = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for read-ahead");
+        }
+        position = 0;
+        if (current == EOF) {
+            if (error != null) {
+                throw error;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        producer.interrupt();
+        try {
+            producer.join(JOIN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        in.close();
+    }
+}
@@ -0,0 +1,8 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+/**
+ * One claimed batch_work_unit row: its unit_idx (the key within the job instance)
+ * and the byte range it covers.
+ */
+public record WorkUnit(int index, ByteRange range) {
+}
@@ -0,0 +1,134 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Reads a sequence of work units claimed at run time instead of one fixed range.
+ *
+ * Whenever the current unit is exhausted the next one is taken from {@code claimNext}
+ * (a shared queue, so a partition that hits cheap rows simply claims more units) and
+ * read through a fresh range reader from {@code rangeReader}. The stream ends when
+ * the queue is empty.
+ *
+ * Units are claimed in ascending file order, so the consumed byte offset tells which
+ * claimed units are finished: every unit whose end is at or below it.
+ * {@link #completedUpTo} hands those out once, for the caller to record after the
+ * chunk commits. Range readers that cannot report an offset are tracked at unit
+ * granularity (the current unit's start until it is exhausted).
+ * {@link #consumedBytes} turns the same offset into the bytes this reader has
+ * consumed across all its units, the measure of its progress.
+ */
+public class WorkUnitItemReader<T> implements ItemStreamReader<T>, ByteOffsetAware {
+
+    private final Supplier<WorkUnit> claimNext;
+    private final Function<ByteRange, ItemStreamReader<T>> rangeReader;
+
+    // Claimed (producer side) but not yet reported complete; read from the step thread
+    private final Queue<WorkUnit> claimed = new ConcurrentLinkedQueue<>();
+
+    private ItemStreamReader<T> current;
+    private ByteRange currentUnit;
+    private long lastEnd = -1;
+    private long completedBytes;   // units handed out by completedUpTo
+    private boolean exhausted;
+
+    public WorkUnitItemReader(Supplier<WorkUnit> claimNext, Function<ByteRange, ItemStreamReader<T>> rangeReader) {
+        this.claimNext = claimNext;
+        this.rangeReader = rangeReader;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) {
+        exhausted = false;
+    }
+
+    @Override
+    public T read() throws Exception {
+        while (!exhausted) {
+            if (current == null && !advance()) {
+                return null;
+            }
+            T item = current.read();
+            if (item != null) {
+                return item;
+            }
+            closeCurrent();
+        }
+        return null;
+    }
+
+    private boolean advance() {
+        WorkUnit unit = claimNext.get();
+        if (unit == null) {
+            exhausted = true;
+            return false;
+        }
+        claimed.add(unit);
+        currentUnit = unit.range();
+        lastEnd = currentUnit.end();
+        current = rangeReader.apply(currentUnit);
+        current.open(new ExecutionContext());
+        return true;
+    }
+
+    @Override
+    public long byteOffset() {
+        if (exhausted) {
+            return lastEnd;
+        }
+        if (current == null) {
+            return currentUnit == null ? -1 : currentUnit.end();
+        }
+        long offset = current instanceof ByteOffsetAware aware ? aware.byteOffset() : -1;
+        return offset >= 0 ? offset : currentUnit.start();
+    }
+
+    /** Claimed units that end at or before {@code consumedOffset}, each returned once. */
+    public List<WorkUnit> completedUpTo(long consumedOffset) {
+        List<WorkUnit> done = new ArrayList<>();
+        WorkUnit unit;
+        while ((unit = claimed.peek()) != null && unit.range().end() <= consumedOffset) {
+            done.add(claimed.poll());
+            completedBytes += unit.range().length();
+        }
+        return done;
+    }
+
+    /**
+     * Bytes consumed up to {@code consumedOffset}: the units completedUpTo has returned
+     * plus the part of the unit in progress. Call after {@link #completedUpTo} with the
+     * same offset.
+     */
+    public long consumedBytes(long consumedOffset) {
+        WorkUnit unit = claimed.peek();
+        if (unit != null && consumedOffset > unit.range().start() && consumedOffset < unit.range().end()) {
+            return completedBytes + consumedOffset - unit.range().start();
+        }
+        return completedBytes;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) {
+        // Progress lives in batch_work_unit, not in the step's ExecutionContext
+    }
+
+    @Override
+    public void close() {
+        closeCurrent();
+    }
+
+    private void closeCurrent() {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.ing.kallitech.kafka.batch.dedup;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free Bloom filter over keys that are already uniformly distributed
+ * (record hashes), so the caller supplies two 64-bit halves of the key and the
+ * k probe positions are derived by double hashing: h1 + i·h2 (Kirsch–Mitzenmacher).
+ *
+ * Bits live in an AtomicLongArray: concurrent partitions may add and query at
+ * the same time without locks. A concurrent add can only make a query return
+ * "maybe present" a little earlier, never produce a false negative for a key
+ * whose add has completed.
+ */
+public final class BloomFilter {
+
+    private static final int SNAPSHOT_MAGIC = 0x424c4d31;   // "BLM1"
+
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashCount;
+    private final LongAdder insertions = new LongAdder();
+
+    private BloomFilter(long bitSize, int hashCount) {
+        long words = (bitSize + 63) >>> 6;
+        if (words > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter too large: " + bitSize + " bits");
+        }
+        this.bits = new AtomicLongArray((int) words);
+        this.bitSize = words << 6;
+        this.hashCount = hashCount;
+    }
+
+    /** Sizes the filter for {@code expectedInsertions} keys at false-positive rate {@code fpp}. */
+    public static BloomFilter create(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be > 0 but was " + expectedInsertions);
+        }
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("fpp must be in (0, 1) but was " + fpp);
+        }
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (ln2 * ln2));
+        int k = Math.max(1, (int) Math.round((double) m / expectedInsertions * ln2));
+        return new BloomFilter(m, k);
+    }
+
+    public void put(long h1, long h2) {
+        long combined = h1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (combined & Long.MAX_VALUE) % bitSize;
+            setBit(bit);
+            combined += h2;
+        }
+        insertions.increment();
+    }
+
+    public boolean mightContain(long h1, long h2) {
+        long combined = h1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = (combined & Long.MAX_VALUE) % bitSize;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+            combined += h2;
+        }
+        return true;
+    }
+
+    /** Keys added so far (re-adds of the same key are counted again). */
+    public long insertions() {
+        return insertions.sum();
+    }
+
+    /** False-positive probability at the current fill: (1 - e^(-kn/m))^k. */
+    public double expectedFpp() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * insertions() / bitSize), hashCount);
+    }
+
+    public long bitSize() {
+        return bitSize;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    public long memoryBytes() {
+        return bitSize >>> 3;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeLong(bitSize);
+        out.writeInt(hashCount);
+        out.writeLong(insertions());
+        for (int i = 0; i < bits.length(); i++) {
+            out.writeLong(bits.get(i));
+        }
+    }
+
+    public static BloomFilter readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a Bloom filter snapshot");
+        }
+        BloomFilter filter = new BloomFilter(in.readLong(), in.readInt());
+        filter.insertions.add(in.readLong());
+        for (int i = 0; i < filter.bits.length(); i++) {
+            filter.bits.set(i, in.readLong());
+        }
+        return filter;
+    }
+
+    private void setBit(long bit) {
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current;
+        while (((current = bits.get(word)) & mask) == 0) {
+            if (bits.compareAndSet(word, current, current | mask)) {
+                return;
+            }
+        }
+    }
+}
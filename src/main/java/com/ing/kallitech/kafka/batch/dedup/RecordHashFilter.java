@@ -0,0 +1,323 @@
+package com.ing.kallitech.kafka.batch.dedup;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import com.ing.kallitech.kafka.batch.service.OracleJdbcBatchWriter;
+import com.ing.kallitech.kafka.batch.service.RecordHasher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.item.Chunk;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * NEW: Per-pod Bloom filter of record hashes already in batch_records.
+ *
+ * Replays from the DLQ and re-sent files make most rows duplicates, and every
+ * chunk holding one pays a failed INSERT plus a MERGE. CsvItemProcessor calls
+ * {@link #tagMaybeDuplicate} on each row, which costs no database access: a
+ * definite "absent" goes to the writer's plain batched INSERT, a "maybe present"
+ * is tagged and OracleJdbcBatchWriter sends it to its batched MERGE, which skips
+ * the rows already loaded in the same round trip. No row is checked on its own.
+ *
+ * The filter is only an optimization — the unique constraint stays the source
+ * of truth. A stale filter (rows loaded by another pod, or since the snapshot)
+ * yields false negatives, which the writer's duplicate-key fallback absorbs; a
+ * false positive only costs the row a MERGE instead of an INSERT.
+ *
+ * Lifecycle:
+ *  - startup: load the snapshot file if it matches the hash mode, otherwise
+ *    seed by streaming the hash column of batch_records.
+ *  - runtime: hashes of each written chunk are added after its transaction
+ *    commits (rolled-back chunks leave no trace). The MERGE outcome of the
+ *    tagged rows counts confirmed duplicates and false positives.
+ *  - after each csvImportJob and at shutdown: the filter is written back to the
+ *    snapshot file if keys were added since the last save, so a killed pod
+ *    restarts from its last finished job instead of rescanning batch_records.
+ *    Worker pods of remote partitioning run no job listener and save at shutdown.
+ *
+ * Keys are the first 128 bits of the record hash, which is already uniformly
+ * distributed, so no re-hashing is done. One filter serves all sources:
+ * batch_records has no source-system column to partition it by.
+ */
+@Component
+public class RecordHashFilter implements ItemWriteListener<RecordDTO>, JobExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(RecordHashFilter.class);
+
+    private static final int SEED_FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final RecordHasher recordHasher;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double fpp;
+    private final Path snapshotPath;
+
+    private volatile BloomFilter filter;
+    private long savedInsertions = -1;   // guarded by this
+
+    private Counter definitelyNew;
+    private Counter confirmedDuplicate;
+    private Counter falsePositive;
+
+    public RecordHashFilter(JdbcTemplate jdbcTemplate,
+                            MeterRegistry meterRegistry,
+                            RecordHasher recordHasher,
+                            @Value("${batch.job.dedup-filter.enabled:true}") boolean enabled,
+                            @Value("${batch.job.dedup-filter.expected-insertions:10000000}") long expectedInsertions,
+                            @Value("${batch.job.dedup-filter.fpp:0.01}") double fpp,
+                            @Value("${batch.job.dedup-filter.snapshot-path:}") String snapshotPath) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.recordHasher = recordHasher;
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        this.snapshotPath = StringUtils.hasText(snapshotPath) ? Paths.get(snapshotPath) : null;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Record hash Bloom filter disabled");
+            return;
+        }
+        BloomFilter loaded = loadSnapshot();
+        filter = loaded != null ? loaded : seedFromDatabase();
+        if (loaded != null) {
+            savedInsertions = loaded.insertions();
+        }
+        log.info("Record hash Bloom filter ready: {} keys, {} bits, k={}, {} bytes, expected fpp={}",
+            filter.insertions(), filter.bitSize(), filter.hashCount(), filter.memoryBytes(),
+            String.format("%.5f", filter.expectedFpp()));
+
+        definitelyNew      = lookupCounter("new");
+        confirmedDuplicate = lookupCounter("duplicate");
+        falsePositive      = lookupCounter("false_positive");
+
+        Gauge.builder("batch.dedup.filter.fpp.expected", this, f -> f.filter.expectedFpp())
+            .description("Bloom filter false-positive probability at the current fill")
+            .register(meterRegistry);
+        Gauge.builder("batch.dedup.filter.fpp.observed", this, RecordHashFilter::observedFpp)
+            .description("Share of truly new records the filter reported as maybe present")
+            .register(meterRegistry);
+        Gauge.builder("batch.dedup.filter.memory", this, f -> f.filter.memoryBytes())
+            .description("Bloom filter bit array size")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("batch.dedup.filter.insertions", this, f -> f.filter.insertions())
+            .description("Record hashes added to the Bloom filter")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        saveSnapshot();
+    }
+
+    /** Writes the filter to the snapshot file, unless no key was added since the last save. */
+    @PreDestroy
+    public synchronized void saveSnapshot() {
+        if (!enabled || filter == null || snapshotPath == null) {
+            return;
+        }
+        long insertions = filter.insertions();
+        if (insertions == savedInsertions) {
+            return;
+        }
+        try {
+            Path parent = snapshotPath.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, snapshotPath.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeUTF(recordHasher.getMode().name());
+                filter.writeTo(out);
+            }
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Keys added while writing may or may not be in the file; the next save includes them
+            savedInsertions = insertions;
+            log.info("Saved Bloom filter snapshot: {} ({} keys)", snapshotPath, insertions);
+        } catch (IOException e) {
+            log.warn("Failed to save Bloom filter snapshot {} — next start will seed from the database",
+                snapshotPath, e);
+        }
+    }
+
+    /**
+     * Tags the record {@link RecordDTO#setMaybeDuplicate maybeDuplicate} when its
+     * hash may already be loaded. Never touches the database.
+     */
+    public void tagMaybeDuplicate(RecordDTO rec) {
+        if (!enabled) {
+            return;
+        }
+        long[] key = key(rec);
+        if (key == null || !filter.mightContain(key[0], key[1])) {
+            definitelyNew.increment();
+            return;
+        }
+        rec.setMaybeDuplicate(true);
+    }
+
+    // ── ItemWriteListener: add written hashes once the chunk commits ─────────
+
+    @Override
+    public void afterWrite(Chunk<? extends RecordDTO> items) {
+        if (!enabled) {
+            return;
+        }
+        List<long[]> keys = new ArrayList<>(items.size());
+        int duplicates = 0;
+        int falsePositives = 0;
+        for (RecordDTO rec : items) {
+            long[] key = key(rec);
+            if (key != null) {
+                keys.add(key);
+            }
+            if (rec.isMaybeDuplicate()) {
+                // The writer's MERGE decided: skipped as present, or inserted after all
+                if (OracleJdbcBatchWriter.STATUS_LOADED.equals(rec.getStatus())) {
+                    falsePositives++;
+                } else {
+                    duplicates++;
+                }
+            }
+        }
+        int confirmed = duplicates;
+        int wrong = falsePositives;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            committed(keys, confirmed, wrong);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                committed(keys, confirmed, wrong);
+            }
+        });
+    }
+
+    private void committed(List<long[]> keys, int duplicates, int falsePositives) {
+        addAll(keys);
+        confirmedDuplicate.increment(duplicates);
+        falsePositive.increment(falsePositives);
+    }
+
+    private void addAll(List<long[]> keys) {
+        BloomFilter f = filter;
+        for (long[] key : keys) {
+            f.put(key[0], key[1]);
+        }
+    }
+
+    private BloomFilter loadSnapshot() {
+        if (snapshotPath == null || !Files.isRegularFile(snapshotPath)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            String mode = in.readUTF();
+            if (!recordHasher.getMode().name().equals(mode)) {
+                log.info("Ignoring Bloom filter snapshot {}: built for hash mode {}", snapshotPath, mode);
+                return null;
+            }
+            BloomFilter loaded = BloomFilter.readFrom(in);
+            log.info("Loaded Bloom filter snapshot {}", snapshotPath);
+            return loaded;
+        } catch (IOException e) {
+            log.warn("Unreadable Bloom filter snapshot {} — seeding from the database", snapshotPath, e);
+            return null;
+        }
+    }
+
+    private BloomFilter seedFromDatabase() {
+        BloomFilter seeded = BloomFilter.create(expectedInsertions, fpp);
+        String column = recordHasher.hashColumn();
+        JdbcTemplate seedTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        seedTemplate.setFetchSize(SEED_FETCH_SIZE);
+        try {
+            seedTemplate.query("SELECT " + column + " FROM batch_records WHERE " + column + " IS NOT NULL", rs -> {
+                long[] key = recordHasher.isBinary() ? keyOf(rs.getBytes(1)) : keyOf(rs.getString(1));
+                if (key != null) {
+                    seeded.put(key[0], key[1]);
+                }
+            });
+        } catch (DataAccessException e) {
+            // Starting empty only costs extra duplicate-key fallbacks, never correctness
+            log.warn("Failed to seed Bloom filter from batch_records — starting empty", e);
+        }
+        return seeded;
+    }
+
+    private Counter lookupCounter(String result) {
+        return Counter.builder("batch.dedup.filter.lookups")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private double observedFpp() {
+        double fp = falsePositive.count();
+        double negatives = fp + definitelyNew.count();
+        return negatives == 0 ? 0 : fp / negatives;
+    }
+
+    private long[] key(RecordDTO rec) {
+        return recordHasher.isBinary() ? keyOf(rec.getRecordHashBytes()) : keyOf(rec.getRecordHash());
+    }
+
+    private static long[] keyOf(byte[] hash) {
+        if (hash == null || hash.length < 16) {
+            return null;
+        }
+        long h1 = 0;
+        long h2 = 0;
+        for (int i = 0; i < 8; i++) {
+            h1 = (h1 << 8) | (hash[i] & 0xff);
+            h2 = (h2 << 8) | (hash[i + 8] & 0xff);
+        }
+        return new long[] {h1, h2};
+    }
+
+    private static long[] keyOf(String hex) {
+        if (hex == null || hex.length() < 32) {
+            return null;
+        }
+        long h1 = 0;
+        long h2 = 0;
+        for (int i = 0; i < 16; i++) {
+            int d1 = Character.digit(hex.charAt(i), 16);
+            int d2 = Character.digit(hex.charAt(i + 16), 16);
+            if (d1 < 0 || d2 < 0) {
+                return null;
+            }
+            h1 = (h1 << 4) | d1;
+            h2 = (h2 << 4) | d2;
+        }
+        return new long[] {h1, h2};
+    }
+}
@@ -33,6 +33,9 @@ public class Record {
     // Enriched by processor
     @Column(name = "record_hash")
     private String recordHash;      // SHA-256(externalId|category|eventTs) — idempotency key
+
+    @Column(name = "record_hash_bin")
+    private byte[] recordHashBin;   // Binary hash when batch.job.hash-mode is sha256/murmur3-128
     
     @Column(name = "job_id")
     private String jobId;
@@ -112,6 +115,14 @@ public class Record {
         this.recordHash = recordHash;
     }
 
+    public byte[] getRecordHashBin() {
+        return recordHashBin;
+    }
+
+    public void setRecordHashBin(byte[] recordHashBin) {
+        this.recordHashBin = recordHashBin;
+    }
+
     public String getJobId() {
         return jobId;
     }
@@ -0,0 +1,109 @@
+package com.ing.kallitech.kafka.batch.executor;
+
+/**
+ * AIMD limit on concurrently running partitions.
+ *
+ * Each interval is judged on a {@link Sample}:
+ *  - back off multiplicatively when threads are queueing for a DB connection
+ *    or the mean chunk write time exceeds {@code latencyTolerance} × the best
+ *    latency seen recently;
+ *  - grow by one while the pool has spare connections and write throughput is
+ *    still rising with the last increase;
+ *  - otherwise hold.
+ *
+ * The latency baseline is the lowest mean seen, drifting up by 1% per busy
+ * interval so that a permanently slower database (bigger rows, busier Oracle)
+ * becomes the new normal instead of pinning the limit at the floor.
+ *
+ * Not thread-safe: driven by a single tuner thread.
+ */
+public class AdaptiveConcurrencyController {
+
+    /** Throughput must improve by more than this fraction to justify another thread. */
+    static final double GAIN_THRESHOLD = 0.05;
+
+    private static final double BASELINE_DRIFT = 1.01;
+
+    /**
+     * One observation interval.
+     *
+     * @param pendingConnections threads waiting for a pooled connection
+     * @param activeConnections  connections in use
+     * @param maxConnections     pool size, or 0 when unknown
+     * @param meanWriteMillis    mean batch.write.duration over the interval, or NaN with no writes
+     * @param recordsPerSecond   batch.records.written rate over the interval
+     */
+    public record Sample(double pendingConnections, double activeConnections, double maxConnections,
+                         double meanWriteMillis, double recordsPerSecond) {}
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int reservedConnections;
+    private final double latencyTolerance;
+    private final double decreaseFactor;
+
+    private int limit;
+    private double baselineMillis = Double.NaN;
+    private double lastThroughput;
+
+    public AdaptiveConcurrencyController(int minLimit, int maxLimit, int initialLimit,
+                                         int reservedConnections, double latencyTolerance, double decreaseFactor) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Require 1 <= min <= max but was " + minLimit + ".." + maxLimit);
+        }
+        if (decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new IllegalArgumentException("decreaseFactor must be in (0, 1) but was " + decreaseFactor);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.reservedConnections = reservedConnections;
+        this.latencyTolerance = latencyTolerance;
+        this.decreaseFactor = decreaseFactor;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    public double baselineMillis() {
+        return baselineMillis;
+    }
+
+    /** Applies one interval's observation and returns the new limit. */
+    public int update(Sample sample) {
+        int cap = cap(sample.maxConnections());
+        boolean writing = !Double.isNaN(sample.meanWriteMillis());
+
+        if (writing) {
+            baselineMillis = Double.isNaN(baselineMillis)
+                ? sample.meanWriteMillis()
+                : Math.min(baselineMillis * BASELINE_DRIFT, sample.meanWriteMillis());
+        }
+
+        boolean starved = sample.pendingConnections() > 0;
+        boolean slow = writing && sample.meanWriteMillis() > baselineMillis * latencyTolerance;
+
+        if (starved || slow) {
+            limit = Math.max(minLimit, (int) Math.floor(limit * decreaseFactor));
+        } else if (writing
+                && sample.recordsPerSecond() > lastThroughput * (1 + GAIN_THRESHOLD)
+                && sample.activeConnections() < cap) {
+            limit = limit + 1;
+        }
+        limit = Math.min(limit, cap);
+
+        if (writing) {
+            lastThroughput = sample.recordsPerSecond();
+        }
+        return limit;
+    }
+
+    /** Never let partitions take the connections the JobRepository needs. */
+    private int cap(double maxConnections) {
+        if (maxConnections <= 0) {
+            return maxLimit;
+        }
+        return Math.max(minLimit, Math.min(maxLimit, (int) maxConnections - reservedConnections));
+    }
+}
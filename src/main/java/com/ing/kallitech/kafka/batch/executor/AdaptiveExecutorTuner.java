@@ -0,0 +1,162 @@
+package com.ing.kallitech.kafka.batch.executor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NEW: batch.job.executor-mode=adaptive — resizes batchTaskExecutor every
+ * interval from what the database is telling us.
+ *
+ * Inputs (all from the MeterRegistry):
+ *  - hikaricp.connections.pending / active / max — the pool is shared with
+ *    the JobRepository, so partitions are capped at max - reserved-connections
+ *    and back off as soon as anyone queues for a connection;
+ *  - batch.write.duration — mean chunk write time over the interval;
+ *  - batch.records.written — throughput over the interval.
+ *
+ * The decision is made by {@link AdaptiveConcurrencyController} (AIMD). The
+ * executor runs with core = max = limit and an unbounded queue, so the limit
+ * is exactly the number of partitions running at once. Shrinking never
+ * interrupts a running partition; surplus threads exit when they go idle.
+ */
+@Component
+@ConditionalOnProperty(name = "batch.job.executor-mode", havingValue = "adaptive")
+public class AdaptiveExecutorTuner {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveExecutorTuner.class);
+
+    private final ThreadPoolTaskExecutor executor;
+    private final MeterRegistry meterRegistry;
+    private final AdaptiveConcurrencyController controller;
+    private final long intervalMs;
+
+    private ScheduledExecutorService scheduler;
+
+    private long lastWriteCount;
+    private double lastWriteMillis;
+    private double lastWritten;
+    private long lastSampleNanos;
+
+    public AdaptiveExecutorTuner(@Qualifier("batchTaskExecutor") ThreadPoolTaskExecutor executor,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${batch.job.adaptive.min-threads:1}") int minThreads,
+                                 @Value("${batch.job.thread-pool-max-size:8}") int maxThreads,
+                                 @Value("${batch.job.adaptive.reserved-connections:2}") int reservedConnections,
+                                 @Value("${batch.job.adaptive.latency-tolerance:2.0}") double latencyTolerance,
+                                 @Value("${batch.job.adaptive.decrease-factor:0.7}") double decreaseFactor,
+                                 @Value("${batch.job.adaptive.interval-ms:5000}") long intervalMs) {
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.controller = new AdaptiveConcurrencyController(minThreads, maxThreads, executor.getCorePoolSize(),
+            reservedConnections, latencyTolerance, decreaseFactor);
+        this.intervalMs = intervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        resize(controller.limit());
+        Gauge.builder("batch.executor.concurrency.limit", controller, AdaptiveConcurrencyController::limit)
+            .description("Partitions allowed to run concurrently")
+            .register(meterRegistry);
+        Gauge.builder("batch.executor.write.baseline", controller, AdaptiveConcurrencyController::baselineMillis)
+            .description("Best recent mean chunk write time the limit is judged against")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+
+        lastSampleNanos = System.nanoTime();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "batch-executor-tuner");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::tune, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        log.info("Adaptive partition executor: limit={} interval={}ms", controller.limit(), intervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    void tune() {
+        try {
+            int before = controller.limit();
+            int after = controller.update(sample());
+            if (after != before) {
+                resize(after);
+                log.info("Partition concurrency {} -> {}", before, after);
+            }
+        } catch (RuntimeException e) {
+            // Never let a bad sample kill the scheduler thread
+            log.warn("Adaptive executor tuning failed", e);
+        }
+    }
+
+    private AdaptiveConcurrencyController.Sample sample() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - lastSampleNanos) / 1e9);
+        lastSampleNanos = now;
+
+        double meanWriteMillis = Double.NaN;
+        Timer writeTimer = meterRegistry.find("batch.write.duration").timer();
+        if (writeTimer != null) {
+            long count = writeTimer.count();
+            double totalMillis = writeTimer.totalTime(TimeUnit.MILLISECONDS);
+            if (count > lastWriteCount) {
+                meanWriteMillis = (totalMillis - lastWriteMillis) / (count - lastWriteCount);
+            }
+            lastWriteCount = count;
+            lastWriteMillis = totalMillis;
+        }
+
+        double written = 0;
+        Counter writtenCounter = meterRegistry.find("batch.records.written").counter();
+        if (writtenCounter != null) {
+            double total = writtenCounter.count();
+            written = total - lastWritten;
+            lastWritten = total;
+        }
+
+        return new AdaptiveConcurrencyController.Sample(
+            gauge("hikaricp.connections.pending"),
+            gauge("hikaricp.connections.active"),
+            gauge("hikaricp.connections.max"),
+            meanWriteMillis,
+            written / seconds);
+    }
+
+    private double gauge(String name) {
+        double sum = 0;
+        for (Gauge g : meterRegistry.find(name).gauges()) {
+            sum += g.value();
+        }
+        return sum;
+    }
+
+    private void resize(int limit) {
+        if (limit >= executor.getMaxPoolSize()) {
+            executor.setMaxPoolSize(limit);
+            executor.setCorePoolSize(limit);
+        } else {
+            executor.setCorePoolSize(limit);
+            executor.setMaxPoolSize(limit);
+        }
+    }
+}
@@ -1,12 +1,30 @@
 package com.ing.kallitech.kafka.batch.idempotency;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * NEW: File-level idempotency tracking via job_file_log table.
@@ -18,27 +36,94 @@ import org.springframework.transaction.annotation.Transactional;
  *
  * State machine: (absent) → PROCESSING → COMPLETED
  *                                      ↘ FAILED (eligible for retry)
+ *
+ * NEW: COMPLETED is terminal, so COMPLETED fileIds are cached in-process (LRU,
+ * bounded by batch.job.idempotency.cache.max-size, entries expire after
+ * batch.job.idempotency.cache.ttl). A redelivery storm for finished files is then
+ * answered without touching job_file_log. Only positive answers are cached: a file
+ * that is PROCESSING or FAILED here may complete on another pod at any time.
+ * {@link #findAlreadyProcessed} checks a whole poll's fileIds with one IN query
+ * for the cache misses. Hits / misses: batch.idempotency.cache{result=hit|miss}.
  */
 @Service
 public class IdempotencyService {
 
     private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
 
+    /** Oracle rejects IN lists longer than 1000 elements (ORA-01795). */
+    static final int MAX_IN_LIST = 1000;
+
     private final JdbcTemplate jdbcTemplate;
+    private final CompletedCache completed;
+    private final Counter hits;
+    private final Counter misses;
 
-    public IdempotencyService(JdbcTemplate jdbcTemplate) {
+    @Autowired
+    public IdempotencyService(JdbcTemplate jdbcTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${batch.job.idempotency.cache.max-size:100000}") int cacheMaxSize,
+                              @Value("${batch.job.idempotency.cache.ttl:PT24H}") Duration cacheTtl) {
+        this(jdbcTemplate, meterRegistry, cacheMaxSize, cacheTtl, Clock.systemUTC());
+    }
+
+    IdempotencyService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                       int cacheMaxSize, Duration cacheTtl, Clock clock) {
         this.jdbcTemplate = jdbcTemplate;
+        this.completed = new CompletedCache(cacheMaxSize, cacheTtl.toMillis(), clock,
+            meterRegistry.counter("batch.idempotency.cache.evictions"));
+        this.hits = meterRegistry.counter("batch.idempotency.cache", "result", "hit");
+        this.misses = meterRegistry.counter("batch.idempotency.cache", "result", "miss");
+        meterRegistry.gauge("batch.idempotency.cache.size", completed, CompletedCache::size);
     }
 
     public boolean isAlreadyProcessed(String fileId) {
+        if (completed.contains(fileId)) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
         Integer count = jdbcTemplate.queryForObject(
             "SELECT COUNT(*) FROM job_file_log WHERE file_id = ? AND status = 'COMPLETED'",
             Integer.class, fileId);
-        return count != null && count > 0;
+        boolean processed = count != null && count > 0;
+        if (processed) {
+            completed.put(fileId);
+        }
+        return processed;
+    }
+
+    /**
+     * Bulk form of {@link #isAlreadyProcessed}: returns the subset of fileIds that are
+     * COMPLETED, querying job_file_log once (per 1000 ids) for those not cached.
+     */
+    public Set<String> findAlreadyProcessed(Collection<String> fileIds) {
+        Set<String> processed = new HashSet<>();
+        List<String> lookup = new ArrayList<>();
+        for (String fileId : new HashSet<>(fileIds)) {
+            if (completed.contains(fileId)) {
+                processed.add(fileId);
+            } else {
+                lookup.add(fileId);
+            }
+        }
+        hits.increment(processed.size());
+        misses.increment(lookup.size());
+
+        for (int from = 0; from < lookup.size(); from += MAX_IN_LIST) {
+            List<String> slice = lookup.subList(from, Math.min(lookup.size(), from + MAX_IN_LIST));
+            String in = String.join(",", Collections.nCopies(slice.size(), "?"));
+            List<String> found = jdbcTemplate.queryForList(
+                "SELECT file_id FROM job_file_log WHERE status = 'COMPLETED' AND file_id IN (" + in + ")",
+                String.class, slice.toArray());
+            found.forEach(completed::put);
+            processed.addAll(found);
+        }
+        return processed;
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void markProcessingStarted(String fileId) {
+        completed.remove(fileId);
         try {
             jdbcTemplate.update(
                 "INSERT INTO job_file_log (file_id, status, started_at) " +
@@ -56,14 +141,94 @@ public class IdempotencyService {
         jdbcTemplate.update(
             "UPDATE job_file_log SET status='COMPLETED', completed_at=CURRENT_TIMESTAMP, " +
             "record_count=? WHERE file_id=?", recordCount, fileId);
+        // Cache only once the COMPLETED row is visible to other readers
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    completed.put(fileId);
+                }
+            });
+        } else {
+            completed.put(fileId);
+        }
         log.info("Marked COMPLETED: fileId={} records={}", fileId, recordCount);
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public void markFailed(String fileId, String error) {
+        completed.remove(fileId);
         jdbcTemplate.update(
             "UPDATE job_file_log SET status='FAILED', completed_at=CURRENT_TIMESTAMP, " +
             "error_message=? WHERE file_id=?", error, fileId);
         log.warn("Marked FAILED: fileId={}", fileId);
     }
+
+    /** Access-ordered LRU of COMPLETED fileIds with a write-time TTL. */
+    private static final class CompletedCache {
+        private final int maxSize;
+        private final long ttlMillis;
+        private final Clock clock;
+        private final Counter evictions;
+        private final LinkedHashMap<String, Long> expiresAt;   // guarded by this
+
+        CompletedCache(int maxSize, long ttlMillis, Clock clock, Counter evictions) {
+            this.maxSize = maxSize;
+            this.ttlMillis = ttlMillis;
+            this.clock = clock;
+            this.evictions = evictions;
+            this.expiresAt = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    if (size() > CompletedCache.this.maxSize) {
+                        CompletedCache.this.evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized boolean contains(String fileId) {
+            Long expiry = expiresAt.get(fileId);
+            if (expiry == null) {
+                return false;
+            }
+            if (expiry <= clock.millis()) {
+                expiresAt.remove(fileId);
+                evictions.increment();
+                return false;
+            }
+            return true;
+        }
+
+        synchronized void put(String fileId) {
+            if (maxSize <= 0 || ttlMillis <= 0) {
+                return;
+            }
+            expiresAt.put(fileId, clock.millis() + ttlMillis);
+            expireOldest();
+        }
+
+        synchronized void remove(String fileId) {
+            expiresAt.remove(fileId);
+        }
+
+        synchronized int size() {
+            return expiresAt.size();
+        }
+
+        /** Drops expired entries from the LRU end so idle entries do not pin memory until pushed out. */
+        private void expireOldest() {
+            long now = clock.millis();
+            Iterator<Map.Entry<String, Long>> it = expiresAt.entrySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().getValue() > now) {
+                    return;
+                }
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
 }
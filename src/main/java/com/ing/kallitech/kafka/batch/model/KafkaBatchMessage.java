@@ -2,7 +2,7 @@ package com.ing.kallitech.kafka.batch.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 
 /**
  * Kafka message payload for batch-trigger-topic.
@@ -27,8 +27,8 @@ public class KafkaBatchMessage {
     @NotBlank
     private String filePath;      // Absolute path on shared PVC/NFS
 
-    @Positive
-    private long   recordCount;   // Total data rows (excluding header) — used for partitioning
+    @PositiveOrZero
+    private long   recordCount;   // Total data rows (excluding header) — 0 = unknown; only line-range partitioning needs it
 
     private String delimiter = ",";
 
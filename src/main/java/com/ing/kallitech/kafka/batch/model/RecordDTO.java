@@ -11,6 +11,9 @@ import java.time.LocalDate;
  */
 public class RecordDTO {
 
+    /** Fraction digits of value_rec — DECIMAL(20,4) in batch_records. */
+    public static final int VALUE_SCALE = 4;
+
     // CSV source fields
     private String     externalId;   // Business key from CSV
     private String     name;
@@ -19,9 +22,11 @@ public class RecordDTO {
     private Timestamp eventTs;
 
     // Enriched by processor
-    private String  recordHash;      // SHA-256(externalId|category|eventTs) — idempotency key
+    private String  recordHash;      // SHA-256(externalId|category|eventTs) — idempotency key (hex mode)
+    private byte[]  recordHashBytes; // 16/32-byte hash — idempotency key (binary modes, see RecordHasher)
     private String  jobId;
     private int     partitionIndex;
+    private boolean maybeDuplicate;  // RecordHashFilter: hash may already be loaded, write via MERGE
 
     private String status = "LOADED";
 
@@ -91,6 +96,14 @@ public class RecordDTO {
         this.recordHash = recordHash;
     }
 
+    public byte[] getRecordHashBytes() {
+        return recordHashBytes;
+    }
+
+    public void setRecordHashBytes(byte[] recordHashBytes) {
+        this.recordHashBytes = recordHashBytes;
+    }
+
     public String getJobId() {
         return jobId;
     }
@@ -107,6 +120,14 @@ public class RecordDTO {
         this.partitionIndex = partitionIndex;
     }
 
+    public boolean isMaybeDuplicate() {
+        return maybeDuplicate;
+    }
+
+    public void setMaybeDuplicate(boolean maybeDuplicate) {
+        this.maybeDuplicate = maybeDuplicate;
+    }
+
     public String getStatus() {
         return status;
     }
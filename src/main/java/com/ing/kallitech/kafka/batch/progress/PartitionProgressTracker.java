@@ -0,0 +1,386 @@
+package com.ing.kallitech.kafka.batch.progress;
+
+import com.ing.kallitech.kafka.batch.csv.GzipBlockIndex;
+import com.ing.kallitech.kafka.batch.service.CsvItemReader;
+import com.ing.kallitech.kafka.batch.service.CsvPartitioner;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * In-memory live progress of running csvImportJob executions, per partition.
+ *
+ * Fed by the job/step/chunk callbacks of the worker threads themselves: after each
+ * committed chunk the partition publishes an immutable snapshot (counts, rows/s,
+ * ETA). Readers (GET /api/jobs/{fileId}/progress) only read those snapshots, so a
+ * dashboard polling every second costs nothing on the database the job writes to,
+ * unlike polling BATCH_STEP_EXECUTION.
+ *
+ * Progress is measured in bytes where the reader publishes them (CsvItemReader.update,
+ * i.e. once per chunk), otherwise in rows:
+ *   startByte/endByte      — reader.offset within the range, job total = file size
+ *   gzipStart/gzipEnd      — reader.offset within the uncompressed span, job total =
+ *                            GzipBlockIndex.uncompressedSize()
+ *   workUnitInstanceId     — reader.unitBytes across the units the partition claimed;
+ *                            partitions share one queue, so each reports the job's
+ *                            percent and ETA. Units finished before a restart are
+ *                            not counted.
+ *   startLine/maxItemCount — rows read against maxItemCount, job total = totalRecords
+ * Rates are smoothed per chunk (EWMA) so one slow commit does not swing the ETA.
+ *
+ * State is per pod: a partition executing elsewhere is not visible here. Finished
+ * jobs stay queryable until batch.job.progress.retain-finished newer ones finished.
+ */
+@Component
+public class PartitionProgressTracker implements JobExecutionListener, StepExecutionListener, ChunkListener {
+
+    /** Weight of the latest chunk in the smoothed rates. */
+    private static final double RATE_ALPHA = 0.3;
+
+    private final int retainFinished;
+
+    private final Map<String, JobTrack> jobs = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedDeque<String> finished = new ConcurrentLinkedDeque<>();
+
+    public PartitionProgressTracker(@Value("${batch.job.progress.retain-finished:50}") int retainFinished) {
+        this.retainFinished = retainFinished;
+    }
+
+    // ========================
+    // Views
+    // ========================
+
+    public record PartitionProgress(int partition,
+                                    String status,
+                                    long read,
+                                    long written,
+                                    long filtered,
+                                    long skipped,
+                                    Double percent,
+                                    double rowsPerSecond,
+                                    Long etaSeconds,
+                                    Instant updated) {}
+
+    public record JobProgress(String fileId,
+                              long jobExecutionId,
+                              String status,
+                              Instant started,
+                              Instant ended,
+                              long read,
+                              long written,
+                              long filtered,
+                              long skipped,
+                              Double percent,
+                              double rowsPerSecond,
+                              Long etaSeconds,
+                              List<PartitionProgress> partitions) {}
+
+    public Optional<JobProgress> progress(String fileId) {
+        JobTrack job = jobs.get(fileId);
+        return job == null ? Optional.empty() : Optional.of(job.view());
+    }
+
+    // ========================
+    // Job Lifecycle
+    // ========================
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        String fileId = fileId(jobExecution);
+        if (fileId != null) {
+            jobs.put(fileId, new JobTrack(fileId, jobExecution));
+            finished.remove(fileId);
+        }
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        String fileId = fileId(jobExecution);
+        JobTrack job = fileId == null ? null : jobs.get(fileId);
+        if (job == null || job.execution != jobExecution) {
+            return;
+        }
+        job.ended = Instant.now();
+        finished.addLast(fileId);
+        while (finished.size() > retainFinished) {
+            String evicted = finished.pollFirst();
+            if (evicted != null) {
+                jobs.computeIfPresent(evicted, (k, j) -> j.ended != null ? null : j);
+            }
+        }
+    }
+
+    // ========================
+    // Step / Chunk Lifecycle (worker threads)
+    // ========================
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        JobTrack job = track(stepExecution);
+        if (job != null) {
+            PartitionTrack partition = new PartitionTrack(stepExecution);
+            if (partition.kind == Kind.GZIP) {
+                job.useUncompressedSize();
+            }
+            job.partitions.put(partition.index, partition);
+            partition.publish(stepExecution);
+        }
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        PartitionTrack partition = partition(stepExecution);
+        if (partition != null) {
+            partition.publish(stepExecution);
+        }
+        return null;
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        StepExecution stepExecution = context.getStepContext().getStepExecution();
+        PartitionTrack partition = partition(stepExecution);
+        if (partition != null) {
+            partition.publish(stepExecution);
+        }
+    }
+
+    // ========================
+    // Internals
+    // ========================
+
+    private static String fileId(JobExecution jobExecution) {
+        return jobExecution.getJobParameters().getString("fileId");
+    }
+
+    private JobTrack track(StepExecution stepExecution) {
+        String fileId = fileId(stepExecution.getJobExecution());
+        return fileId == null ? null : jobs.get(fileId);
+    }
+
+    private PartitionTrack partition(StepExecution stepExecution) {
+        JobTrack job = track(stepExecution);
+        if (job == null) {
+            return null;
+        }
+        PartitionTrack partition = job.partitions.get(
+            stepExecution.getExecutionContext().getInt("partitionIndex", -1));
+        return partition != null && partition.stepExecution == stepExecution ? partition : null;
+    }
+
+    /** How a partition's progress is measured; see the class comment. */
+    private enum Kind { BYTES, GZIP, UNITS, LINES }
+
+    private static final class JobTrack {
+        final String fileId;
+        final JobExecution execution;
+        final Instant started = Instant.now();
+        final Map<Integer, PartitionTrack> partitions = new ConcurrentHashMap<>();
+        // Whole-job denominators, so queued partitions that have not started still count as remaining
+        final String filePath;
+        final long totalRecords;
+        volatile long fileBytes;
+        volatile boolean uncompressed;
+        volatile Instant ended;
+
+        JobTrack(String fileId, JobExecution execution) {
+            this.fileId = fileId;
+            this.execution = execution;
+            this.filePath = execution.getJobParameters().getString("filePath");
+            Long records = execution.getJobParameters().getLong("totalRecords");
+            this.fileBytes = filePath == null ? 0 : sizeOf(filePath);
+            this.totalRecords = records == null ? 0 : records;
+        }
+
+        /**
+         * Gzip offsets are uncompressed: switch the job total to the uncompressed size.
+         * Read from the index sidecar CsvPartitioner has just written, so it is cheap.
+         */
+        void useUncompressedSize() {
+            if (uncompressed) {
+                return;
+            }
+            synchronized (this) {
+                if (!uncompressed) {
+                    try {
+                        fileBytes = GzipBlockIndex.load(Path.of(filePath)).uncompressedSize();
+                    } catch (IOException | RuntimeException e) {
+                        fileBytes = 0;
+                    }
+                    uncompressed = true;
+                }
+            }
+        }
+
+        private static long sizeOf(String filePath) {
+            try {
+                return Files.size(Path.of(filePath));
+            } catch (IOException | RuntimeException e) {
+                return 0;
+            }
+        }
+
+        JobProgress view() {
+            long read = 0, written = 0, filtered = 0, skipped = 0;
+            double rate = 0, unitRate = 0, done = 0;
+            boolean byBytes = false;
+            for (PartitionTrack p : partitions.values()) {
+                PartitionProgress s = p.snapshot;
+                read += s.read();
+                written += s.written();
+                filtered += s.filtered();
+                skipped += s.skipped();
+                rate += s.rowsPerSecond();
+                unitRate += p.unitRate;
+                done += p.unitsDone;
+                byBytes |= p.byBytes;
+            }
+            double total = byBytes ? fileBytes : totalRecords;
+
+            BatchStatus status = execution.getStatus();
+            Double percent = null;
+            Long eta = null;
+            if (ended != null) {
+                rate = 0;
+                eta = 0L;
+                percent = status == BatchStatus.COMPLETED ? Double.valueOf(100.0) : percentOf(done, total);
+            } else if (!partitions.isEmpty()) {
+                percent = percentOf(done, total);
+                eta = total > 0 && unitRate > 0 ? (long) Math.ceil(Math.max(0, total - done) / unitRate) : null;
+            }
+
+            List<PartitionProgress> parts = new ArrayList<>(partitions.size());
+            for (PartitionTrack p : partitions.values()) {
+                PartitionProgress s = p.snapshot;
+                if (p.kind == Kind.UNITS && ended == null && s.etaSeconds() == null) {
+                    // Still draining the shared unit queue: it finishes with the job
+                    s = new PartitionProgress(s.partition(), s.status(), s.read(), s.written(), s.filtered(),
+                        s.skipped(), percent, s.rowsPerSecond(), eta, s.updated());
+                }
+                parts.add(s);
+            }
+            parts.sort(Comparator.comparingInt(PartitionProgress::partition));
+            return new JobProgress(fileId, execution.getId() == null ? -1 : execution.getId(),
+                status.name(), started, ended, read, written, filtered, skipped,
+                percent, rate, eta, parts);
+        }
+
+        private static Double percentOf(double done, double total) {
+            return total > 0 ? Math.min(100.0, 100.0 * done / total) : null;
+        }
+    }
+
+    /** Written only by the partition's own thread; readers see {@link #snapshot}. */
+    private static final class PartitionTrack {
+        final StepExecution stepExecution;
+        final int index;
+        final Kind kind;
+        final long startByte;
+        final long unitsTotal;      // bytes of the range or span, rows for line ranges, 0 for work units
+        final boolean byBytes;
+
+        long lastNanos = System.nanoTime();
+        long lastRead;
+        long lastUnits;
+        double rowRate;
+        volatile double unitRate;
+        volatile double unitsDone;
+        volatile PartitionProgress snapshot;
+
+        PartitionTrack(StepExecution stepExecution) {
+            ExecutionContext ctx = stepExecution.getExecutionContext();
+            this.stepExecution = stepExecution;
+            this.index = ctx.getInt("partitionIndex", -1);
+            if (ctx.containsKey(CsvPartitioner.GZIP_START_KEY)) {
+                kind = Kind.GZIP;
+                startByte = ctx.getLong(CsvPartitioner.GZIP_START_KEY);
+                unitsTotal = ctx.getLong(CsvPartitioner.GZIP_END_KEY) - startByte;
+            } else if (ctx.containsKey("startByte")) {
+                kind = Kind.BYTES;
+                startByte = ctx.getLong("startByte");
+                unitsTotal = ctx.getLong("endByte") - startByte;
+            } else if (ctx.containsKey(CsvPartitioner.WORK_UNIT_INSTANCE_KEY)) {
+                kind = Kind.UNITS;
+                startByte = 0;
+                unitsTotal = 0;
+            } else {
+                kind = Kind.LINES;
+                startByte = 0;
+                unitsTotal = ctx.getLong("maxItemCount", 0);
+            }
+            this.byBytes = kind != Kind.LINES;
+        }
+
+        void publish(StepExecution step) {
+            long now = System.nanoTime();
+            long read = step.getReadCount();
+            long units = units(step, read);
+            double seconds = (now - lastNanos) / 1e9;
+            if (seconds > 0 && read > lastRead) {
+                rowRate = smooth(rowRate, (read - lastRead) / seconds);
+                unitRate = smooth(unitRate, (units - lastUnits) / seconds);
+                lastNanos = now;
+                lastRead = read;
+                lastUnits = units;
+            }
+            boolean running = step.getStatus().isRunning();
+            if (!running) {
+                rowRate = 0;
+                unitRate = 0;
+            }
+            boolean completed = step.getStatus() == BatchStatus.COMPLETED;
+            if (completed && kind != Kind.UNITS) {
+                units = unitsTotal;
+            }
+            unitsDone = units;
+
+            Double percent = unitsTotal > 0 ? Math.min(100.0, 100.0 * units / unitsTotal) : null;
+            if (completed && kind == Kind.UNITS) {
+                percent = 100.0;   // the shared queue was empty when it stopped
+            }
+            Long eta = null;
+            if (!running) {
+                eta = 0L;
+            } else if (unitsTotal > 0 && unitRate > 0) {
+                eta = (long) Math.ceil(Math.max(0, unitsTotal - units) / unitRate);
+            }
+            snapshot = new PartitionProgress(index, step.getStatus().name(), read, step.getWriteCount(),
+                step.getFilterCount(), step.getSkipCount(), percent, rowRate, eta, Instant.now());
+        }
+
+        private long units(StepExecution step, long read) {
+            if (kind == Kind.LINES) {
+                return read;
+            }
+            if (kind == Kind.UNITS) {
+                return step.getExecutionContext().getLong(CsvItemReader.UNIT_BYTES_KEY, 0);
+            }
+            long offset = step.getExecutionContext().getLong(CsvItemReader.OFFSET_KEY, -1);
+            return offset < 0 ? 0 : Math.min(unitsTotal, offset - startByte);
+        }
+
+        private static double smooth(double previous, double latest) {
+            return previous == 0 ? latest : RATE_ALPHA * latest + (1 - RATE_ALPHA) * previous;
+        }
+    }
+}
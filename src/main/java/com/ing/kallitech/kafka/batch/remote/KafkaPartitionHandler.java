@@ -0,0 +1,132 @@
+package com.ing.kallitech.kafka.batch.remote;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.partition.support.AbstractPartitionHandler;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * NEW: Manager side of batch.job.partition-handler=remote.
+ *
+ * The splitter (CsvPartitioner via SimpleStepExecutionSplitter) has already stored
+ * one worker StepExecution per partition in the shared JobRepository. This handler
+ * publishes a {@link PartitionRequest} per partition, waits for the broker to
+ * accept each one, then polls the JobRepository until every worker execution has
+ * finished (on whichever pod RemotePartitionWorker ran it). The refreshed executions
+ * are returned, so PartitionStep aggregates counts and status as it does for local
+ * partitions.
+ *
+ * Workers report back through the shared JobRepository instead of a reply topic:
+ * their StepExecution rows are the results.
+ *
+ * FIX: Workers ack a request when they start it, so a pod that dies mid-partition no
+ * longer gets the request redelivered by Kafka. Polling catches it instead: a pending
+ * execution whose lastUpdated is older than stale-after (no chunk committed for that
+ * long) has its request published again, at most once per stale-after, and
+ * RemotePartitionWorker re-executes it from its last committed reader state.
+ */
+public class KafkaPartitionHandler extends AbstractPartitionHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaPartitionHandler.class);
+
+    private final KafkaTemplate<String, PartitionRequest> kafkaTemplate;
+    private final JobExplorer jobExplorer;
+    private final String topic;
+    private final String stepName;
+    private final Duration pollInterval;
+    private final Duration timeout;
+    private final Duration staleAfter;
+
+    public KafkaPartitionHandler(KafkaTemplate<String, PartitionRequest> kafkaTemplate,
+                                 JobExplorer jobExplorer,
+                                 String topic,
+                                 String stepName,
+                                 int gridSize,
+                                 Duration pollInterval,
+                                 Duration timeout,
+                                 Duration staleAfter) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.jobExplorer = jobExplorer;
+        this.topic = topic;
+        this.stepName = stepName;
+        this.pollInterval = pollInterval;
+        this.timeout = timeout;
+        this.staleAfter = staleAfter;
+        setGridSize(gridSize);
+    }
+
+    @Override
+    protected Set<StepExecution> doHandle(StepExecution managerStepExecution,
+                                          Set<StepExecution> partitionStepExecutions) throws Exception {
+        long jobExecutionId = managerStepExecution.getJobExecutionId();
+        for (StepExecution partition : partitionStepExecutions) {
+            publish(jobExecutionId, partition.getId());
+        }
+        log.info("Published {} partition requests: jobId={} topic={}",
+            partitionStepExecutions.size(), jobExecutionId, topic);
+        return awaitPartitions(jobExecutionId, partitionStepExecutions);
+    }
+
+    private void publish(long jobExecutionId, long stepExecutionId) throws Exception {
+        PartitionRequest request = new PartitionRequest(jobExecutionId, stepExecutionId, stepName);
+        // Wait for the broker: a partition that was never published would only surface at the timeout
+        kafkaTemplate.send(topic, String.valueOf(stepExecutionId), request).get(30, TimeUnit.SECONDS);
+    }
+
+    private Set<StepExecution> awaitPartitions(long jobExecutionId, Collection<StepExecution> partitions)
+            throws Exception {
+        List<Long> pending = new ArrayList<>(partitions.size());
+        partitions.forEach(p -> pending.add(p.getId()));
+        Set<StepExecution> finished = new HashSet<>();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Map<Long, Long> publishedAt = new HashMap<>();
+        pending.forEach(id -> publishedAt.put(id, System.nanoTime()));
+
+        while (!pending.isEmpty()) {
+            for (Iterator<Long> it = pending.iterator(); it.hasNext(); ) {
+                long id = it.next();
+                StepExecution current = jobExplorer.getStepExecution(jobExecutionId, id);
+                if (current != null && !current.getStatus().isRunning()) {
+                    finished.add(current);
+                    it.remove();
+                } else if (current != null && isStale(current)
+                        && System.nanoTime() - publishedAt.get(id) > staleAfter.toNanos()) {
+                    log.warn("Remote partition {} not updated since {} — republishing: jobId={}",
+                        current.getStepName(), current.getLastUpdated(), jobExecutionId);
+                    publish(jobExecutionId, id);
+                    publishedAt.put(id, System.nanoTime());
+                }
+            }
+            if (pending.isEmpty()) {
+                break;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new TimeoutException("Remote partitions not finished after " + timeout
+                    + ": jobId=" + jobExecutionId + " stepExecutionIds=" + pending);
+            }
+            Thread.sleep(pollInterval.toMillis());
+        }
+        log.info("All {} remote partitions finished: jobId={}", finished.size(), jobExecutionId);
+        return finished;
+    }
+
+    private boolean isStale(StepExecution execution) {
+        LocalDateTime lastUpdated = execution.getLastUpdated();
+        return lastUpdated == null || lastUpdated.plus(staleAfter).isBefore(LocalDateTime.now());
+    }
+}
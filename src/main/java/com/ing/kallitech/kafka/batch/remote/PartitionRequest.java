@@ -0,0 +1,11 @@
+package com.ing.kallitech.kafka.batch.remote;
+
+/**
+ * NEW: Kafka payload asking any pod to execute one partition of a remote-partitioned step.
+ *
+ * Only ids travel: the partition's range lives in the worker StepExecution's
+ * ExecutionContext, which the manager's splitter already stored in the shared
+ * JobRepository, and the file itself is on the shared PVC.
+ */
+public record PartitionRequest(long jobExecutionId, long stepExecutionId, String stepName) {
+}
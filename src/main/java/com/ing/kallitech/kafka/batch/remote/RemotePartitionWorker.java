@@ -0,0 +1,205 @@
+package com.ing.kallitech.kafka.batch.remote;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobInterruptedException;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * NEW: Worker side of batch.job.partition-handler=remote.
+ *
+ * Every pod consumes the partition-request topic in one consumer group, so each
+ * request reaches one pod. The worker loads the StepExecution the manager stored
+ * and executes workerStep against it (range in its ExecutionContext, file on the
+ * shared PVC).
+ *
+ * FIX: The partition ran on the Kafka consumer thread and was acked when it finished,
+ * so a partition longer than max.poll.interval — or a rebalance during a rolling
+ * deploy — redelivered the request, and a second pod re-executed the StepExecution
+ * the first was still running. Now, as with TriggerFlowControl for triggers:
+ *  - the partition runs on partitionWorkerExecutor (worker-concurrency threads) and
+ *    the request is acked as soon as it is handed off
+ *  - when every worker thread is busy the request is rewound (nack) and the
+ *    container paused until a partition finishes — it waits in Kafka, no retries
+ *  - the StepExecution's lastUpdated (written on every chunk commit) is the lease:
+ *    a STARTED execution is re-executed only when it has not been updated for
+ *    stale-after, i.e. its pod died. KafkaPartitionHandler republishes such
+ *    requests, so a crash is recovered without holding the offset uncommitted.
+ *
+ * Requests for executions that are already finished, or running on this pod, are
+ * acked without running anything.
+ */
+@Component
+@ConditionalOnProperty(name = "batch.job.partition-handler", havingValue = "remote")
+public class RemotePartitionWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(RemotePartitionWorker.class);
+
+    /** Listener id of {@link #onRequest}, for pausing its container. */
+    public static final String LISTENER_ID = "remotePartitionWorker";
+
+    private final JobExplorer jobExplorer;
+    private final Step workerStep;
+    private final ThreadPoolTaskExecutor executor;
+    private final ObjectProvider<KafkaListenerEndpointRegistry> registry;
+    private final Duration staleAfter;
+
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private boolean paused;   // guarded by this
+
+    @Autowired
+    public RemotePartitionWorker(JobExplorer jobExplorer,
+                                 @Qualifier("workerStep") Step workerStep,
+                                 @Qualifier("partitionWorkerExecutor") ThreadPoolTaskExecutor executor,
+                                 ObjectProvider<KafkaListenerEndpointRegistry> registry,
+                                 @Value("${batch.job.remote-partitioning.stale-after:10m}") Duration staleAfter) {
+        this.jobExplorer = jobExplorer;
+        this.workerStep = workerStep;
+        this.executor = executor;
+        this.registry = registry;
+        this.staleAfter = staleAfter;
+    }
+
+    @KafkaListener(
+        id = LISTENER_ID,
+        topics = "${batch.job.remote-partitioning.topic:batch-partition-requests}",
+        groupId = "${batch.job.remote-partitioning.group-id:batch-partition-workers}",
+        containerFactory = "partitionRequestListenerContainerFactory"
+    )
+    public void onRequest(@Payload(required = false) PartitionRequest request, Acknowledgment acknowledgment) {
+        if (request == null) {
+            log.error("Unreadable partition request skipped");
+            acknowledgment.acknowledge();
+            return;
+        }
+        if (!workerStep.getName().equals(request.stepName())) {
+            log.error("Partition request for unknown step skipped: {}", request);
+            acknowledgment.acknowledge();
+            return;
+        }
+        StepExecution stepExecution = jobExplorer.getStepExecution(request.jobExecutionId(), request.stepExecutionId());
+        if (stepExecution == null) {
+            log.error("Partition request for missing step execution skipped: {}", request);
+            acknowledgment.acknowledge();
+            return;
+        }
+        BatchStatus status = stepExecution.getStatus();
+        if (status != BatchStatus.STARTING && status != BatchStatus.STARTED) {
+            log.info("Partition already {} — skipped: {}", status, stepExecution.getStepName());
+            acknowledgment.acknowledge();
+            return;
+        }
+        if (running.contains(stepExecution.getId())) {
+            log.info("Partition already running on this pod — skipped: {}", stepExecution.getStepName());
+            acknowledgment.acknowledge();
+            return;
+        }
+        if (status == BatchStatus.STARTED && !isStale(stepExecution)) {
+            // Another pod holds the lease; KafkaPartitionHandler republishes if it goes stale
+            log.info("Partition running elsewhere (updated {}) — skipped: {}",
+                stepExecution.getLastUpdated(), stepExecution.getStepName());
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        if (running.size() >= executor.getMaxPoolSize() || !submit(stepExecution)) {
+            log.info("All partition workers busy — pausing, request stays in Kafka: {}", stepExecution.getStepName());
+            pauseIfBusy();
+            acknowledgment.nack(Duration.ZERO);
+            return;
+        }
+        acknowledgment.acknowledge();
+        pauseIfBusy();   // the next request would only be rejected
+    }
+
+    private boolean submit(StepExecution stepExecution) {
+        running.add(stepExecution.getId());
+        try {
+            executor.execute(() -> run(stepExecution));
+            return true;
+        } catch (TaskRejectedException e) {
+            running.remove(stepExecution.getId());
+            return false;
+        }
+    }
+
+    private void run(StepExecution stepExecution) {
+        MDC.put("fileId", stepExecution.getJobExecution().getJobParameters().getString("fileId"));
+        try {
+            log.info("Executing remote partition: {} jobId={}", stepExecution.getStepName(),
+                stepExecution.getJobExecutionId());
+            workerStep.execute(stepExecution);   // status and failures are persisted by the step itself
+            log.info("Remote partition finished: {} status={} written={}",
+                stepExecution.getStepName(), stepExecution.getStatus(), stepExecution.getWriteCount());
+        } catch (JobInterruptedException e) {
+            log.warn("Remote partition interrupted: {}", stepExecution.getStepName());
+        } catch (RuntimeException e) {
+            log.error("Remote partition failed: {}", stepExecution.getStepName(), e);
+        } finally {
+            MDC.remove("fileId");
+            running.remove(stepExecution.getId());
+            resume();
+        }
+    }
+
+    boolean isStale(StepExecution stepExecution) {
+        LocalDateTime lastUpdated = stepExecution.getLastUpdated();
+        return lastUpdated == null || lastUpdated.plus(staleAfter).isBefore(LocalDateTime.now());
+    }
+
+    /**
+     * Pauses while every worker thread is taken. Checked under the same lock as
+     * {@link #resume}, after {@link #running} shrinks, so a partition finishing
+     * concurrently cannot leave the container paused with idle workers.
+     */
+    private synchronized void pauseIfBusy() {
+        if (!paused && running.size() >= executor.getMaxPoolSize()) {
+            paused = true;
+            MessageListenerContainer container = container();
+            if (container != null) {
+                container.pause();
+            }
+        }
+    }
+
+    private synchronized void resume() {
+        if (paused) {
+            paused = false;
+            MessageListenerContainer container = container();
+            if (container != null) {
+                container.resume();
+            }
+        }
+    }
+
+    synchronized boolean isPaused() {
+        return paused;
+    }
+
+    private MessageListenerContainer container() {
+        KafkaListenerEndpointRegistry endpoints = registry.getIfAvailable();
+        return endpoints == null ? null : endpoints.getListenerContainer(LISTENER_ID);
+    }
+}
@@ -0,0 +1,85 @@
+package com.ing.kallitech.kafka.batch.repository;
+
+import com.ing.kallitech.kafka.batch.aggregate.CategoryAggregate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NEW: batch_category_summary — per job execution x category aggregates written
+ * by CategoryAggregator, read by GET /api/jobs/{fileId}/categories.
+ *
+ * Writes are additive MERGEs, so several flushes for the same job (e.g. one per
+ * pod once partitions run remotely) combine instead of overwriting each other.
+ */
+@Repository
+public class CategorySummaryRepository {
+
+    // CASTs type the USING binds (H2 requires it); Oracle type names work in H2 MODE=Oracle.
+    // MIN/MAX via CASE: Oracle's LEAST/GREATEST return NULL if either side is NULL.
+    private static final String MERGE_SQL =
+        "MERGE INTO batch_category_summary t USING (SELECT "
+            + "CAST(? AS VARCHAR2(100)) AS job_id, CAST(? AS VARCHAR2(100)) AS category, "
+            + "CAST(? AS VARCHAR2(255)) AS file_id, CAST(? AS NUMBER(19)) AS cnt, "
+            + "CAST(? AS NUMBER(38,4)) AS vsum, CAST(? AS NUMBER(20,4)) AS vmin, "
+            + "CAST(? AS NUMBER(20,4)) AS vmax FROM dual) s "
+            + "ON (t.job_id = s.job_id AND t.category = s.category) "
+            + "WHEN MATCHED THEN UPDATE SET "
+            + "record_count = t.record_count + s.cnt, "
+            + "value_sum = CASE WHEN t.value_sum IS NULL THEN s.vsum WHEN s.vsum IS NULL THEN t.value_sum "
+            + "ELSE t.value_sum + s.vsum END, "
+            + "value_min = CASE WHEN t.value_min IS NULL OR s.vmin < t.value_min THEN s.vmin ELSE t.value_min END, "
+            + "value_max = CASE WHEN t.value_max IS NULL OR s.vmax > t.value_max THEN s.vmax ELSE t.value_max END, "
+            + "updated_at = CURRENT_TIMESTAMP "
+            + "WHEN NOT MATCHED THEN INSERT (job_id, category, file_id, record_count, value_sum, value_min, value_max) "
+            + "VALUES (s.job_id, s.category, s.file_id, s.cnt, s.vsum, s.vmin, s.vmax)";
+
+    // Sums over executions: a restarted file has one row set per job execution
+    private static final String BY_FILE_SQL =
+        "SELECT category, SUM(record_count) AS record_count, SUM(value_sum) AS value_sum, "
+            + "MIN(value_min) AS value_min, MAX(value_max) AS value_max "
+            + "FROM batch_category_summary WHERE file_id = ? GROUP BY category ORDER BY category";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CategorySummaryRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record CategorySummary(String category,
+                                  long count,
+                                  BigDecimal sum,
+                                  BigDecimal min,
+                                  BigDecimal max) {}
+
+    /** Adds the aggregates to the job's rows in one batched MERGE. */
+    public void merge(String jobId, String fileId, Map<String, CategoryAggregate> byCategory) {
+        if (byCategory.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, CategoryAggregate>> entries = new ArrayList<>(byCategory.entrySet());
+        jdbcTemplate.batchUpdate(MERGE_SQL, entries, entries.size(), (ps, e) -> {
+            CategoryAggregate a = e.getValue();
+            ps.setString(1, jobId);
+            ps.setString(2, e.getKey());
+            ps.setString(3, fileId);
+            ps.setLong(4, a.count());
+            ps.setBigDecimal(5, a.sum());
+            ps.setBigDecimal(6, a.min());
+            ps.setBigDecimal(7, a.max());
+        });
+    }
+
+    public List<CategorySummary> findByFileId(String fileId) {
+        return jdbcTemplate.query(BY_FILE_SQL, (rs, i) -> new CategorySummary(
+            rs.getString("category"),
+            rs.getLong("record_count"),
+            rs.getBigDecimal("value_sum"),
+            rs.getBigDecimal("value_min"),
+            rs.getBigDecimal("value_max")), fileId);
+    }
+}
@@ -0,0 +1,127 @@
+package com.ing.kallitech.kafka.batch.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * NEW: Keyset-paginated JDBC reads of batch_records for the streaming records API.
+ *
+ * Replaces RecordRepository.findAll() (JPA), which loaded every row as a managed
+ * entity into one List. Each call here reads one page:
+ *
+ *   WHERE [job_id = ? [AND partition_idx = ?]] AND id > ? ORDER BY id FETCH FIRST n ROWS ONLY
+ *
+ * with fetch size = page size, so a page is one or two round-trips and memory is
+ * bounded by the page, whatever the table size. The predicate and the ORDER BY are
+ * both served by one index — idx_batch_records_job_id (job_id, partition_idx, id)
+ * with a partition, idx_batch_records_job_page (job_id, id) without — so a page is
+ * a range scan that stops after n rows, no sort. Unfiltered pages use the primary key.
+ *
+ * Short per-page queries instead of one long cursor: the connection goes back to
+ * the pool between pages (the batch jobs share the pool), and there is no hours-long
+ * read consistency window on Oracle (ORA-01555).
+ */
+@Repository
+public class RecordStreamRepository {
+
+    private static final String COLUMNS =
+        "SELECT id, external_id, name, value_rec, category, event_ts, record_hash, record_hash_bin, "
+            + "job_id, partition_idx, status FROM batch_records WHERE ";
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxPageSize;
+
+    public RecordStreamRepository(JdbcTemplate jdbcTemplate,
+                                  @Value("${batch.records-api.max-page-size:5000}") int maxPageSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /** One batch_records row; recordHash is hex whichever hash column holds it. */
+    public record RecordRow(long id,
+                            String externalId,
+                            String name,
+                            BigDecimal valueRec,
+                            String category,
+                            Instant eventTs,
+                            String recordHash,
+                            String jobId,
+                            Integer partitionIndex,
+                            String status) {}
+
+    public int maxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * Rows with id > afterId in id order, at most pageSize (capped at
+     * batch.records-api.max-page-size). partitionIndex is only applied with a jobId.
+     */
+    public List<RecordRow> page(String jobId, Integer partitionIndex, long afterId, int pageSize) {
+        int limit = Math.max(1, Math.min(pageSize, maxPageSize));
+        boolean byJob = jobId != null;
+        boolean byPartition = byJob && partitionIndex != null;
+
+        StringBuilder sql = new StringBuilder(COLUMNS);
+        if (byJob) {
+            sql.append("job_id = ? AND ");
+        }
+        if (byPartition) {
+            sql.append("partition_idx = ? AND ");
+        }
+        sql.append("id > ? ORDER BY id FETCH FIRST ? ROWS ONLY");
+
+        List<RecordRow> rows = new ArrayList<>(limit);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString());
+            ps.setFetchSize(limit);
+            int i = 1;
+            if (byJob) {
+                ps.setString(i++, jobId);
+            }
+            if (byPartition) {
+                ps.setInt(i++, partitionIndex);
+            }
+            ps.setLong(i++, afterId);
+            ps.setInt(i, limit);
+            return ps;
+        }, (RowCallbackHandler) rs -> rows.add(map(rs)));
+        return rows;
+    }
+
+    private static RecordRow map(ResultSet rs) throws SQLException {
+        Timestamp eventTs = rs.getTimestamp("event_ts");
+        String hash = rs.getString("record_hash");
+        if (hash == null) {
+            byte[] bin = rs.getBytes("record_hash_bin");
+            hash = bin == null ? null : HEX.formatHex(bin);
+        }
+        int partition = rs.getInt("partition_idx");
+        Integer partitionIndex = rs.wasNull() ? null : partition;
+        return new RecordRow(
+            rs.getLong("id"),
+            rs.getString("external_id"),
+            rs.getString("name"),
+            rs.getBigDecimal("value_rec"),
+            rs.getString("category"),
+            eventTs == null ? null : eventTs.toInstant(),
+            hash,
+            rs.getString("job_id"),
+            partitionIndex,
+            rs.getString("status"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.ing.kallitech.kafka.batch.repository;
+
+import com.ing.kallitech.kafka.batch.csv.ByteRange;
+import com.ing.kallitech.kafka.batch.csv.WorkUnit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * batch_work_unit: the shared queue of byte-range work units behind
+ * batch.job.partition-mode=units.
+ *
+ * CsvPartitioner creates the units once per job instance; partition workers claim
+ * them lowest index first with a compare-and-set UPDATE (PENDING → CLAIMED), so two
+ * workers never get the same unit and no row lock is held while a unit is read.
+ * Claims commit in their own transaction — other workers must see them at once,
+ * and a rolled-back chunk must not hand the unit back. markDone runs in the caller's
+ * transaction, i.e. together with the chunk that consumed the unit's last row.
+ */
+@Repository
+public class WorkUnitRepository {
+
+    public static final String PENDING = "PENDING";
+    public static final String CLAIMED = "CLAIMED";
+    public static final String DONE = "DONE";
+
+    private static final String INSERT_SQL =
+        "INSERT INTO batch_work_unit (job_instance_id, unit_idx, start_byte, end_byte, status) VALUES (?, ?, ?, ?, 'PENDING')";
+
+    private static final String NEXT_PENDING_SQL =
+        "SELECT MIN(unit_idx) FROM batch_work_unit WHERE job_instance_id = ? AND status = 'PENDING'";
+
+    private static final String CLAIM_SQL =
+        "UPDATE batch_work_unit SET status = 'CLAIMED', worker = ?, updated_at = CURRENT_TIMESTAMP "
+            + "WHERE job_instance_id = ? AND unit_idx = ? AND status = 'PENDING'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate claimTransaction;
+
+    public WorkUnitRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.claimTransaction = new TransactionTemplate(transactionManager);
+        this.claimTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean exists(long jobInstanceId) {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM batch_work_unit WHERE job_instance_id = ?", Integer.class, jobInstanceId);
+        return count != null && count > 0;
+    }
+
+    public void create(long jobInstanceId, List<ByteRange> units) {
+        List<Object[]> args = new ArrayList<>(units.size());
+        for (int i = 0; i < units.size(); i++) {
+            args.add(new Object[]{jobInstanceId, i, units.get(i).start(), units.get(i).end()});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, args);
+    }
+
+    /** Restart: units claimed by the failed execution but never finished are queued again. */
+    public int resetClaimed(long jobInstanceId) {
+        return jdbcTemplate.update(
+            "UPDATE batch_work_unit SET status = 'PENDING', worker = NULL, updated_at = CURRENT_TIMESTAMP "
+                + "WHERE job_instance_id = ? AND status = 'CLAIMED'", jobInstanceId);
+    }
+
+    /** Claims the lowest pending unit for {@code worker}, or returns null when none is left. */
+    public WorkUnit claimNext(long jobInstanceId, int worker) {
+        return claimTransaction.execute(tx -> {
+            while (true) {
+                Integer unit = jdbcTemplate.queryForObject(NEXT_PENDING_SQL, Integer.class, jobInstanceId);
+                if (unit == null) {
+                    return null;
+                }
+                if (jdbcTemplate.update(CLAIM_SQL, worker, jobInstanceId, unit) == 1) {
+                    return jdbcTemplate.queryForObject(
+                        "SELECT start_byte, end_byte FROM batch_work_unit WHERE job_instance_id = ? AND unit_idx = ?",
+                        (rs, n) -> new WorkUnit(unit, new ByteRange(rs.getLong(1), rs.getLong(2))), jobInstanceId, unit);
+                }
+                // Another worker won this unit — try the next one
+            }
+        });
+    }
+
+    /** Primary-key updates: one index probe per unit. */
+    public void markDone(long jobInstanceId, Collection<WorkUnit> units) {
+        List<Object[]> args = new ArrayList<>(units.size());
+        for (WorkUnit unit : units) {
+            args.add(new Object[]{jobInstanceId, unit.index()});
+        }
+        jdbcTemplate.batchUpdate(
+            "UPDATE batch_work_unit SET status = 'DONE', updated_at = CURRENT_TIMESTAMP "
+                + "WHERE job_instance_id = ? AND unit_idx = ?", args);
+    }
+
+    public int countByStatus(long jobInstanceId, String status) {
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM batch_work_unit WHERE job_instance_id = ? AND status = ?",
+            Integer.class, jobInstanceId, status);
+        return count == null ? 0 : count;
+    }
+
+    public void deleteByJobInstance(long jobInstanceId) {
+        jdbcTemplate.update("DELETE FROM batch_work_unit WHERE job_instance_id = ?", jobInstanceId);
+    }
+}
@@ -1,4 +1,154 @@
 package com.ing.kallitech.kafka.batch.service;
 
+import com.ing.kallitech.kafka.batch.admission.JobAdmissionController;
+import com.ing.kallitech.kafka.batch.idempotency.IdempotencyService;
+import com.ing.kallitech.kafka.batch.model.KafkaBatchMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * NEW: Launches csvImportJob for a trigger message behind the pod's admission budget.
+ *
+ * Shared by the record-at-a-time KafkaMessageListener and the poll-at-a-time
+ * KafkaBatchMessageListener (kafka.listener-mode), so both honour the same
+ * JobAdmissionController budget. The job's estimated cost is taken by
+ * {@link #tryLaunch} and released by JobCompletionListener.afterJob via
+ * {@link #release}, or here when the launch itself fails.
+ *
+ * Launches are asynchronous: the file is marked PROCESSING in job_file_log, the
+ * JobExecution is created in the JobRepository, and the job then runs on
+ * jobLaunchTaskExecutor. tryLaunch returns once both records are committed, so the
+ * listener acks a trigger only after the launch is durable, and the consumer never
+ * waits for the job to finish.
+ */
+@Service
 public class BatchJobLauncherService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchJobLauncherService.class);
+
+    private final JobLauncher jobLauncher;
+    private final Optional<Job> csvImportJob;
+    private final IdempotencyService idempotencyService;
+    private final MeterRegistry meterRegistry;
+    private final JobAdmissionController admission;
+
+    @Autowired
+    public BatchJobLauncherService(JobRepository jobRepository,
+                                   @Qualifier("jobLaunchTaskExecutor") TaskExecutor jobLaunchTaskExecutor,
+                                   Optional<Job> csvImportJob,
+                                   IdempotencyService idempotencyService,
+                                   MeterRegistry meterRegistry,
+                                   JobAdmissionController admission) throws Exception {
+        this(asyncLauncher(jobRepository, jobLaunchTaskExecutor), csvImportJob, idempotencyService,
+            meterRegistry, admission);
+    }
+
+    BatchJobLauncherService(JobLauncher jobLauncher,
+                            Optional<Job> csvImportJob,
+                            IdempotencyService idempotencyService,
+                            MeterRegistry meterRegistry,
+                            JobAdmissionController admission) {
+        this.jobLauncher = jobLauncher;
+        this.csvImportJob = csvImportJob;
+        this.idempotencyService = idempotencyService;
+        this.meterRegistry = meterRegistry;
+        this.admission = admission;
+    }
+
+    private static JobLauncher asyncLauncher(JobRepository jobRepository, TaskExecutor taskExecutor) throws Exception {
+        var launcher = new TaskExecutorJobLauncher();
+        launcher.setJobRepository(jobRepository);
+        launcher.setTaskExecutor(taskExecutor);
+        launcher.afterPropertiesSet();
+        return launcher;
+    }
+
+    /**
+     * Launches the job if its estimated cost fits the pod's admission budget.
+     *
+     * @return the execution, or empty when the pod has no room for it (nothing was started)
+     * @throws RuntimeException when the launch fails; the file is marked FAILED and the cost released
+     */
+    public Optional<JobExecution> tryLaunch(KafkaBatchMessage message) {
+        int cost = admission.estimateCost(message);
+        if (!admission.tryAdmit(cost)) {
+            meterRegistry.counter("batch.trigger.backpressure").increment();
+            return Optional.empty();
+        }
+        try {
+            idempotencyService.markProcessingStarted(message.getFileId());
+
+            JobParameters params = jobParameters(message, cost);
+            Job job = csvImportJob.orElseThrow(() -> new IllegalStateException("No job available"));
+            JobExecution execution = jobLauncher.run(job, params);
+            if (execution.getStatus() == BatchStatus.FAILED && execution.getStartTime() == null) {
+                // Launch executor full: the execution was stored FAILED and afterJob will never run
+                throw new IllegalStateException("Job launch rejected: " + execution.getExitStatus().getExitDescription());
+            }
+            log.info("Job launched: fileId={} jobId={} status={} cost={}",
+                message.getFileId(), execution.getId(), execution.getStatus(), cost);
+            meterRegistry.counter("batch.trigger.launched").increment();
+            return Optional.of(execution);
+            // Note: cost released by JobCompletionListener.afterJob()
+
+        } catch (Exception e) {
+            log.error("Job launch failed for fileId={}: {}", message.getFileId(), e.getMessage(), e);
+            idempotencyService.markFailed(message.getFileId(), e.getMessage());
+            admission.release(cost);        // Release budget on failure
+            meterRegistry.counter("batch.trigger.launch_failed").increment();
+            throw new RuntimeException("Job launch failed for fileId: " + message.getFileId(), e);
+        }
+    }
+
+    /** Returns the admission cost of a job launched by {@link #tryLaunch}; no-op for other jobs. */
+    public void release(JobExecution jobExecution) {
+        Long cost = jobExecution.getJobParameters().getLong(JobAdmissionController.COST_PARAMETER);
+        if (cost != null) {
+            admission.release(cost.intValue());
+        }
+    }
+
+    /** True when at least a small job could be admitted now. */
+    public boolean hasCapacity() {
+        return admission.hasCapacity();
+    }
+
+    /** Admission cost {@link #tryLaunch} would charge for {@code message}. */
+    public int estimateCost(KafkaBatchMessage message) {
+        return admission.estimateCost(message);
+    }
+
+    /** True when a job of {@code cost} would be admitted now. */
+    public boolean hasCapacityFor(int cost) {
+        return admission.hasCapacityFor(cost);
+    }
+
+    static JobParameters jobParameters(KafkaBatchMessage message, int cost) {
+        JobParametersBuilder paramsBuilder = new JobParametersBuilder()
+                .addString("fileId", message.getFileId())
+                .addString("filePath", message.getFilePath())
+                .addString("delimiter", message.getDelimiter(), false)
+                .addLong("launchTs", System.currentTimeMillis())
+                .addLong(JobAdmissionController.COST_PARAMETER, (long) cost, false);
+        // Optional: byte-range partitioning does not need a record count
+        if (message.getRecordCount() > 0) {
+            paramsBuilder.addLong("totalRecords", message.getRecordCount());
+        }
+        return paramsBuilder.toJobParameters();
+    }
 }
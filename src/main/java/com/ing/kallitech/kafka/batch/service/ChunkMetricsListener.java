@@ -1,29 +1,104 @@
 package com.ing.kallitech.kafka.batch.service;
 
 import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.Chunk;
 import org.springframework.batch.item.file.FlatFileParseException;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * FIXES applied vs original ChunkMetricsListener:
+ *
+ * 1. NEVER CALLED: Only the SkipListener face was registered on workerStep, so
+ *    afterChunk/afterChunkError never ran. Every listener interface is now
+ *    registered explicitly in BatchConfig.
+ *
+ * 2. METER LOOKUP PER CALL: meterRegistry.counter(name, List.of(tag)) allocated
+ *    tags and hit the registry map on every chunk. Meters are now registered once
+ *    per worker step (beforeStep) and reused.
+ *
+ * 3. NO LATENCY BREAKDOWN: Only a completed-chunk count. Added per-chunk timers,
+ *    tagged step + partition, with percentiles and SLO buckets:
+ *      batch.chunk.duration                 whole chunk incl. commit (afterChunk runs post-commit)
+ *      batch.chunk.phase.duration{phase=}   read | process | write time within the chunk
+ *    read includes waiting on the pipeline queue, so a parse-bound job shows up as
+ *    read time and an Oracle-bound one as write time.
+ *
+ * Timing state lives in a per-thread Clock: each partition runs on one thread
+ * (workerStep has no task executor of its own), so no synchronisation and no
+ * allocation on the item path.
+ */
 @Component
 public class ChunkMetricsListener
-        implements ChunkListener, SkipListener<RecordDTO, RecordDTO> {
+        implements StepExecutionListener, ChunkListener,
+                   ItemReadListener<RecordDTO>, ItemProcessListener<RecordDTO, RecordDTO>,
+                   ItemWriteListener<RecordDTO>, SkipListener<RecordDTO, RecordDTO> {
 
     private static final Logger log =
             LoggerFactory.getLogger(ChunkMetricsListener.class);
 
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private static final Duration[] CHUNK_SLOS = {
+        Duration.ofMillis(50), Duration.ofMillis(100), Duration.ofMillis(250),
+        Duration.ofMillis(500), Duration.ofSeconds(1), Duration.ofMillis(2500),
+        Duration.ofSeconds(5), Duration.ofSeconds(10)
+    };
+
     private final MeterRegistry meterRegistry;
 
+    private final Counter skipRead;
+    private final Counter skipProcess;
+    private final Counter skipWrite;
+
+    /** Keyed by the worker step name (workerStep:partition-N), so re-runs reuse the meters. */
+    private final Map<String, StepMeters> metersByStep = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<Clock> clock = ThreadLocal.withInitial(Clock::new);
+
     public ChunkMetricsListener(MeterRegistry meterRegistry) {
         this.meterRegistry = meterRegistry;
+        this.skipRead = meterRegistry.counter("batch.skip.read");
+        this.skipProcess = meterRegistry.counter("batch.skip.process");
+        this.skipWrite = meterRegistry.counter("batch.skip.write");
+    }
+
+    // ========================
+    // Step Lifecycle
+    // ========================
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        String stepName = stepExecution.getStepName();
+        int partitionIndex = stepExecution.getExecutionContext().getInt("partitionIndex", -1);
+        Clock c = clock.get();
+        c.meters = metersByStep.computeIfAbsent(stepName, n -> new StepMeters(n, partitionIndex));
+        c.reset();
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        clock.remove();
+        return null;
     }
 
     // ========================
@@ -32,29 +107,87 @@ public class ChunkMetricsListener
 
     @Override
     public void beforeChunk(ChunkContext context) {
-        // no-op (optional: track chunk start time here)
+        Clock c = clock.get();
+        c.reset();
+        c.chunkStart = System.nanoTime();
     }
 
     @Override
     public void afterChunk(ChunkContext context) {
-        String stepName = context.getStepContext().getStepName();
-
-        meterRegistry.counter(
-                "batch.chunk.completed",
-                List.of(Tag.of("step", stepName))
-        ).increment();
+        Clock c = clock.get();
+        StepMeters m = meters(c, context);
+        long now = System.nanoTime();
+        c.closeRead(now);
+        m.chunk.record(now - c.chunkStart, TimeUnit.NANOSECONDS);
+        m.read.record(c.readNanos, TimeUnit.NANOSECONDS);
+        m.process.record(c.processNanos, TimeUnit.NANOSECONDS);
+        m.write.record(c.writeNanos, TimeUnit.NANOSECONDS);
+        m.completed.increment();
     }
 
     @Override
     public void afterChunkError(ChunkContext context) {
-        String stepName = context.getStepContext().getStepName();
+        Clock c = clock.get();
+        meters(c, context).error.increment();
+        c.reset();
+
+        log.warn("Chunk error in step={}", context.getStepContext().getStepName());
+    }
+
+    // ========================
+    // Phase Timing
+    // ========================
+
+    @Override
+    public void beforeRead() {
+        clock.get().readStart = System.nanoTime();
+    }
+
+    @Override
+    public void afterRead(RecordDTO item) {
+        clock.get().closeRead(System.nanoTime());
+    }
+
+    @Override
+    public void onReadError(Exception ex) {
+        clock.get().closeRead(System.nanoTime());
+    }
+
+    @Override
+    public void beforeProcess(RecordDTO item) {
+        Clock c = clock.get();
+        long now = System.nanoTime();
+        // The end-of-input read returns null and gets no afterRead
+        c.closeRead(now);
+        c.processStart = now;
+    }
+
+    @Override
+    public void afterProcess(RecordDTO item, RecordDTO result) {
+        clock.get().closeProcess(System.nanoTime());
+    }
+
+    @Override
+    public void onProcessError(RecordDTO item, Exception e) {
+        clock.get().closeProcess(System.nanoTime());
+    }
 
-        meterRegistry.counter(
-                "batch.chunk.error",
-                List.of(Tag.of("step", stepName))
-        ).increment();
+    @Override
+    public void beforeWrite(Chunk<? extends RecordDTO> items) {
+        Clock c = clock.get();
+        long now = System.nanoTime();
+        c.closeRead(now);
+        c.writeStart = now;
+    }
 
-        log.warn("Chunk error in step={}", stepName);
+    @Override
+    public void afterWrite(Chunk<? extends RecordDTO> items) {
+        clock.get().closeWrite(System.nanoTime());
+    }
+
+    @Override
+    public void onWriteError(Exception exception, Chunk<? extends RecordDTO> items) {
+        clock.get().closeWrite(System.nanoTime());
     }
 
     // ========================
@@ -63,7 +196,7 @@ public class ChunkMetricsListener
 
     @Override
     public void onSkipInRead(Throwable t) {
-        meterRegistry.counter("batch.skip.read").increment();
+        skipRead.increment();
 
         if (t instanceof FlatFileParseException ex) {
             log.warn("Skipped unparseable line {}: {}",
@@ -76,7 +209,7 @@ public class ChunkMetricsListener
 
     @Override
     public void onSkipInProcess(RecordDTO item, Throwable t) {
-        meterRegistry.counter("batch.skip.process").increment();
+        skipProcess.increment();
 
         String name = item != null ? item.getName() : "unknown";
 
@@ -88,7 +221,7 @@ public class ChunkMetricsListener
 
     @Override
     public void onSkipInWrite(RecordDTO item, Throwable t) {
-        meterRegistry.counter("batch.skip.write").increment();
+        skipWrite.increment();
 
         String hash = item != null ? item.getRecordHash() : "unknown";
 
@@ -97,4 +230,107 @@ public class ChunkMetricsListener
                 t.getMessage(),
                 t);
     }
+
+    // ========================
+    // Internals
+    // ========================
+
+    /** Falls back to a lookup when the listener was not registered as a StepExecutionListener. */
+    private StepMeters meters(Clock c, ChunkContext context) {
+        if (c.meters == null) {
+            StepExecution step = context.getStepContext().getStepExecution();
+            c.meters = metersByStep.computeIfAbsent(step.getStepName(),
+                n -> new StepMeters(n, step.getExecutionContext().getInt("partitionIndex", -1)));
+        }
+        return c.meters;
+    }
+
+    private final class StepMeters {
+        final Timer chunk;
+        final Timer read;
+        final Timer process;
+        final Timer write;
+        final Counter completed;
+        final Counter error;
+
+        StepMeters(String stepName, int partitionIndex) {
+            int colon = stepName.indexOf(':');
+            Tags tags = Tags.of(
+                "step", colon < 0 ? stepName : stepName.substring(0, colon),
+                "partition", partitionTag(stepName, partitionIndex));
+
+            this.chunk = timer("batch.chunk.duration", tags);
+            this.read = timer("batch.chunk.phase.duration", tags.and("phase", "read"));
+            this.process = timer("batch.chunk.phase.duration", tags.and("phase", "process"));
+            this.write = timer("batch.chunk.phase.duration", tags.and("phase", "write"));
+            this.completed = meterRegistry.counter("batch.chunk.completed", tags);
+            this.error = meterRegistry.counter("batch.chunk.error", tags);
+        }
+
+        private Timer timer(String name, Tags tags) {
+            return Timer.builder(name)
+                .tags(tags)
+                .publishPercentiles(PERCENTILES)
+                .serviceLevelObjectives(CHUNK_SLOS)
+                .register(meterRegistry);
+        }
+    }
+
+    /**
+     * workerStep:partition-3 → "3". The partitionIndex CsvPartitioner stores wins;
+     * the step-name suffix covers contexts without it. "none" for unpartitioned steps.
+     */
+    static String partitionTag(String stepName, int partitionIndex) {
+        if (partitionIndex >= 0) {
+            return Integer.toString(partitionIndex);
+        }
+        int at = stepName.lastIndexOf(":partition");
+        if (at < 0) {
+            return "none";
+        }
+        String suffix = stepName.substring(at + ":partition".length());
+        if (suffix.startsWith("-")) {
+            suffix = suffix.substring(1);
+        }
+        return !suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit) ? suffix : "none";
+    }
+
+    /** Per-thread phase accumulators for the chunk in flight. */
+    private static final class Clock {
+        StepMeters meters;
+        long chunkStart;
+        long readStart;
+        long processStart;
+        long writeStart;
+        long readNanos;
+        long processNanos;
+        long writeNanos;
+
+        void reset() {
+            chunkStart = System.nanoTime();
+            readStart = processStart = writeStart = 0;
+            readNanos = processNanos = writeNanos = 0;
+        }
+
+        void closeRead(long now) {
+            if (readStart != 0) {
+                readNanos += now - readStart;
+                readStart = 0;
+            }
+        }
+
+        void closeProcess(long now) {
+            if (processStart != 0) {
+                processNanos += now - processStart;
+                processStart = 0;
+            }
+        }
+
+        void closeWrite(long now) {
+            if (writeStart != 0) {
+                writeNanos += now - writeStart;
+                writeStart = 0;
+            }
+        }
+    }
 }
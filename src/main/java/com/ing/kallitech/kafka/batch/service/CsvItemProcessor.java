@@ -1,27 +1,40 @@
 package com.ing.kallitech.kafka.batch.service;
 
+import com.ing.kallitech.kafka.batch.dedup.RecordHashFilter;
 import com.ing.kallitech.kafka.batch.model.RecordDTO;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.batch.core.StepExecution;
-import org.springframework.batch.core.annotation.BeforeStep;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import java.math.RoundingMode;
 
+/**
+ * FIX: Was a singleton whose @BeforeStep overwrote jobId/partitionIndex for
+ * every partition, so records were tagged with whichever partition started
+ * last. Now @StepScope: one instance per partition StepExecution.
+ *
+ * Hashing is delegated to the shared, thread-safe RecordHasher, and skipped
+ * when a pipelined reader has already hashed the item. Records the
+ * RecordHashFilter may have seen are tagged maybeDuplicate, so the writer
+ * MERGEs them instead of sending replayed rows into its duplicate-key path.
+ */
 @Component
+@StepScope
 public class CsvItemProcessor implements ItemProcessor<RecordDTO, RecordDTO> {
 
-    private static final Logger log = LoggerFactory.getLogger(CsvItemProcessor.class);
+    private final RecordHasher recordHasher;
+    private final RecordHashFilter recordHashFilter;
+    private final String jobId;
+    private final int    partitionIndex;
 
-    private String jobId;
-    private int    partitionIndex;
-
-    @BeforeStep
-    public void beforeStep(StepExecution stepExecution) {
+    public CsvItemProcessor(@Value("#{stepExecution}") StepExecution stepExecution,
+                            RecordHasher recordHasher,
+                            RecordHashFilter recordHashFilter) {
+        this.recordHasher     = recordHasher;
+        this.recordHashFilter = recordHashFilter;
         this.jobId          = String.valueOf(stepExecution.getJobExecution().getId());
         this.partitionIndex = stepExecution.getExecutionContext().getInt("partitionIndex", 0);
     }
@@ -35,28 +48,20 @@ public class CsvItemProcessor implements ItemProcessor<RecordDTO, RecordDTO> {
         if (item.getValueRec() == null) {
             throw new RecordValidationException("value is null", item);
         }
-        if (item.getValueRec().scale() > 4) {
-            item.setValueRec(item.getValueRec().setScale(4, RoundingMode.HALF_UP));
+        if (item.getValueRec().scale() > RecordDTO.VALUE_SCALE) {
+            // CSV readers already round while parsing (DecimalParser); this covers other sources
+            item.setValueRec(item.getValueRec().setScale(RecordDTO.VALUE_SCALE, RoundingMode.HALF_UP));
         }
         if (!StringUtils.hasText(item.getCategory())) {
         }
 
-        item.setRecordHash(computeHash(item));
+        if (item.getRecordHash() == null && item.getRecordHashBytes() == null) {
+            recordHasher.hash(item);   // not already hashed by a pipelined reader
+        }
+        recordHashFilter.tagMaybeDuplicate(item);
         item.setJobId(jobId);
         item.setPartitionIndex(partitionIndex);
 
         return item;
     }
-
-
-    private String computeHash(RecordDTO rec) {
-        String key = String.join("|",
-            nullSafe(rec.getExternalId()),
-            nullSafe(rec.getCategory()),
-            rec.getEventTs() != null ? rec.getEventTs().toString() : ""
-        );
-        return DigestUtils.sha256Hex(key);
-    }
-
-    private String nullSafe(String s) { return s != null ? s : ""; }
 }
@@ -4,9 +4,8 @@ import com.ing.kallitech.kafka.batch.model.RecordDTO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.StepExecution;
-import org.springframework.batch.core.annotation.BeforeStep;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.item.*;
-import org.springframework.batch.item.file.FlatFileItemReader;
 import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
 import org.springframework.batch.item.file.mapping.DefaultLineMapper;
 import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
@@ -15,64 +14,215 @@ import org.springframework.batch.item.file.transform.FieldSet;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Component;
 
-import java.sql.Timestamp;
-import java.time.Instant;
+import com.ing.kallitech.kafka.batch.csv.ByteOffsetAware;
+import com.ing.kallitech.kafka.batch.csv.ByteRange;
+import com.ing.kallitech.kafka.batch.csv.ByteRangeResource;
+import com.ing.kallitech.kafka.batch.csv.CsvRecordParser;
+import com.ing.kallitech.kafka.batch.csv.DecimalParser;
+import com.ing.kallitech.kafka.batch.csv.GzipBlockIndex;
+import com.ing.kallitech.kafka.batch.csv.GzipCsvItemReader;
+import com.ing.kallitech.kafka.batch.csv.GzipRangeResource;
+import com.ing.kallitech.kafka.batch.csv.IsoTimestampParser;
+import com.ing.kallitech.kafka.batch.csv.MappedCsvItemReader;
+import com.ing.kallitech.kafka.batch.csv.PipelinedItemReader;
+import com.ing.kallitech.kafka.batch.csv.WorkUnit;
+import com.ing.kallitech.kafka.batch.csv.WorkUnitItemReader;
+import com.ing.kallitech.kafka.batch.repository.WorkUnitRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
 
 /**
- * FIX: Original BatchConfig.csvItemReader(null) passed null as filePath.
- * This would cause a NullPointerException at runtime when Spring tried to
- * open the FileSystemResource.
+ * Step-scoped reader of one CsvPartitioner partition; each partition StepExecution
+ * gets its own instance, built from its own ExecutionContext.
+ *
+ * The partition keys select the source:
+ *   startByte/endByte                 — a line-aligned byte range of the file
+ *   gzipMemberStart/gzipStart/gzipEnd — an uncompressed span, inflated from its first
+ *                                       member on a read-ahead thread
+ *   workUnitInstanceId                — byte-range units claimed from batch_work_unit
+ *                                       by a WorkUnitItemReader until none is left
+ *   startLine/maxItemCount            — a line range (legacy lines mode)
+ *
+ * batch.job.reader-engine: mmap (default) tokenizes in place (MappedCsvItemReader,
+ * GzipCsvItemReader); flatfile uses FlatFileItemReader. Line ranges and
+ * multi-character delimiters always use flatfile. batch.job.pipeline.enabled runs
+ * the engine on a producer thread (PipelinedItemReader) that parses and hashes ahead.
  *
- * Fix: Reader is now @Component + uses @BeforeStep to read filePath and
- * line range from the StepExecution's ExecutionContext (injected by
- * CsvPartitioner). saveState=true enables restart from last committed chunk.
+ * update() stores reader.offset and reader.line once per chunk; PartitionProgressTracker
+ * reads them, and open() resumes from them on restart without re-reading committed
+ * rows. For work units it marks fully consumed units DONE in the chunk's transaction
+ * and stores reader.unitBytes, the bytes consumed across the partition's units.
  */
 @Component
-public class CsvItemReader implements ItemStreamReader<RecordDTO> {
+@StepScope
+public class CsvItemReader implements ItemStreamReader<RecordDTO>, ByteOffsetAware {
 
     private static final Logger log = LoggerFactory.getLogger(CsvItemReader.class);
 
     private static final String[] FIELD_NAMES =
         {"externalId", "name", "value_rec", "category", "eventTs"}; // Skip 'email' field
 
-    private FlatFileItemReader<RecordDTO> delegate;
+    public static final String ENGINE_MMAP = "mmap";
+    public static final String ENGINE_FLATFILE = "flatfile";
+
+    /** Step ExecutionContext key: offset of the next unread byte, written on every update(). */
+    public static final String OFFSET_KEY = ByteOffsetAware.OFFSET_KEY;
+
+    /** Step ExecutionContext key: lines consumed up to {@link #OFFSET_KEY}. */
+    public static final String LINE_KEY = ByteOffsetAware.LINE_KEY;
+
+    /** Step ExecutionContext key of work-unit partitions: bytes of its units consumed so far. */
+    public static final String UNIT_BYTES_KEY = "reader.unitBytes";
+
+    private final String readerEngine;
+    private final WorkUnitRepository workUnitRepository;
+    private final long workUnitInstanceId;
+
+    private WorkUnitItemReader<RecordDTO> workUnits;   // set in work-unit mode
+    private final ItemStreamReader<RecordDTO> delegate;
     private boolean opened = false;
 
-    @BeforeStep
-    public void beforeStep(StepExecution stepExecution) {
-        var ctx          = stepExecution.getExecutionContext();
+    public CsvItemReader(StepExecution stepExecution, String readerEngine, RecordHasher recordHasher,
+                         boolean pipelined, int queueCapacity) {
+        this(stepExecution, readerEngine, recordHasher, pipelined, queueCapacity, null);
+    }
+
+    @Autowired
+    public CsvItemReader(@Value("#{stepExecution}") StepExecution stepExecution,
+                         @Value("${batch.job.reader-engine:mmap}") String readerEngine,
+                         RecordHasher recordHasher,
+                         @Value("${batch.job.pipeline.enabled:false}") boolean pipelined,
+                         @Value("${batch.job.pipeline.queue-capacity:2000}") int queueCapacity,
+                         WorkUnitRepository workUnitRepository) {
+        if (!ENGINE_MMAP.equals(readerEngine) && !ENGINE_FLATFILE.equals(readerEngine)) {
+            throw new IllegalArgumentException("Unsupported batch.job.reader-engine: " + readerEngine);
+        }
+        this.readerEngine = readerEngine;
+        this.workUnitRepository = workUnitRepository;
+        this.workUnitInstanceId = stepExecution.getExecutionContext().getLong(CsvPartitioner.WORK_UNIT_INSTANCE_KEY, -1);
+        ItemStreamReader<RecordDTO> engine = createDelegate(stepExecution.getExecutionContext());
+        this.delegate = pipelined
+            ? new PipelinedItemReader<>(engine, recordHasher::hash, queueCapacity,
+                "csv-pipeline-" + stepExecution.getExecutionContext().getInt("partitionIndex", 0))
+            : engine;
+    }
+
+    private ItemStreamReader<RecordDTO> createDelegate(ExecutionContext ctx) {
         String filePath  = ctx.getString("filePath");
-        long startLine   = ctx.getLong("startLine");
-        long maxItems    = ctx.getLong("maxItemCount");
         String delimiter = ctx.containsKey("delimiter") ? ctx.getString("delimiter") : ",";
         int partIdx      = ctx.getInt("partitionIndex", 0);
+        boolean byteRange = ctx.containsKey("startByte");
+
+        if (ctx.containsKey(CsvPartitioner.GZIP_START_KEY)) {
+            var span = new GzipBlockIndex.Span(ctx.getLong(CsvPartitioner.GZIP_MEMBER_KEY),
+                ctx.getLong(CsvPartitioner.GZIP_START_KEY), ctx.getLong(CsvPartitioner.GZIP_END_KEY));
+            var resource = new GzipRangeResource(Path.of(filePath), span, "gzip-read-ahead-" + partIdx);
+
+            log.info("CsvItemReader init (gzip, {}): partition={} file={} uncompressed={}-{} member={}",
+                readerEngine, partIdx, filePath, span.start(), span.end(), span.compressedStart());
+
+            if (ENGINE_MMAP.equals(readerEngine) && CsvRecordParser.supports(delimiter)) {
+                return new GzipCsvItemReader(resource, (byte) delimiter.charAt(0));
+            }
+            return new FlatFileItemReaderBuilder<RecordDTO>()
+                .name("csvReader-" + partIdx)
+                .resource(resource)
+                .saveState(true)
+                .lineMapper(lineMapper(delimiter))
+                .build();
+        }
+
+        if (ctx.containsKey(CsvPartitioner.WORK_UNIT_INSTANCE_KEY)) {
+            if (workUnitRepository == null) {
+                throw new IllegalStateException("Work-unit partition without a WorkUnitRepository: partition=" + partIdx);
+            }
+            long jobInstanceId = ctx.getLong(CsvPartitioner.WORK_UNIT_INSTANCE_KEY);
+
+            log.info("CsvItemReader init (work units, {}): partition={} file={} jobInstanceId={}",
+                readerEngine, partIdx, filePath, jobInstanceId);
+
+            workUnits = new WorkUnitItemReader<>(
+                () -> workUnitRepository.claimNext(jobInstanceId, partIdx),
+                range -> rangeReader(filePath, delimiter, partIdx, range));
+            return workUnits;
+        }
+
+        if (byteRange) {
+            var range = new ByteRange(ctx.getLong("startByte"), ctx.getLong("endByte"));
+
+            log.info("CsvItemReader init ({}): partition={} file={} bytes={}-{}",
+                readerEngine, partIdx, filePath, range.start(), range.end());
+
+            return rangeReader(filePath, delimiter, partIdx, range);
+        }
+
+        long startLine = ctx.getLong("startLine");
+        long maxItems  = ctx.getLong("maxItemCount");
 
         log.info("CsvItemReader init: partition={} file={} startLine={} maxItems={}",
             partIdx, filePath, startLine, maxItems);
 
+        // Create a new resource for each partition to avoid stream conflicts
+        var resource = new FileSystemResource(filePath);
+
+        var reader = new FlatFileItemReaderBuilder<RecordDTO>()
+            .name("csvReader-" + partIdx)
+            .resource(resource)
+            .linesToSkip((int) startLine - 1)  // Skip header + all lines before this partition
+            .maxItemCount((int) maxItems)      // Read exactly this partition's items
+            .saveState(true)   // read.count: a restart skips the lines of committed chunks
+            .lineMapper(lineMapper(delimiter))  // Use custom line mapper
+            .build();
+
+        log.info("Configured reader partition{}: skip={}, maxItems={}",
+            partIdx, (int) startLine - 1, (int) maxItems);
+        return reader;
+    }
+
+    /** Reader for one line-aligned byte range, which never contains the header. */
+    private ItemStreamReader<RecordDTO> rangeReader(String filePath, String delimiter, int partIdx, ByteRange range) {
+        if (ENGINE_MMAP.equals(readerEngine) && CsvRecordParser.supports(delimiter)) {
+            return new MappedCsvItemReader(Path.of(filePath), range, (byte) delimiter.charAt(0));
+        }
+        return new FlatFileItemReaderBuilder<RecordDTO>()
+            .name("csvReader-" + partIdx)
+            .resource(new ByteRangeResource(Path.of(filePath), range))
+            .saveState(true)   // no byte offset to seek to: restart skips read.count lines
+            .lineMapper(lineMapper(delimiter))
+            .build();
+    }
+
+    private static DefaultLineMapper<RecordDTO> lineMapper(String delimiter) {
         var tokenizer = new DelimitedLineTokenizer(delimiter);
         tokenizer.setNames(FIELD_NAMES);
         tokenizer.setStrict(false); // Allow missing columns and different field counts
         
-        log.info("Tokenizer configured with fields: {}", String.join(",", FIELD_NAMES));
+        log.debug("Tokenizer configured with fields: {}", String.join(",", FIELD_NAMES));
 
         // Create a custom field mapper for timestamp conversion
+        // One mapper per reader: the parsers hold scratch state and a last-seen timestamp
         var fieldMapper = new FieldSetMapper<RecordDTO>() {
+            private final DecimalParser decimalParser = new DecimalParser(RecordDTO.VALUE_SCALE);
+            private final IsoTimestampParser timestampParser = new IsoTimestampParser();
+
             @Override
             public RecordDTO mapFieldSet(FieldSet fieldSet) {
                 try {
                     RecordDTO record = new RecordDTO();
                     record.setExternalId(fieldSet.readString("externalId"));
                     record.setName(fieldSet.readString("name"));
-                    record.setValueRec(fieldSet.readBigDecimal("value_rec"));
+                    record.setValueRec(readValue(fieldSet));
                     record.setCategory(fieldSet.readString("category"));
                     
                     // Convert ISO timestamp string to Timestamp
                     String eventTsStr = fieldSet.readString("eventTs");
                     if (eventTsStr != null && !eventTsStr.isEmpty()) {
                         try {
-                            Instant instant = Instant.parse(eventTsStr);
-                            record.setEventTs(Timestamp.from(instant));
+                            record.setEventTs(timestampParser.parse(eventTsStr));
                         } catch (Exception e) {
                             log.warn("Failed to parse timestamp: {}", eventTsStr);
                             record.setEventTs(null);
@@ -85,60 +235,79 @@ public class CsvItemReader implements ItemStreamReader<RecordDTO> {
                     return null;
                 }
             }
+
+            private BigDecimal readValue(FieldSet fieldSet) {
+                try {
+                    return decimalParser.parse(fieldSet.readString("value_rec"));
+                } catch (NumberFormatException e) {
+                    // Grouping separators ("1,000.5" when quoted): FieldSet strips them
+                    return fieldSet.readBigDecimal("value_rec");
+                }
+            }
         };
 
         // Create a custom line mapper for better error handling
         var lineMapper = new DefaultLineMapper<RecordDTO>();
         lineMapper.setLineTokenizer(tokenizer);
         lineMapper.setFieldSetMapper(fieldMapper);
-
-        // Create a new resource for each partition to avoid stream conflicts
-        var resource = new FileSystemResource(filePath);
-        
-        delegate = new FlatFileItemReaderBuilder<RecordDTO>()
-            .name("csvReader-" + partIdx)
-            .resource(resource)
-            .linesToSkip((int) startLine - 1)  // Skip header + all lines before this partition
-            .maxItemCount((int) maxItems)      // Read exactly this partition's items
-            .saveState(false)  // Disable save state for partitioned readers
-            .lineMapper(lineMapper)  // Use custom line mapper
-            .build();
-            
-        log.info("Configured reader partition{}: skip={}, maxItems={}", 
-            partIdx, (int) startLine - 1, (int) maxItems);
-            
-        opened = false;
+        return lineMapper;
     }
 
     @Override 
     public RecordDTO read() throws Exception { 
-        if (!opened) {
-            log.info("Opening CSV reader for partition");
-            delegate.open(new ExecutionContext());
-            opened = true;
-        }
-        
+        // No per-record logging: this is the hottest call in the job
         RecordDTO record = delegate.read();
-        if (record != null) {
-            log.info("Successfully read record: externalId={}, name={}, value={}", 
-                record.getExternalId(), record.getName(), record.getValueRec());
-        } else {
-            log.info("No more records to read");
+        if (record == null) {
+            log.debug("No more records to read");
         }
         return record;
     }
     
     @Override 
     public void open(ExecutionContext ctx) { 
-        // Don't open here - open on first read instead
+        if (ctx.containsKey(OFFSET_KEY)) {
+            log.info("Opening CSV reader for partition: resuming at byte {} line {}",
+                ctx.getLong(OFFSET_KEY), ctx.getLong(LINE_KEY, -1));
+        } else {
+            log.info("Opening CSV reader for partition");
+        }
+        // The step's context: on restart it holds the checkpoint of the last committed chunk
+        delegate.open(ctx);
+        opened = true;
     }
     
     @Override 
     public void update(ExecutionContext ctx) { 
         if (opened) {
             delegate.update(ctx); 
+            long offset = byteOffset();
+            if (offset >= 0) {
+                ctx.putLong(OFFSET_KEY, offset);
+                long line = lineNumber();
+                if (line >= 0) {
+                    ctx.putLong(LINE_KEY, line);
+                }
+            }
+            if (workUnits != null) {
+                // Runs inside the chunk transaction: units are DONE only if this chunk commits
+                List<WorkUnit> done = workUnits.completedUpTo(offset);
+                if (!done.isEmpty()) {
+                    workUnitRepository.markDone(workUnitInstanceId, done);
+                }
+                ctx.putLong(UNIT_BYTES_KEY, workUnits.consumedBytes(offset));
+            }
         }
     }
+
+    @Override
+    public long byteOffset() {
+        return delegate instanceof ByteOffsetAware aware ? aware.byteOffset() : -1;
+    }
+
+    @Override
+    public long lineNumber() {
+        return delegate instanceof ByteOffsetAware aware ? aware.lineNumber() : -1;
+    }
     
     @Override 
     public void close() { 
@@ -1,38 +1,181 @@
 package com.ing.kallitech.kafka.batch.service;
 
+import com.ing.kallitech.kafka.batch.admission.JobAdmissionController;
+import com.ing.kallitech.kafka.batch.csv.ByteRange;
+import com.ing.kallitech.kafka.batch.csv.CsvFileSplitter;
+import com.ing.kallitech.kafka.batch.csv.GzipBlockIndex;
+import com.ing.kallitech.kafka.batch.repository.WorkUnitRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.core.repository.JobRepository;
 import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.IntSupplier;
 
 /**
- * Splits the CSV file into N non-overlapping line ranges.
+ * Splits the CSV file into N non-overlapping ranges.
  *
  * This partitioner gets job parameters from the StepExecution that's passed
  * by Spring Batch's SimpleStepExecutionSplitter. The StepExecution is available
  * through a thread-local context when the partition() method is called.
  *
- * Each partition's ExecutionContext carries:
- *   filePath, startLine, maxItemCount, partitionIndex, delimiter
+ * Two modes (batch.job.partition-mode):
  *
- * Line 1 is always the header — partition 0 starts at line 2.
+ *   bytes (default) — the file is cut into line-aligned byte ranges. Each
+ *     partition's ExecutionContext carries:
+ *       filePath, startByte, endByte, partitionIndex, delimiter
+ *     The reader seeks straight to startByte, so no partition re-reads the lines
+ *     in front of it. totalRecords is not needed — the ranges alone define the split.
+ *
+ *   lines — legacy line-number ranges derived from totalRecords:
+ *       filePath, startLine, maxItemCount, partitionIndex, delimiter
+ *     Line 1 is always the header — partition 0 starts at line 2. Every reader
+ *     skips startLine - 1 lines, so total I/O grows quadratically with grid size.
+ *
+ *   units — work stealing. The data section is cut into many small line-aligned
+ *     units (batch.job.work-units.unit-bytes, at least units-per-worker per
+ *     partition) stored in batch_work_unit; each partition's ExecutionContext carries
+ *       filePath, workUnitInstanceId, partitionIndex, delimiter
+ *     and its reader claims units until none is left, so a partition that hits slow
+ *     rows takes fewer units instead of holding up the step. On restart the units of
+ *     the job instance are reused: DONE ones stay done, CLAIMED ones are re-queued.
+ *
+ * NEW: Gzip input. A file starting with the gzip magic bytes is partitioned at gzip
+ * member boundaries whatever the mode (GzipBlockIndex, built on first read and
+ * cached next to the file). Each partition's ExecutionContext carries
+ *       filePath, gzipMemberStart, gzipStart, gzipEnd, partitionIndex, delimiter
+ * i.e. the compressed offset to start inflating at and the uncompressed span whose
+ * lines it owns. BGZF / multi-member files split like plain ones; a single-member
+ * file becomes one partition that streams it.
+ *
+ * NEW: Dynamic grid size (batch.job.grid.dynamic, default on). The gridSize Spring
+ * passes in (batch.job.grid-size) is only the upper bound; the partition count is
+ *   demand = max(dataBytes / target-bytes-per-partition, totalRecords / target-rows-per-partition)
+ *   share  = batchTaskExecutor max threads / jobs running on this pod × partitions-per-thread
+ *   grid   = min(demand, max(grid.min, min(share, gridSize)))
+ * so a file below one partition's worth of data gets exactly one partition (no
+ * fan-out, no per-partition StepExecution rows), and a 50 GB file on a busy pod is
+ * not cut into more partitions than its share of the threads can drain. With the
+ * remote partition handler the threads belong to every pod, so the share is not applied.
+ * The chosen size is stored in the manager step's ExecutionContext as "gridSize" and
+ * saved to the JobRepository at once — before the worker StepExecutions exist, not
+ * only when the manager step ends — so a restart after a crash reuses it even when
+ * the pod's load has changed: the same partitions are restarted, with their original
+ * ranges, instead of a different count that skips or overlaps them.
  */
 @Component
 public class CsvPartitioner implements Partitioner {
 
     private static final Logger log = LoggerFactory.getLogger(CsvPartitioner.class);
 
+    public static final String MODE_BYTES = "bytes";
+    public static final String MODE_LINES = "lines";
+    public static final String MODE_UNITS = "units";
+
+    /** Partition ExecutionContext key of work-unit partitions: the job instance owning the units. */
+    public static final String WORK_UNIT_INSTANCE_KEY = "workUnitInstanceId";
+
+    /** Gzip partition ExecutionContext keys: first member's compressed offset, uncompressed span. */
+    public static final String GZIP_MEMBER_KEY = "gzipMemberStart";
+    public static final String GZIP_START_KEY = "gzipStart";
+    public static final String GZIP_END_KEY = "gzipEnd";
+
+    /** Manager step ExecutionContext key: the grid size chosen on the first run. */
+    public static final String GRID_SIZE_KEY = "gridSize";
+
+    private final String partitionMode;
+    private final boolean dynamicGrid;
+    private final int minGrid;
+    private final long targetBytesPerPartition;
+    private final long targetRowsPerPartition;
+    private final int partitionsPerThread;
+    private final IntSupplier availableThreads;   // <= 0: no thread cap (remote handler)
+    private final IntSupplier runningJobs;
+    private final WorkUnitRepository workUnitRepository;
+    private final long unitBytes;
+    private final int unitsPerWorker;
+    private final JobRepository jobRepository;   // null: the grid size is not saved until the step ends
+
+    @Autowired
+    public CsvPartitioner(@Value("${batch.job.partition-mode:bytes}") String partitionMode,
+                          @Value("${batch.job.grid.dynamic:true}") boolean dynamicGrid,
+                          @Value("${batch.job.grid.min:1}") int minGrid,
+                          @Value("${batch.job.grid.target-bytes-per-partition:67108864}") long targetBytesPerPartition,
+                          @Value("${batch.job.grid.target-rows-per-partition:500000}") long targetRowsPerPartition,
+                          @Value("${batch.job.grid.partitions-per-thread:2}") int partitionsPerThread,
+                          @Value("${batch.job.partition-handler:local}") String partitionHandler,
+                          @Qualifier("batchTaskExecutor") ObjectProvider<ThreadPoolTaskExecutor> batchTaskExecutor,
+                          ObjectProvider<JobAdmissionController> admissionController,
+                          WorkUnitRepository workUnitRepository,
+                          @Value("${batch.job.work-units.unit-bytes:16777216}") long unitBytes,
+                          @Value("${batch.job.work-units.units-per-worker:4}") int unitsPerWorker,
+                          ObjectProvider<JobRepository> jobRepository) {
+        this(partitionMode, dynamicGrid, minGrid, targetBytesPerPartition, targetRowsPerPartition, partitionsPerThread,
+            () -> {
+                ThreadPoolTaskExecutor executor = batchTaskExecutor.getIfAvailable();
+                return "remote".equals(partitionHandler) || executor == null ? 0 : executor.getMaxPoolSize();
+            },
+            () -> {
+                JobAdmissionController admission = admissionController.getIfAvailable();
+                return admission == null ? 1 : admission.runningJobs();
+            },
+            workUnitRepository, unitBytes, unitsPerWorker, jobRepository.getIfAvailable());
+    }
+
+    /** Fixed grid: always splits into the gridSize passed to {@link #partition}. */
+    public CsvPartitioner(String partitionMode) {
+        this(partitionMode, false, 1, 1, 1, 1, () -> 0, () -> 1, null, 1, 1, null);
+    }
+
+    CsvPartitioner(String partitionMode, boolean dynamicGrid, int minGrid,
+                   long targetBytesPerPartition, long targetRowsPerPartition, int partitionsPerThread,
+                   IntSupplier availableThreads, IntSupplier runningJobs,
+                   WorkUnitRepository workUnitRepository, long unitBytes, int unitsPerWorker,
+                   JobRepository jobRepository) {
+        if (!MODE_BYTES.equals(partitionMode) && !MODE_LINES.equals(partitionMode) && !MODE_UNITS.equals(partitionMode)) {
+            throw new IllegalArgumentException("Unsupported batch.job.partition-mode: " + partitionMode);
+        }
+        if (minGrid < 1 || targetBytesPerPartition < 1 || targetRowsPerPartition < 1 || partitionsPerThread < 1) {
+            throw new IllegalArgumentException("batch.job.grid.* settings must be >= 1");
+        }
+        if (MODE_UNITS.equals(partitionMode) && (workUnitRepository == null || unitBytes < 1 || unitsPerWorker < 1)) {
+            throw new IllegalArgumentException("partition-mode=units needs a WorkUnitRepository and batch.job.work-units.* >= 1");
+        }
+        this.partitionMode = partitionMode;
+        this.dynamicGrid = dynamicGrid;
+        this.minGrid = minGrid;
+        this.targetBytesPerPartition = targetBytesPerPartition;
+        this.targetRowsPerPartition = targetRowsPerPartition;
+        this.partitionsPerThread = partitionsPerThread;
+        this.availableThreads = availableThreads;
+        this.runningJobs = runningJobs;
+        this.workUnitRepository = workUnitRepository;
+        this.unitBytes = unitBytes;
+        this.unitsPerWorker = unitsPerWorker;
+        this.jobRepository = jobRepository;
+    }
+
     @Override
     public Map<String, ExecutionContext> partition(int gridSize) {
         // Get the current StepExecution from the thread-local context
         // Spring Batch sets this when calling the partitioner
         StepExecution stepExecution = getCurrentStepExecution();
-        
+
         if (stepExecution == null) {
             throw new IllegalStateException("StepExecution not available in thread context. " +
                 "This partitioner must be called from within a Spring Batch step execution.");
@@ -43,12 +186,181 @@ public class CsvPartitioner implements Partitioner {
         Long totalObj = params.getLong("totalRecords");
         String delimiter = params.getString("delimiter", ",");
 
-        if (filePath == null || totalObj == null) {
+        if (filePath == null) {
+            throw new IllegalStateException("Required job parameter missing: filePath");
+        }
+
+        GzipBlockIndex gzipIndex = gzipIndex(filePath);
+        if (gzipIndex == null && MODE_LINES.equals(partitionMode) && totalObj == null) {
             throw new IllegalStateException("Required job parameters missing: filePath=" + filePath + ", totalRecords=" + totalObj);
         }
 
-        long total = totalObj;
+        if (dynamicGrid) {
+            ExecutionContext managerCtx = stepExecution.getExecutionContext();
+            // A restart inherits the manager context: keep the ranges of the first run
+            if (managerCtx.containsKey(GRID_SIZE_KEY)) {
+                gridSize = managerCtx.getInt(GRID_SIZE_KEY);
+            } else {
+                gridSize = gridSize(gzipIndex != null ? gzipIndex.uncompressedSize() : dataBytes(filePath),
+                    totalObj == null ? -1 : totalObj, gridSize);
+                managerCtx.putInt(GRID_SIZE_KEY, gridSize);
+                if (jobRepository != null) {
+                    jobRepository.updateExecutionContext(stepExecution);
+                }
+            }
+        }
+
+        if (gzipIndex != null) {
+            return partitionByGzipMembers(filePath, delimiter, gzipIndex, gridSize);
+        }
+        if (MODE_BYTES.equals(partitionMode)) {
+            return partitionByBytes(filePath, delimiter, gridSize);
+        }
+        if (MODE_UNITS.equals(partitionMode)) {
+            return partitionByUnits(stepExecution.getJobExecution().getJobInstance().getInstanceId(),
+                filePath, delimiter, gridSize);
+        }
+        return partitionByLines(filePath, delimiter, totalObj, gridSize);
+    }
+
+    /**
+     * Partition count for a file of {@code dataBytes} bytes / {@code totalRecords}
+     * rows (negative when unknown), at most {@code maxGrid}.
+     */
+    int gridSize(long dataBytes, long totalRecords, int maxGrid) {
+        long demand = Math.max(ceilDiv(dataBytes, targetBytesPerPartition), ceilDiv(totalRecords, targetRowsPerPartition));
+        if (demand <= 1) {
+            log.info("Grid size 1: small file dataBytes={} totalRecords={}", dataBytes, totalRecords);
+            return 1;
+        }
+
+        int cap = maxGrid;
+        int threads = availableThreads.getAsInt();
+        int jobs = Math.max(1, runningJobs.getAsInt());
+        if (threads > 0) {
+            long share = (long) Math.max(1, threads / jobs) * partitionsPerThread;
+            cap = (int) Math.min(cap, share);
+        }
+        int grid = (int) Math.min(demand, Math.max(minGrid, cap));
+        log.info("Grid size {}: dataBytes={} totalRecords={} demand={} threads={} runningJobs={} max={}",
+            grid, dataBytes, totalRecords, demand, threads, jobs, maxGrid);
+        return grid;
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return value <= 0 ? 0 : (value + divisor - 1) / divisor;
+    }
+
+    private static long dataBytes(String filePath) {
+        try {
+            Path file = Path.of(filePath);
+            return Files.size(file) - CsvFileSplitter.dataStart(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to size " + filePath, e);
+        }
+    }
+
+    private static GzipBlockIndex gzipIndex(String filePath) {
+        try {
+            Path file = Path.of(filePath);
+            return GzipBlockIndex.isGzip(file) ? GzipBlockIndex.load(file) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to index " + filePath, e);
+        }
+    }
+
+    private Map<String, ExecutionContext> partitionByGzipMembers(String filePath, String delimiter,
+                                                                GzipBlockIndex index, int gridSize) {
+        List<GzipBlockIndex.Span> spans = index.split(gridSize);
+        log.info("Partitioning gzip by members: filePath={} members={} uncompressedBytes={} gridSize={}",
+            filePath, index.memberCount(), index.uncompressedSize(), gridSize);
+        if (spans.size() < gridSize && index.memberCount() == 1) {
+            log.info("Single-member gzip cannot be split: {} is read by one streaming partition", filePath);
+        }
+
+        Map<String, ExecutionContext> result = new LinkedHashMap<>();
+        for (int i = 0; i < spans.size(); i++) {
+            GzipBlockIndex.Span span = spans.get(i);
+
+            var ctx = new ExecutionContext();
+            ctx.putString("filePath", filePath);
+            ctx.putLong(GZIP_MEMBER_KEY, span.compressedStart());
+            ctx.putLong(GZIP_START_KEY, span.start());
+            ctx.putLong(GZIP_END_KEY, span.end());
+            ctx.putInt("partitionIndex", i);
+            ctx.putString("delimiter", delimiter);
+
+            result.put("partition-" + i, ctx);
+            log.info("  partition-{}: uncompressed bytes {}-{} from member at {}",
+                i, span.start(), span.end(), span.compressedStart());
+        }
+
+        log.info("Created {} partitions", result.size());
+        return result;
+    }
+
+    private Map<String, ExecutionContext> partitionByBytes(String filePath, String delimiter, int gridSize) {
+        List<ByteRange> ranges;
+        try {
+            ranges = CsvFileSplitter.split(Path.of(filePath), gridSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to split " + filePath, e);
+        }
+
+        log.info("Partitioning by bytes: filePath={} gridSize={}", filePath, gridSize);
+
+        Map<String, ExecutionContext> result = new LinkedHashMap<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+
+            var ctx = new ExecutionContext();
+            ctx.putString("filePath", filePath);
+            ctx.putLong("startByte", range.start());
+            ctx.putLong("endByte", range.end());
+            ctx.putInt("partitionIndex", i);
+            ctx.putString("delimiter", delimiter);
+
+            result.put("partition-" + i, ctx);
+            log.info("  partition-{}: bytes {}-{} ({} bytes)", i, range.start(), range.end(), range.length());
+        }
+
+        log.info("Created {} partitions", result.size());
+        return result;
+    }
+
+    private Map<String, ExecutionContext> partitionByUnits(long jobInstanceId, String filePath, String delimiter, int gridSize) {
+        if (workUnitRepository.exists(jobInstanceId)) {
+            int requeued = workUnitRepository.resetClaimed(jobInstanceId);
+            log.info("Reusing work units: jobInstanceId={} requeued={} done={}", jobInstanceId, requeued,
+                workUnitRepository.countByStatus(jobInstanceId, WorkUnitRepository.DONE));
+        } else {
+            long dataBytes = dataBytes(filePath);
+            long count = Math.max((long) gridSize * unitsPerWorker, ceilDiv(dataBytes, unitBytes));
+            List<ByteRange> units;
+            try {
+                units = CsvFileSplitter.split(Path.of(filePath), (int) Math.min(Integer.MAX_VALUE, count));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to split " + filePath, e);
+            }
+            workUnitRepository.create(jobInstanceId, units);
+            log.info("Created {} work units: jobInstanceId={} filePath={} dataBytes={}",
+                units.size(), jobInstanceId, filePath, dataBytes);
+        }
+
+        Map<String, ExecutionContext> result = new LinkedHashMap<>();
+        for (int i = 0; i < gridSize; i++) {
+            var ctx = new ExecutionContext();
+            ctx.putString("filePath", filePath);
+            ctx.putLong(WORK_UNIT_INSTANCE_KEY, jobInstanceId);
+            ctx.putInt("partitionIndex", i);
+            ctx.putString("delimiter", delimiter);
+            result.put("partition-" + i, ctx);
+        }
+        log.info("Created {} work-unit partitions", result.size());
+        return result;
+    }
 
+    private Map<String, ExecutionContext> partitionByLines(String filePath, String delimiter, long total, int gridSize) {
         log.info("Partitioning: filePath={} totalRecords={} gridSize={}", filePath, total, gridSize);
 
         long partitionSize = Math.max(1, total / gridSize);
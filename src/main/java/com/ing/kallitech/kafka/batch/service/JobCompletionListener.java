@@ -1,6 +1,7 @@
 package com.ing.kallitech.kafka.batch.service;
 
 import com.ing.kallitech.kafka.batch.idempotency.IdempotencyService;
+import com.ing.kallitech.kafka.batch.repository.WorkUnitRepository;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,7 +10,9 @@ import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobExecutionListener;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
@@ -18,8 +21,16 @@ import java.util.Optional;
 /**
  * NEW: Job lifecycle listener.
  * - Updates idempotency table (PROCESSING → COMPLETED/FAILED)
- * - Releases KafkaMessageListener's concurrency semaphore
+ * - Releases the job's admission cost (BatchJobLauncherService) and resumes trigger
+ *   consumption if it was paused for lack of capacity (TriggerFlowControl)
  * - Records job-level Micrometer metrics
+ * - Drops the job instance's batch_work_unit rows once it COMPLETED (a failed
+ *   instance keeps them for its restart); partition-mode=units only
+ *
+ * FIX: The admission release and trigger resume ran after the bookkeeping, so a
+ * failing DB call (e.g. batch_work_unit missing) leaked the job's admission cost
+ * and left the trigger container paused for good. They now run in a finally, and
+ * the work-unit cleanup failure is only logged — a leftover row is harmless.
  */
 @Component
 public class JobCompletionListener implements JobExecutionListener {
@@ -28,16 +39,34 @@ public class JobCompletionListener implements JobExecutionListener {
 
     private final IdempotencyService idempotencyService;
     private final MeterRegistry meterRegistry;
-    private final ObjectProvider<KafkaMessageListener> kafkaMessageListener;
+    private final ObjectProvider<BatchJobLauncherService> jobLauncherService;
+    private final ObjectProvider<TriggerFlowControl> flowControl;
+    private final WorkUnitRepository workUnitRepository;
+    private final boolean workUnits;
 
-    public JobCompletionListener(IdempotencyService idempotencyService, MeterRegistry meterRegistry, ObjectProvider<KafkaMessageListener> kafkaMessageListener) {
+    public JobCompletionListener(IdempotencyService idempotencyService, MeterRegistry meterRegistry, ObjectProvider<BatchJobLauncherService> jobLauncherService,
+                                 ObjectProvider<TriggerFlowControl> flowControl, WorkUnitRepository workUnitRepository,
+                                 @Value("${batch.job.partition-mode:bytes}") String partitionMode) {
         this.idempotencyService = idempotencyService;
         this.meterRegistry = meterRegistry;
-        this.kafkaMessageListener = kafkaMessageListener;
+        this.jobLauncherService = jobLauncherService;
+        this.flowControl = flowControl;
+        this.workUnitRepository = workUnitRepository;
+        this.workUnits = CsvPartitioner.MODE_UNITS.equals(partitionMode);
     }
 
     @Override
     public void afterJob(JobExecution jobExecution) {
+        try {
+            record(jobExecution);
+        } finally {
+            // Always release the admission cost
+            jobLauncherService.ifAvailable(launcher -> launcher.release(jobExecution));
+            flowControl.ifAvailable(TriggerFlowControl::resumeIfCapacity);
+        }
+    }
+
+    private void record(JobExecution jobExecution) {
         String fileId = jobExecution.getJobParameters().getString("fileId");
         BatchStatus status = jobExecution.getStatus();
 
@@ -52,6 +81,9 @@ public class JobCompletionListener implements JobExecutionListener {
 
         if (status == BatchStatus.COMPLETED) {
             idempotencyService.markCompleted(fileId, written);
+            if (workUnits) {
+                deleteWorkUnits(jobExecution.getJobInstance().getInstanceId());
+            }
             meterRegistry.counter("batch.job.completed").increment();
             log.info("Job COMPLETED: fileId={} durationMs={} written={} skipped={}", fileId, duration.toMillis(), written, skipped);
         } else {
@@ -60,8 +92,13 @@ public class JobCompletionListener implements JobExecutionListener {
             meterRegistry.counter("batch.job.failed").increment();
             log.error("Job FAILED: fileId={} durationMs={} written={} skipped={} desc={}", fileId, duration.toMillis(), written, skipped, desc);
         }
+    }
 
-        // Always release the concurrency slot
-        kafkaMessageListener.ifAvailable(KafkaMessageListener::releaseConcurrencySlot);
+    private void deleteWorkUnits(long jobInstanceId) {
+        try {
+            workUnitRepository.deleteByJobInstance(jobInstanceId);
+        } catch (DataAccessException e) {
+            log.warn("Work units of job instance {} not deleted: {}", jobInstanceId, e.getMessage());
+        }
     }
 }
@@ -0,0 +1,136 @@
+package com.ing.kallitech.kafka.batch.service;
+
+import com.ing.kallitech.kafka.batch.idempotency.IdempotencyService;
+import com.ing.kallitech.kafka.batch.model.KafkaBatchMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * NEW: Poll-at-a-time trigger listener (kafka.listener-mode=batch).
+ *
+ * During a backlog drain after an outage thousands of triggers are pending, most of
+ * them redeliveries of files already COMPLETED. Per poll this listener:
+ *  - takes the records as deserialized by the container (batchKafkaListenerContainerFactory);
+ *    null values (malformed JSON) and blank fileIds are skipped
+ *  - collapses repeated fileIds within the poll to the first occurrence
+ *  - checks all remaining fileIds with one IdempotencyService.findAlreadyProcessed call
+ *  - launches the rest in offset order through BatchJobLauncherService
+ *
+ * Acknowledgment is per record: acknowledge(i) after each launch commits everything
+ * up to it, so a crash mid-poll redelivers only the triggers not yet launched. When
+ * the pod has no admission capacity, nack(i) commits the records before i and rewinds
+ * i.., and TriggerFlowControl pauses the container until a job finishes. A failed
+ * launch throws BatchListenerFailedException(i), so triggerErrorHandler retries only
+ * that record, then dead-letters it to kafka.dlq-topic.
+ */
+@Component
+@ConditionalOnProperty(name = "kafka.listener-mode", havingValue = "batch")
+public class KafkaBatchMessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaBatchMessageListener.class);
+
+    private final BatchJobLauncherService jobLauncherService;
+    private final IdempotencyService idempotencyService;
+    private final TriggerFlowControl flowControl;
+    private final MeterRegistry meterRegistry;
+
+    public KafkaBatchMessageListener(BatchJobLauncherService jobLauncherService,
+                                     IdempotencyService idempotencyService,
+                                     TriggerFlowControl flowControl,
+                                     MeterRegistry meterRegistry) {
+        this.jobLauncherService = jobLauncherService;
+        this.idempotencyService = idempotencyService;
+        this.flowControl = flowControl;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @KafkaListener(
+        id = TriggerFlowControl.TRIGGER_LISTENER_ID,
+        topics = "${kafka.topic}",
+        groupId = "${kafka.group-id}",
+        containerFactory = "batchKafkaListenerContainerFactory",
+        batch = "true"
+    )
+    public void handleFileMessages(List<ConsumerRecord<String, KafkaBatchMessage>> records,
+                                   Acknowledgment acknowledgment) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        // ── Collapse: first occurrence of each valid fileId in the poll ──────────
+        List<Integer> candidates = new ArrayList<>();
+        Set<String> fileIds = new HashSet<>();
+        int invalid = 0;
+        for (int i = 0; i < records.size(); i++) {
+            KafkaBatchMessage message = records.get(i).value();
+            if (message == null || message.getFileId() == null || message.getFileId().isBlank()) {
+                invalid++;
+            } else if (fileIds.add(message.getFileId())) {
+                candidates.add(i);
+            }
+        }
+        int collapsed = records.size() - invalid - candidates.size();
+
+        // ── Idempotency: one lookup for the whole poll ───────────────────────────
+        Set<String> processed = fileIds.isEmpty() ? Set.of() : idempotencyService.findAlreadyProcessed(fileIds);
+
+        log.info("Received {} triggers: distinct={} alreadyCompleted={} collapsed={} invalid={}",
+            records.size(), fileIds.size(), processed.size(), collapsed, invalid);
+        meterRegistry.counter("batch.trigger.duplicate").increment(processed.size());
+        meterRegistry.counter("batch.trigger.collapsed").increment(collapsed);
+        meterRegistry.counter("batch.trigger.invalid").increment(invalid);
+
+        // ── Launch in offset order ───────────────────────────────────────────────
+        int acked = -1;    // partial acks must use strictly increasing indexes
+        for (int i : candidates) {
+            ConsumerRecord<String, KafkaBatchMessage> record = records.get(i);
+            KafkaBatchMessage message = record.value();
+            if (processed.contains(message.getFileId())) {
+                continue;
+            }
+            MDC.put("fileId", message.getFileId());
+            try {
+                log.info("Launching trigger: fileId={} filePath={} records={} partition={} offset={}",
+                    message.getFileId(), message.getFilePath(), message.getRecordCount(),
+                    record.partition(), record.offset());
+
+                Optional<JobExecution> execution;
+                try {
+                    execution = jobLauncherService.tryLaunch(message);
+                } catch (RuntimeException e) {
+                    throw new BatchListenerFailedException("Job launch failed for fileId: " + message.getFileId(), e, i);
+                }
+                if (execution.isEmpty()) {
+                    log.warn("Pod at capacity — pausing, {} triggers from offset {} stay in Kafka",
+                        records.size() - i, record.offset());
+                    flowControl.pauseWhileSaturated(jobLauncherService.estimateCost(message));
+                    acknowledgment.nack(i, Duration.ZERO);
+                    return;
+                }
+                acknowledgment.acknowledge(i);
+                acked = i;
+            } finally {
+                MDC.remove("fileId");
+            }
+        }
+        if (acked < records.size() - 1) {
+            acknowledgment.acknowledge(records.size() - 1);
+        }
+    }
+}
@@ -8,10 +8,9 @@ import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
-import org.springframework.batch.core.Job;
-import org.springframework.batch.core.JobParameters;
-import org.springframework.batch.core.JobParametersBuilder;
-import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.KafkaException;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
@@ -19,7 +18,7 @@ import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.Semaphore;
+import java.time.Duration;
 import java.util.Optional;
 
 /**
@@ -28,35 +27,44 @@ import java.util.Optional;
  * 1. NO ACKNOWLEDGMENT: Original had no Acknowledgment parameter — Kafka auto-committed
  *    offsets, meaning a pod crash after consume but before job launch = LOST MESSAGE.
  *    Fixed: manual ack only after successful job launch.
+ *
+ * 2. LAUNCH LOGIC SHARED: job parameters, the concurrency gate and launch-failure
+ *    handling live in BatchJobLauncherService, also used by KafkaBatchMessageListener.
+ *    This record-at-a-time listener is active for kafka.listener-mode=record (default).
+ *
+ * 3. BACKPRESSURE DROPPED TRIGGERS: at max concurrency the listener threw, and the
+ *    outer catch acked the trigger anyway. Fixed: the trigger is rewound (nack) and
+ *    the container paused via TriggerFlowControl until JobCompletionListener frees a slot.
+ *
+ * 4. FAILED LAUNCHES WERE ACKED: the catch-all acked a trigger whose launch threw, so
+ *    it was never retried. Fixed: launch failures propagate, unacked, to
+ *    triggerErrorHandler, which retries and then dead-letters them — as in batch mode.
  */
 @Component  // Temporarily disabled due to firewall blocking Kafka connection
+@ConditionalOnProperty(name = "kafka.listener-mode", havingValue = "record", matchIfMissing = true)
 public class KafkaMessageListener {
 
     private static final Logger log = LoggerFactory.getLogger(KafkaMessageListener.class);
 
-    private final JobLauncher jobLauncher;
-    private final Optional<Job> csvImportJob;
+    private final BatchJobLauncherService jobLauncherService;
     private final IdempotencyService idempotencyService;
+    private final TriggerFlowControl flowControl;
     private final io.micrometer.core.instrument.MeterRegistry meterRegistry;
-    private final Semaphore concurrencyGate;
     private final ObjectMapper objectMapper;
 
-    public KafkaMessageListener(JobLauncher jobLauncher,
-                                Optional<Job> csvImportJob,
+    public KafkaMessageListener(BatchJobLauncherService jobLauncherService,
                                 IdempotencyService idempotencyService,
-                                io.micrometer.core.instrument.MeterRegistry meterRegistry,
-                                org.springframework.core.env.Environment env) {
-        this.jobLauncher = jobLauncher;
-        this.csvImportJob = csvImportJob;
+                                TriggerFlowControl flowControl,
+                                io.micrometer.core.instrument.MeterRegistry meterRegistry) {
+        this.jobLauncherService = jobLauncherService;
         this.idempotencyService = idempotencyService;
+        this.flowControl = flowControl;
         this.meterRegistry = meterRegistry;
         this.objectMapper = new ObjectMapper();
-        
-        int maxJobs = env.getProperty("batch.job.max-concurrent-jobs", Integer.class, 2);
-        this.concurrencyGate = new Semaphore(maxJobs);
     }
 
     @KafkaListener(
+        id = TriggerFlowControl.TRIGGER_LISTENER_ID,
         topics = "${kafka.topic}",
         groupId = "${kafka.group-id}",
         containerFactory = "kafkaListenerContainerFactory"
@@ -84,63 +92,34 @@ public class KafkaMessageListener {
                 }
 
                 // ── Backpressure ──────────────────────────────────────────────────
-                if (!concurrencyGate.tryAcquire()) {
-                    log.warn("Pod at max concurrency — not acking (Kafka will redeliver): fileId={}", message.getFileId());
-                    Counter.builder("batch.trigger.backpressure").register(meterRegistry).increment();
-                    // Do NOT ack — Kafka will redeliver to this or another pod
-                    throw new RuntimeException("Pod at max concurrency for fileId: " + message.getFileId());
-                }
-
+                Optional<JobExecution> execution;
                 try {
-                    //idempotencyService.markProcessingStarted(message.getFileId());
-
-                    JobParameters params = new JobParametersBuilder()
-                            .addString("fileId", message.getFileId())
-                            .addString("filePath", message.getFilePath())
-                            .addLong("totalRecords", message.getRecordCount())
-                            .addString("delimiter", message.getDelimiter(), false)
-                            .addLong("launchTs", System.currentTimeMillis())
-                            .toJobParameters();
-
-                    var execution = csvImportJob.map(job -> {
-                        try {
-                            return jobLauncher.run(job, params);
-                        } catch (Exception e) {
-                            log.error("Failed to launch job for file: " + message.getFileId(), e);
-                            throw new RuntimeException(e);
-                        }
-                    }).orElseThrow(() -> new RuntimeException("No job available"));
-                    log.info("Job launched: jobId={} status={}", execution.getId(), execution.getStatus());
-
-                    Counter.builder("batch.trigger.launched").register(meterRegistry).increment();
-                    acknowledgment.acknowledge();   // ACK only after successful launch
-
-                } catch (Exception e) {
-                    log.error("Job launch failed for fileId={}: {}", message.getFileId(), e.getMessage(), e);
-                    idempotencyService.markFailed(message.getFileId(), e.getMessage());
-                    concurrencyGate.release();      // Release slot on failure
-                    Counter.builder("batch.trigger.launch_failed").register(meterRegistry).increment();
-                    throw new RuntimeException("Job launch failed", e); // → Kafka retry → DLQ
+                    execution = jobLauncherService.tryLaunch(message);
+                } catch (RuntimeException e) {
+                    // Not acked: triggerErrorHandler retries, then publishes to kafka.dlq-topic
+                    throw new KafkaException("Job launch failed: fileId=" + message.getFileId(), e);
+                }
+                if (execution.isEmpty()) {
+                    log.warn("Pod at capacity — pausing, trigger stays in Kafka: fileId={}", message.getFileId());
+                    // Do NOT ack — rewind and stop fetching until a slot frees (no retry, no DLQ)
+                    flowControl.pauseWhileSaturated(jobLauncherService.estimateCost(message));
+                    acknowledgment.nack(Duration.ZERO);
+                    return;
                 }
-                // Note: concurrencyGate released by JobCompletionListener.afterJob()
+                acknowledgment.acknowledge();   // ACK only after successful launch
 
+            } catch (KafkaException e) {
+                throw e;
             } catch (Exception e) {
                 log.error("Failed to process message: {}", e.getMessage(), e);
                 acknowledgment.acknowledge(); // Acknowledge to avoid reprocessing
             } finally {
                 MDC.clear();
             }
+        } catch (KafkaException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
-
-
-    public void releaseConcurrencySlot() {
-        concurrencyGate.release();
-    }
-
-    public int availableConcurrencySlots() {
-        return concurrencyGate.availablePermits();
-    }
 }
@@ -7,12 +7,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.batch.item.Chunk;
 import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.sql.Timestamp;
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -36,46 +40,116 @@ import java.util.List;
  *    enriched fields: record_hash, job_id, partition_idx, event_ts, status.
  *
  * 6. MISSING METRICS: No timing or counters. Fixed with Micrometer Timer.
+ *
+ * 7. ROW-BY-ROW FALLBACK: A replayed chunk fell back to one INSERT round-trip per
+ *    record (and bound 9 params to the 8-placeholder INSERT, so every fallback
+ *    row failed). Fixed: duplicates are now skipped set-based, by one batched
+ *    MERGE ... WHEN NOT MATCHED THEN INSERT keyed on the unique hash column.
+ *
+ * batch.job.write-mode:
+ *   insert (default) — plain batched INSERT; a chunk that hits a duplicate key is
+ *                      re-run once as a batched MERGE. Fastest for clean loads.
+ *                      Rows RecordHashFilter tagged maybeDuplicate go straight
+ *                      to the batched MERGE instead.
+ *   merge            — every chunk is written with the batched MERGE. Use for
+ *                      replays/re-imports where most chunks contain duplicates.
+ * Only a MERGE that itself races another partition on the same hash (ORA-00001
+ * between two concurrent MERGEs) drops to per-row MERGE.
+ *
+ * The hash column (record_hash or record_hash_bin) follows RecordHasher's mode.
+ *
+ * After write() every item's status says whether this chunk inserted it (LOADED)
+ * or skipped it as already present (DUPLICATE), so write listeners such as
+ * CategoryAggregator can account for exactly the rows that were loaded.
  */
 @Component
 public class OracleJdbcBatchWriter implements ItemWriter<RecordDTO> {
 
+    public static final String WRITE_MODE_INSERT = "insert";
+    public static final String WRITE_MODE_MERGE  = "merge";
+
+    /** RecordDTO.status after write(): inserted by this chunk, or skipped as already present. */
+    public static final String STATUS_LOADED    = "LOADED";
+    public static final String STATUS_DUPLICATE = "DUPLICATE";
+
     private static final Logger log = LoggerFactory.getLogger(OracleJdbcBatchWriter.class);
 
+    private static final String INSERT_COLUMNS =
+        "external_id, name, value_rec, category, event_ts, %s, job_id, partition_idx";
+
     private final JdbcTemplate jdbcTemplate;
     private final MeterRegistry meterRegistry;
+    private final RecordHasher recordHasher;
+    private final boolean mergeMode;
 
-    public OracleJdbcBatchWriter(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+    // FIX: APPEND_VALUES (not APPEND) for single-row inserts
+    // H2 silently ignores the Oracle hint — works in dev without changes
+    private final String insertSql;
+
+    // Param 1 is the hash probed in USING; params 2-9 are the INSERT values.
+    // The CAST gives the bind a type in the USING select list (H2 requires it).
+    // Oracle type names are accepted by H2 in MODE=Oracle, so one statement serves both.
+    private final String mergeSql;
+
+    public OracleJdbcBatchWriter(JdbcTemplate jdbcTemplate,
+                                 MeterRegistry meterRegistry,
+                                 RecordHasher recordHasher,
+                                 @Value("${batch.job.write-mode:insert}") String writeMode) {
+        if (!WRITE_MODE_INSERT.equals(writeMode) && !WRITE_MODE_MERGE.equals(writeMode)) {
+            throw new IllegalArgumentException("Unsupported batch.job.write-mode: " + writeMode);
+        }
         this.jdbcTemplate = jdbcTemplate;
         this.meterRegistry = meterRegistry;
-    }
+        this.recordHasher = recordHasher;
+        this.mergeMode = WRITE_MODE_MERGE.equals(writeMode);
 
-    // FIX: APPEND_VALUES (not APPEND) for single-row inserts
-    // H2 silently ignores the Oracle hint — works in dev without changes
-    private static final String INSERT_SQL = "INSERT INTO batch_records " +
-            "(external_id, name, value_rec, category, event_ts, record_hash, job_id, partition_idx)" +
+        String hashColumn = recordHasher.hashColumn();
+        String columns = String.format(INSERT_COLUMNS, hashColumn);
+        this.insertSql = "INSERT INTO batch_records (" + columns + ") " +
             "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
-    
+        this.mergeSql = "MERGE INTO batch_records t " +
+            "USING (SELECT CAST(? AS " + (recordHasher.isBinary() ? "RAW(32)" : "VARCHAR2(64)") + ") AS h FROM dual) s " +
+            "ON (t." + hashColumn + " = s.h) " +
+            "WHEN NOT MATCHED THEN INSERT (" + columns + ") " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+
     @Override
     @Transactional
     public void write(Chunk<? extends RecordDTO> chunk) {
         List<? extends RecordDTO> items = chunk.getItems();
         if (items.isEmpty()) return;
 
-        log.info("OracleJdbcBatchWriter.write() called with {} items", items.size());
-        
+        log.debug("OracleJdbcBatchWriter.write() called with {} items", items.size());
+
         Timer.Sample sample = Timer.start(meterRegistry);
 
         try {
-            executeBatch(items);
-            meterRegistry.counter("batch.records.written").increment(items.size());
-            log.debug("Wrote {} records", items.size());
-
-        } catch (DuplicateKeyException e) {
-            // Partial retry: some records already inserted — fall back row-by-row
-            log.warn("Duplicate key in chunk of {} — switching to upsert fallback", items.size());
-            executeUpsertFallback(items);
-            meterRegistry.counter("batch.records.upsert_fallback").increment(items.size());
+            if (mergeMode) {
+                markAll(items, STATUS_DUPLICATE);
+                executeMerge(items);
+            } else {
+                List<RecordDTO> fresh = new ArrayList<>(items.size());
+                List<RecordDTO> maybeDuplicates = new ArrayList<>();
+                for (RecordDTO r : items) {
+                    (r.isMaybeDuplicate() ? maybeDuplicates : fresh).add(r);
+                }
+                if (!fresh.isEmpty()) {
+                    insertOrMerge(fresh);
+                }
+                if (!maybeDuplicates.isEmpty()) {
+                    // Rows the Bloom filter may have seen skip the INSERT that would likely fail
+                    markAll(maybeDuplicates, STATUS_DUPLICATE);
+                    executeMerge(maybeDuplicates);
+                }
+            }
+            int written = countLoaded(items);
+            meterRegistry.counter("batch.records.written").increment(written);
+            int skipped = items.size() - written;
+            if (skipped > 0) {
+                meterRegistry.counter("batch.records.skipped.duplicate").increment(skipped);
+            }
+            log.debug("Wrote {} records, skipped {} duplicates", written, skipped);
 
         } finally {
             sample.stop(Timer.builder("batch.write.duration")
@@ -84,39 +158,114 @@ public class OracleJdbcBatchWriter implements ItemWriter<RecordDTO> {
         }
     }
 
+    private void insertOrMerge(List<? extends RecordDTO> items) {
+        try {
+            executeBatch(items);
+            markAll(items, STATUS_LOADED);
+        } catch (DuplicateKeyException e) {
+            // Partial retry: some records already exist — let MERGE skip them in one batch.
+            // Rows the failed INSERT batch did get in before the duplicate are matched too,
+            // so they are marked from the batch's update counts instead.
+            log.warn("Duplicate key in chunk of {} — switching to set-based MERGE", items.size());
+            meterRegistry.counter("batch.records.upsert_fallback").increment(items.size());
+            markAll(items, STATUS_DUPLICATE);
+            markInsertedBeforeFailure(items, e);
+            executeMerge(items);
+        }
+    }
+
     private void executeBatch(List<? extends RecordDTO> items) {
-        log.info("OracleJdbcBatchWriter.executeBatch() called with {} items", items.size());
-        log.info("OracleJdbcBatchWriter.executeBatch() starting{}",items);
-        jdbcTemplate.batchUpdate(INSERT_SQL, items, items.size(), (ps, r) -> {
-            ps.setString(1, r.getExternalId());
-            ps.setString(2, r.getName());
-            ps.setBigDecimal(3, r.getValueRec());
-            ps.setString(4, r.getCategory());
-            ps.setTimestamp(5, r.getEventTs() != null ? r.getEventTs() : null);
-            ps.setString(6, r.getRecordHash());
-            ps.setString(7, r.getJobId());
-            ps.setInt(8, r.getPartitionIndex());
+        jdbcTemplate.batchUpdate(insertSql, items, items.size(), (ps, r) -> bind(ps, r, 1));
+    }
+
+    /** Batched MERGE; marks the rows it actually inserted as LOADED. */
+    private void executeMerge(List<? extends RecordDTO> items) {
+        try {
+            int[][] counts = jdbcTemplate.batchUpdate(mergeSql, items, items.size(), (ps, r) -> {
+                bindHash(ps, 1, r);
+                bind(ps, r, 2);
             });
+            markInserted(items, counts.length == 0 ? new int[0] : counts[0]);
+        } catch (DuplicateKeyException e) {
+            // Another partition inserted the same hash between our probe and insert
+            log.warn("Concurrent duplicate in MERGE of {} — retrying row-by-row", items.size());
+            markInsertedBeforeFailure(items, e);
+            executeRowByRowMerge(items);
+        }
     }
 
-    private void executeUpsertFallback(List<? extends RecordDTO> items) {
-        List<RecordDTO> failed = new ArrayList<>();
+    private void executeRowByRowMerge(List<? extends RecordDTO> items) {
         for (RecordDTO r : items) {
+            if (STATUS_LOADED.equals(r.getStatus())) {
+                continue;   // inserted by the failed batch; MERGE would match it anyway
+            }
             try {
-                jdbcTemplate.update(INSERT_SQL,
-                    r.getExternalId(), r.getName(), r.getValueRec(), r.getCategory(),
-                    r.getEventTs() != null ? r.getEventTs() : null,
-                    r.getRecordHash(), r.getJobId(), r.getPartitionIndex(), r.getStatus());
+                int n = jdbcTemplate.update(mergeSql, ps -> {
+                    bindHash(ps, 1, r);
+                    bind(ps, r, 2);
+                });
+                if (n > 0) {
+                    r.setStatus(STATUS_LOADED);
+                }
             } catch (DuplicateKeyException dup) {
-                log.debug("Skipping duplicate: record_hash={}", r.getRecordHash());
-                meterRegistry.counter("batch.records.skipped.duplicate").increment();
-            } catch (Exception ex) {
-                log.error("Failed to upsert record: hash={}", r.getRecordHash(), ex);
-                failed.add(r);
+                log.debug("Skipping duplicate: {}={}", recordHasher.hashColumn(), r.getExternalId());
             }
         }
-        if (!failed.isEmpty()) {
-            throw new RuntimeException("Upsert failed for " + failed.size() + " records");
+    }
+
+    private void bind(PreparedStatement ps, RecordDTO r, int first) throws SQLException {
+        ps.setString(first, r.getExternalId());
+        ps.setString(first + 1, r.getName());
+        ps.setBigDecimal(first + 2, r.getValueRec());
+        ps.setString(first + 3, r.getCategory());
+        ps.setTimestamp(first + 4, r.getEventTs());
+        bindHash(ps, first + 5, r);
+        ps.setString(first + 6, r.getJobId());
+        ps.setInt(first + 7, r.getPartitionIndex());
+    }
+
+    private void bindHash(PreparedStatement ps, int index, RecordDTO r) throws SQLException {
+        if (recordHasher.isBinary()) {
+            ps.setBytes(index, r.getRecordHashBytes());
+        } else {
+            ps.setString(index, r.getRecordHash());
+        }
+    }
+
+    /** Marks the rows a failed INSERT batch got into the transaction before the duplicate. */
+    private static void markInsertedBeforeFailure(List<? extends RecordDTO> items, DuplicateKeyException e) {
+        if (e.getCause() instanceof BatchUpdateException bue) {
+            markInserted(items, bue.getUpdateCounts());
+        }
+    }
+
+    /**
+     * Update count i belongs to item i (Oracle stops at the failing row, H2 reports
+     * every row). Oracle drivers before 12c report SUCCESS_NO_INFO for every batched
+     * row; those are taken as inserted, which over-counts only skipped duplicates.
+     */
+    private static void markInserted(List<? extends RecordDTO> items, int[] counts) {
+        int n = Math.min(items.size(), counts.length);
+        for (int i = 0; i < n; i++) {
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                items.get(i).setStatus(STATUS_LOADED);
+            }
+        }
+    }
+
+    private static void markAll(List<? extends RecordDTO> items, String status) {
+        for (RecordDTO r : items) {
+            r.setStatus(status);
+        }
+    }
+
+    private static int countLoaded(List<? extends RecordDTO> items) {
+        int n = 0;
+        for (RecordDTO r : items) {
+            if (STATUS_LOADED.equals(r.getStatus())) {
+                n++;
+            }
         }
+        return n;
     }
 }
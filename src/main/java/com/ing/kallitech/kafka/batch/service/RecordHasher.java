@@ -0,0 +1,224 @@
+package com.ing.kallitech.kafka.batch.service;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import org.apache.commons.codec.digest.MurmurHash3;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+
+/**
+ * Computes the record idempotency hash over (externalId, category, eventTs).
+ *
+ * batch.job.hash-mode:
+ *   sha256-hex  (default) — SHA-256 of "externalId|category|eventTs.toString()" as a
+ *                64-char hex String in record_hash. Byte-for-byte the legacy value,
+ *                so existing rows keep deduplicating.
+ *   sha256      — 32-byte SHA-256 in record_hash_bin.
+ *   murmur3-128 — 16-byte MurmurHash3 x64-128 in record_hash_bin. Not cryptographic,
+ *                but collisions among 10^10 rows are still ~10^-18 likely.
+ *
+ * The binary modes hash a length-prefixed UTF-8 encoding of the fields plus the
+ * raw epoch millis/nanos of eventTs, written into a per-thread scratch buffer —
+ * no join String, no Timestamp.toString(), no hex String. Only the result array
+ * that is bound to the INSERT is allocated.
+ *
+ * Switching between hex and binary modes on a populated table starts a new
+ * dedup key space: rows loaded under one mode are not matched by the other.
+ */
+@Component
+public class RecordHasher {
+
+    public enum Mode {
+        SHA256_HEX("sha256-hex"),
+        SHA256("sha256"),
+        MURMUR3_128("murmur3-128");
+
+        private final String property;
+
+        Mode(String property) {
+            this.property = property;
+        }
+
+        public static Mode fromProperty(String value) {
+            for (Mode mode : values()) {
+                if (mode.property.equals(value)) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported batch.job.hash-mode: " + value);
+        }
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Mode mode;
+
+    private final ThreadLocal<HashState> state = ThreadLocal.withInitial(HashState::new);
+
+    public RecordHasher(@Value("${batch.job.hash-mode:sha256-hex}") String mode) {
+        this.mode = Mode.fromProperty(mode);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /** True when the hash is stored in record_hash_bin rather than record_hash. */
+    public boolean isBinary() {
+        return mode != Mode.SHA256_HEX;
+    }
+
+    /** Column holding the unique hash for the configured mode. */
+    public String hashColumn() {
+        return isBinary() ? "record_hash_bin" : "record_hash";
+    }
+
+    /** The value to bind for {@link #hashColumn()}: a String or a byte[]. */
+    public Object hashValue(RecordDTO rec) {
+        return isBinary() ? rec.getRecordHashBytes() : rec.getRecordHash();
+    }
+
+    /** Sets recordHash (hex mode) or recordHashBytes (binary modes) on {@code rec}. */
+    public void hash(RecordDTO rec) {
+        HashState s = state.get();
+        switch (mode) {
+            case SHA256_HEX -> rec.setRecordHash(s.sha256Hex(rec));
+            case SHA256 -> rec.setRecordHashBytes(s.sha256(rec));
+            case MURMUR3_128 -> rec.setRecordHashBytes(s.murmur3(rec));
+        }
+    }
+
+    /** Per-thread digest and scratch buffer, reused for every record on that thread. */
+    private static final class HashState {
+
+        private final MessageDigest sha256;
+        private byte[] buf = new byte[256];
+        private int len;
+
+        HashState() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+
+        String sha256Hex(RecordDTO rec) {
+            len = 0;
+            putUtf8(rec.getExternalId());
+            putByte('|');
+            putUtf8(rec.getCategory());
+            putByte('|');
+            if (rec.getEventTs() != null) {
+                putUtf8(rec.getEventTs().toString());
+            }
+            sha256.update(buf, 0, len);
+            byte[] digest = sha256.digest();
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX[(digest[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(hex);
+        }
+
+        byte[] sha256(RecordDTO rec) {
+            encodeBinaryKey(rec);
+            sha256.update(buf, 0, len);
+            return sha256.digest();
+        }
+
+        byte[] murmur3(RecordDTO rec) {
+            encodeBinaryKey(rec);
+            long[] h = MurmurHash3.hash128x64(buf, 0, len, 0);
+            byte[] out = new byte[16];
+            putLong(out, 0, h[0]);
+            putLong(out, 8, h[1]);
+            return out;
+        }
+
+        private void encodeBinaryKey(RecordDTO rec) {
+            len = 0;
+            putLengthPrefixed(rec.getExternalId());
+            putLengthPrefixed(rec.getCategory());
+            Timestamp ts = rec.getEventTs();
+            if (ts == null) {
+                putByte(0);
+            } else {
+                putByte(1);
+                ensure(12);
+                putLong(buf, len, ts.getTime());
+                len += 8;
+                int nanos = ts.getNanos();
+                buf[len++] = (byte) (nanos >>> 24);
+                buf[len++] = (byte) (nanos >>> 16);
+                buf[len++] = (byte) (nanos >>> 8);
+                buf[len++] = (byte) nanos;
+            }
+        }
+
+        private void putLengthPrefixed(String s) {
+            ensure(4);
+            int lengthAt = len;
+            len += 4;
+            putUtf8(s);
+            int n = len - lengthAt - 4;
+            buf[lengthAt] = (byte) (n >>> 24);
+            buf[lengthAt + 1] = (byte) (n >>> 16);
+            buf[lengthAt + 2] = (byte) (n >>> 8);
+            buf[lengthAt + 3] = (byte) n;
+        }
+
+        private void putUtf8(String s) {
+            if (s == null) {
+                return;
+            }
+            int n = s.length();
+            ensure(n * 3);
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    buf[len++] = (byte) c;
+                } else if (c < 0x800) {
+                    buf[len++] = (byte) (0xc0 | (c >> 6));
+                    buf[len++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buf[len++] = (byte) (0xf0 | (cp >> 18));
+                    buf[len++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buf[len++] = (byte) (0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    buf[len++] = '?';   // unpaired surrogate, as String.getBytes(UTF_8) does
+                } else {
+                    buf[len++] = (byte) (0xe0 | (c >> 12));
+                    buf[len++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buf[len++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+        }
+
+        private void putByte(int b) {
+            ensure(1);
+            buf[len++] = (byte) b;
+        }
+
+        private void ensure(int extra) {
+            if (len + extra > buf.length) {
+                byte[] bigger = new byte[Math.max(buf.length * 2, len + extra)];
+                System.arraycopy(buf, 0, bigger, 0, len);
+                buf = bigger;
+            }
+        }
+
+        private static void putLong(byte[] out, int at, long v) {
+            for (int i = 7; i >= 0; i--) {
+                out[at + i] = (byte) v;
+                v >>>= 8;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.ing.kallitech.kafka.batch.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * NEW: Consumer flow control for the trigger listener.
+ *
+ * When the pod's admission budget has no room for a job the listener rewinds the trigger
+ * it could not start (Acknowledgment.nack) and calls {@link #pauseWhileSaturated}:
+ * the container stops fetching but keeps heartbeating, so its partitions stay
+ * assigned and the trigger waits in Kafka — no retries, no DLQ. JobCompletionListener
+ * calls {@link #resumeIfCapacity} after releasing a job's cost.
+ *
+ * FIX: Resuming checked only that a small job would fit, so a rejected large trigger
+ * was redelivered at once and rejected again in a tight loop. The cost of the
+ * blocked trigger is now kept, and the container resumes only once that job fits.
+ *
+ * Both methods are synchronized and pausing re-checks the free capacity, so a job
+ * finishing between the failed admission and the pause still resumes the container.
+ */
+@Component
+public class TriggerFlowControl {
+
+    private static final Logger log = LoggerFactory.getLogger(TriggerFlowControl.class);
+
+    /** Listener id of KafkaMessageListener / KafkaBatchMessageListener (only one is active). */
+    public static final String TRIGGER_LISTENER_ID = "fileTriggerListener";
+
+    private final ObjectProvider<KafkaListenerEndpointRegistry> registry;
+    private final BatchJobLauncherService jobLauncherService;
+    private final AtomicBoolean paused = new AtomicBoolean();   // written under this
+    private int blockedCost;                                    // guarded by this
+
+    public TriggerFlowControl(ObjectProvider<KafkaListenerEndpointRegistry> registry,
+                              BatchJobLauncherService jobLauncherService,
+                              MeterRegistry meterRegistry) {
+        this.registry = registry;
+        this.jobLauncherService = jobLauncherService;
+        meterRegistry.gauge("batch.trigger.paused", paused, p -> p.get() ? 1 : 0);
+    }
+
+    /** @param blockedCost admission cost of the trigger that was just rejected and rewound */
+    public synchronized void pauseWhileSaturated(int blockedCost) {
+        this.blockedCost = blockedCost;
+        if (paused.compareAndSet(false, true)) {
+            MessageListenerContainer container = container();
+            if (container != null) {
+                container.pause();
+                log.info("Trigger consumption paused: pod admission budget full");
+            }
+        }
+        resumeIfCapacity();
+    }
+
+    public synchronized void resumeIfCapacity() {
+        if (paused.get() && jobLauncherService.hasCapacityFor(blockedCost) && paused.compareAndSet(true, false)) {
+            MessageListenerContainer container = container();
+            if (container != null) {
+                container.resume();
+                log.info("Trigger consumption resumed: admission capacity free for cost {}", blockedCost);
+            }
+        }
+    }
+
+    public boolean isPaused() {
+        return paused.get();
+    }
+
+    private MessageListenerContainer container() {
+        KafkaListenerEndpointRegistry endpoints = registry.getIfAvailable();
+        return endpoints == null ? null : endpoints.getListenerContainer(TRIGGER_LISTENER_ID);
+    }
+}
@@ -17,7 +17,8 @@ CREATE TABLE IF NOT EXISTS batch_records (
     valueRec       DECIMAL(20,4),
     category      VARCHAR(100),
     event_ts      TIMESTAMP,
-    record_hash   VARCHAR(64)    NOT NULL,
+    record_hash   VARCHAR(64),                 -- hex hash (batch.job.hash-mode=sha256-hex)
+    record_hash_bin VARBINARY(32),             -- binary hash (sha256 / murmur3-128)
     job_id        VARCHAR(100),
     partition_idx INTEGER,
     created_at    TIMESTAMP      DEFAULT CURRENT_TIMESTAMP,
@@ -25,4 +26,9 @@ CREATE TABLE IF NOT EXISTS batch_records (
     CONSTRAINT uq_record_hash UNIQUE (record_hash)
 );
 
-CREATE INDEX IF NOT EXISTS idx_batch_records_job ON batch_records (job_id, partition_idx);
+CREATE UNIQUE INDEX IF NOT EXISTS uq_record_hash_bin_idx ON batch_records (record_hash_bin);
+
+-- (job_id, partition_idx, id): keyset pages of /api/records filtered by job/partition
+-- are an ordered range scan. Replaces the (job_id, partition_idx) index of older databases.
+DROP INDEX IF EXISTS idx_batch_records_job;
+CREATE INDEX IF NOT EXISTS idx_batch_records_job_id ON batch_records (job_id, partition_idx, id);
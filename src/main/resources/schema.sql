@@ -96,7 +96,8 @@ CREATE TABLE IF NOT EXISTS batch_records (
     value_rec       DECIMAL(20,4),
     category      VARCHAR(100),
     event_ts      TIMESTAMP,
-    record_hash   VARCHAR(64)    NOT NULL,
+    record_hash   VARCHAR(64),                 -- hex hash (batch.job.hash-mode=sha256-hex)
+    record_hash_bin VARBINARY(32),             -- binary hash (sha256 / murmur3-128)
     job_id        VARCHAR(100),
     partition_idx INTEGER,
     created_at    TIMESTAMP      DEFAULT CURRENT_TIMESTAMP,
@@ -104,7 +105,17 @@ CREATE TABLE IF NOT EXISTS batch_records (
     CONSTRAINT uq_record_hash UNIQUE (record_hash)
 );
 
-CREATE INDEX IF NOT EXISTS idx_batch_records_job ON batch_records (job_id, partition_idx);
+-- Upgrade databases created before record_hash_bin existed
+ALTER TABLE batch_records ADD COLUMN IF NOT EXISTS record_hash_bin VARBINARY(32);
+ALTER TABLE batch_records ALTER COLUMN record_hash SET NULL;
+CREATE UNIQUE INDEX IF NOT EXISTS uq_record_hash_bin_idx ON batch_records (record_hash_bin);
+
+-- Keyset pages of /api/records are ordered range scans: (job_id, partition_idx, id) for
+-- job + partition, (job_id, id) for job only — in the first, id is ordered only within a
+-- partition. Replaces the (job_id, partition_idx) index of older databases.
+DROP INDEX IF EXISTS idx_batch_records_job;
+CREATE INDEX IF NOT EXISTS idx_batch_records_job_id ON batch_records (job_id, partition_idx, id);
+CREATE INDEX IF NOT EXISTS idx_batch_records_job_page ON batch_records (job_id, id);
 
 CREATE TABLE IF NOT EXISTS job_file_log (
     file_id          VARCHAR(255)  PRIMARY KEY,
@@ -115,3 +126,35 @@ CREATE TABLE IF NOT EXISTS job_file_log (
     record_count     BIGINT,
     error_message    VARCHAR(2000)
 );
+
+-- Per job execution x category aggregates of loaded rows, maintained by CategoryAggregator
+-- during the load (no scan of batch_records). value_* ignore NULL value_rec, like SUM/MIN/MAX.
+CREATE TABLE IF NOT EXISTS batch_category_summary (
+    job_id        VARCHAR(100)   NOT NULL,
+    category      VARCHAR(100)   NOT NULL,
+    file_id       VARCHAR(255),
+    record_count  BIGINT         NOT NULL,
+    value_sum     DECIMAL(38,4),
+    value_min     DECIMAL(20,4),
+    value_max     DECIMAL(20,4),
+    updated_at    TIMESTAMP      DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT pk_batch_category_summary PRIMARY KEY (job_id, category)
+);
+
+CREATE INDEX IF NOT EXISTS idx_batch_category_summary_file ON batch_category_summary (file_id);
+
+-- Byte-range work units of batch.job.partition-mode=units, claimed by partition workers
+-- at run time (WorkUnitRepository). Keyed by job instance so a restart sees the units
+-- its failed execution left: DONE ones are skipped, CLAIMED ones go back to PENDING.
+CREATE TABLE IF NOT EXISTS batch_work_unit (
+    job_instance_id  BIGINT        NOT NULL,
+    unit_idx         INT           NOT NULL,
+    start_byte       BIGINT        NOT NULL,
+    end_byte         BIGINT        NOT NULL,
+    status           VARCHAR(10)   NOT NULL DEFAULT 'PENDING',
+    worker           INT,
+    updated_at       TIMESTAMP     DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT pk_batch_work_unit PRIMARY KEY (job_instance_id, unit_idx)
+);
+
+CREATE INDEX IF NOT EXISTS idx_batch_work_unit_status ON batch_work_unit (job_instance_id, status, unit_idx);
@@ -0,0 +1,62 @@
+package com.ing.kallitech.kafka.batch.admission;
+
+import com.ing.kallitech.kafka.batch.model.KafkaBatchMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JobAdmissionControllerTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    // 10 units, 2 reserved for cost-1 jobs, at most 5 jobs, 1 MB per unit
+    private final JobAdmissionController admission = new JobAdmissionController(10, 2, 1, 5, MB, 100, registry);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void estimatesCostFromFileSizeThenRecordCount() throws Exception {
+        Path file = Files.write(tempDir.resolve("in.csv"), new byte[(int) (2 * MB + 1)]);
+
+        assertThat(admission.estimateCost(message(file.toString(), 0))).isEqualTo(3);
+        assertThat(admission.estimateCost(message("/missing.csv", 30_000))).isEqualTo(3);   // 3 MB at 100 B/row
+        assertThat(admission.estimateCost(message("/missing.csv", 0))).isEqualTo(1);
+        assertThat(admission.estimateCost(message("/missing.csv", 1_000_000_000L))).isEqualTo(8);   // capped below the reserve
+    }
+
+    @Test
+    void keepsTheReserveForSmallJobsWhileALargeOneRuns() {
+        assertThat(admission.tryAdmit(8)).isTrue();
+        assertThat(admission.tryAdmit(2)).isFalse();   // large: would eat the reserve
+        assertThat(admission.tryAdmit(1)).isTrue();
+        assertThat(admission.tryAdmit(1)).isTrue();
+        assertThat(admission.tryAdmit(1)).isFalse();   // budget exhausted
+        assertThat(admission.hasCapacity()).isFalse();
+        assertThat(registry.get("batch.admission.used").gauge().value()).isEqualTo(10);
+        assertThat(registry.get("batch.admission.rejected").tag("size", "large").counter().count()).isEqualTo(1);
+
+        admission.release(8);
+        assertThat(admission.tryAdmit(6)).isTrue();
+        assertThat(admission.runningJobs()).isEqualTo(3);
+    }
+
+    @Test
+    void capsTheNumberOfJobs() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(admission.tryAdmit(1)).isTrue();
+        }
+        assertThat(admission.tryAdmit(1)).isFalse();
+        assertThat(admission.hasCapacity()).isFalse();
+    }
+
+    private static KafkaBatchMessage message(String path, long records) {
+        return new KafkaBatchMessage("f", path, records, ",", "test");
+    }
+}
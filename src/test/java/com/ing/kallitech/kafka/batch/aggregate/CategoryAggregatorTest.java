@@ -0,0 +1,172 @@
+package com.ing.kallitech.kafka.batch.aggregate;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import com.ing.kallitech.kafka.batch.repository.CategorySummaryRepository;
+import com.ing.kallitech.kafka.batch.repository.CategorySummaryRepository.CategorySummary;
+import com.ing.kallitech.kafka.batch.service.OracleJdbcBatchWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CategoryAggregatorTest {
+
+    private CategorySummaryRepository repository;
+    private CategoryAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=Oracle", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        repository = new CategorySummaryRepository(new JdbcTemplate(dataSource));
+        aggregator = new CategoryAggregator(repository, new SimpleMeterRegistry(), true);
+    }
+
+    @Test
+    void aggregatesOnlyLoadedRowsAcrossPartitionsAndExecutions() {
+        // Execution 1: two partitions; one duplicate and one null value
+        JobExecution first = job(1L, "file-1");
+        runPartition(first, record("A", "1.50", true), record("A", "2.50", true), record("B", null, true));
+        runPartition(first, record("A", "9.00", false), record("B", "-4.00", true), record(null, "3.00", true));
+
+        // Execution 2 (restart of the same file) adds to the file's totals
+        JobExecution second = job(2L, "file-1");
+        runPartition(second, record("A", "0.25", true));
+
+        List<CategorySummary> summary = repository.findByFileId("file-1");
+
+        assertThat(summary).extracting(CategorySummary::category)
+            .containsExactly(CategoryAggregator.NO_CATEGORY, "A", "B");
+        CategorySummary a = summary.get(1);
+        assertThat(a.count()).isEqualTo(3);
+        assertThat(a.sum()).isEqualByComparingTo("4.25");
+        assertThat(a.min()).isEqualByComparingTo("0.25");
+        assertThat(a.max()).isEqualByComparingTo("2.50");
+        CategorySummary b = summary.get(2);
+        assertThat(b.count()).isEqualTo(2);
+        assertThat(b.sum()).isEqualByComparingTo("-4.00");
+        assertThat(b.min()).isEqualByComparingTo("-4.00");
+        assertThat(repository.findByFileId("file-2")).isEmpty();
+    }
+
+    @Test
+    void remotePartitionsFlushTheirOwnShareAtStepEnd() {
+        // No beforeJob in this JVM: the job's manager runs on another pod
+        JobExecution remote = job(3L, "file-3");
+        runPartition(remote, record("A", "1.00", true));
+        runPartition(remote, record("A", "2.00", true));
+
+        assertThat(repository.findByFileId("file-3")).singleElement()
+            .satisfies(a -> assertThat(a.count()).isEqualTo(2))
+            .satisfies(a -> assertThat(a.sum()).isEqualByComparingTo("3.00"));
+    }
+
+    @Test
+    void eachPartitionIsStoredWhenItEndsNotWhenTheJobDoes() {
+        JobExecution job = job(4L, "file-4");
+        runPartition(job, record("A", "1.00", true));
+
+        // The job is still running (or about to be killed): the finished partition is already stored
+        assertThat(repository.findByFileId("file-4")).singleElement()
+            .satisfies(a -> assertThat(a.count()).isEqualTo(1));
+    }
+
+    @Test
+    void partitionKilledMidStepResumesFromItsCommittedCheckpoint() {
+        JobExecution first = job(5L, "file-5");
+        StepExecution crashed = first.createStepExecution("workerStep:partition-0");
+        aggregator.beforeStep(crashed);
+        write(crashed, true, record("A", "1.00", true), record("B", "2.00", true));
+        write(crashed, false, record("A", "100.00", true));   // rolled back, will be re-read
+        // Pod killed: no afterStep, nothing stored
+        assertThat(repository.findByFileId("file-5")).isEmpty();
+
+        // Restart: Spring Batch hands the partition its last saved context
+        JobExecution second = job(6L, "file-5");
+        StepExecution restarted = second.createStepExecution("workerStep:partition-0");
+        restarted.getExecutionContext().put(CategoryAggregator.CHECKPOINT_KEY,
+            crashed.getExecutionContext().get(CategoryAggregator.CHECKPOINT_KEY));
+        aggregator.beforeStep(restarted);
+        write(restarted, true, record("A", "100.00", true));
+        aggregator.afterStep(restarted);
+
+        List<CategorySummary> summary = repository.findByFileId("file-5");
+        assertThat(summary).extracting(CategorySummary::category).containsExactly("A", "B");
+        assertThat(summary.get(0).count()).isEqualTo(2);
+        assertThat(summary.get(0).sum()).isEqualByComparingTo("101.00");
+        assertThat(summary.get(1).count()).isEqualTo(1);
+        assertThat(restarted.getExecutionContext().containsKey(CategoryAggregator.CHECKPOINT_KEY)).isFalse();
+    }
+
+    @Test
+    void repeatedFlushesForOneJobAreAdditive() {
+        CategoryAggregate a = new CategoryAggregate();
+        a.add(new BigDecimal("5"));
+        CategoryAggregate b = new CategoryAggregate();
+        b.add(new BigDecimal("7"));
+        b.add(null);
+
+        repository.merge("1", "file-1", Map.of("A", a));
+        repository.merge("1", "file-1", Map.of("A", b));
+
+        CategorySummary summary = repository.findByFileId("file-1").get(0);
+        assertThat(summary.count()).isEqualTo(3);
+        assertThat(summary.sum()).isEqualByComparingTo("12");
+        assertThat(summary.min()).isEqualByComparingTo("5");
+        assertThat(summary.max()).isEqualByComparingTo("7");
+    }
+
+    private void runPartition(JobExecution job, RecordDTO... records) {
+        StepExecution step = job.createStepExecution("workerStep:partition" + job.getStepExecutions().size());
+        aggregator.beforeStep(step);
+        List<RecordDTO> items = new ArrayList<>(List.of(records));
+        aggregator.afterWrite(new Chunk<>(items));
+        aggregator.afterStep(step);
+    }
+
+    /** One chunk write in a transaction that then commits or rolls back. */
+    private void write(StepExecution step, boolean commit, RecordDTO... records) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            aggregator.afterWrite(new Chunk<>(new ArrayList<>(List.of(records))));
+            for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+                sync.afterCompletion(commit ? TransactionSynchronization.STATUS_COMMITTED
+                    : TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static JobExecution job(long id, String fileId) {
+        return MetaDataInstanceFactory.createJobExecution("csvImportJob", id, id,
+            new JobParametersBuilder().addString("fileId", fileId).toJobParameters());
+    }
+
+    private static RecordDTO record(String category, String value, boolean loaded) {
+        RecordDTO r = new RecordDTO();
+        r.setCategory(category);
+        r.setValueRec(value == null ? null : new BigDecimal(value));
+        r.setStatus(loaded ? OracleJdbcBatchWriter.STATUS_LOADED : OracleJdbcBatchWriter.STATUS_DUPLICATE);
+        return r;
+    }
+}
@@ -0,0 +1,140 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvFileSplitterTest {
+
+    private static final String HEADER = "externalId,name,value,category,eventTs\n";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void rangesStartAfterTheHeaderAndEndOnLineBoundaries() throws Exception {
+        Path file = write(HEADER + lines(1_000, ""));
+        byte[] bytes = Files.readAllBytes(file);
+
+        for (int count : List.of(1, 2, 3, 7, 16)) {
+            List<ByteRange> ranges = CsvFileSplitter.split(file, count);
+
+            assertThat(ranges).as("count " + count).hasSize(count);
+            assertThat(ranges.get(0).start()).isEqualTo(HEADER.length());
+            assertThat(ranges.get(ranges.size() - 1).end()).isEqualTo(bytes.length);
+            for (int i = 0; i < ranges.size(); i++) {
+                ByteRange range = ranges.get(i);
+                assertThat(range.isEmpty()).isFalse();
+                assertThat(bytes[(int) range.start() - 1]).as("byte before range %d", i).isEqualTo((byte) '\n');
+                if (i > 0) {
+                    assertThat(range.start()).isEqualTo(ranges.get(i - 1).end());
+                }
+            }
+            assertThat(linesIn(bytes, ranges)).isEqualTo(dataLines(1_000));
+        }
+    }
+
+    @Test
+    void lastLineWithoutNewlineAndLinesLongerThanTheScanBuffer() throws Exception {
+        String longName = "n".repeat(20_000);   // > the 8 KB scan buffer
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < 10; i++) {
+            csv.append("EXT-").append(i).append(',').append(i % 3 == 0 ? longName : "Name").append(",1,CAT,\n");
+        }
+        csv.append("EXT-last,Name,1,CAT,");
+        Path file = write(csv.toString());
+        byte[] bytes = Files.readAllBytes(file);
+
+        List<ByteRange> ranges = CsvFileSplitter.split(file, 8);
+
+        List<String> ids = new ArrayList<>();
+        for (String line : linesIn(bytes, ranges)) {
+            ids.add(line.substring(0, line.indexOf(',')));
+        }
+        assertThat(ids).containsExactly("EXT-0", "EXT-1", "EXT-2", "EXT-3", "EXT-4", "EXT-5", "EXT-6",
+            "EXT-7", "EXT-8", "EXT-9", "EXT-last");
+        // Cuts inside a long line move past it, so fewer ranges than asked for
+        assertThat(ranges.size()).isLessThanOrEqualTo(8);
+    }
+
+    @Test
+    void fewerLinesThanRangesGivesOneRangePerLine() throws Exception {
+        Path file = write(HEADER + lines(3, ""));
+
+        List<ByteRange> ranges = CsvFileSplitter.split(file, 10);
+
+        assertThat(ranges).hasSizeLessThanOrEqualTo(3);
+        assertThat(linesIn(Files.readAllBytes(file), ranges)).isEqualTo(dataLines(3));
+    }
+
+    @Test
+    void headerOnlyAndEmptyFilesHaveNoRanges() throws Exception {
+        Path headerOnly = write(HEADER);
+        assertThat(CsvFileSplitter.dataStart(headerOnly)).isEqualTo(HEADER.length());
+        assertThat(CsvFileSplitter.split(headerOnly, 4)).isEmpty();
+
+        Path empty = write("");
+        assertThat(CsvFileSplitter.dataStart(empty)).isZero();
+        assertThat(CsvFileSplitter.split(empty, 4)).isEmpty();
+
+        assertThatThrownBy(() -> CsvFileSplitter.split(headerOnly, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void crlfLinesAreCutAfterTheNewline() throws Exception {
+        Path file = write(HEADER.replace("\n", "\r\n") + lines(100, "\r"));
+        byte[] bytes = Files.readAllBytes(file);
+
+        List<ByteRange> ranges = CsvFileSplitter.split(file, 5);
+
+        assertThat(ranges.get(0).start()).isEqualTo(HEADER.length() + 1);
+        for (ByteRange range : ranges) {
+            assertThat(bytes[(int) range.start() - 1]).isEqualTo((byte) '\n');
+        }
+        assertThat(linesIn(bytes, ranges)).hasSize(100).allSatisfy(line -> assertThat(line).endsWith("\r"));
+    }
+
+    private Path write(String csv) throws Exception {
+        Path file = tempDir.resolve("records.csv");
+        Files.write(file, csv.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+    private static String lines(int count, String beforeNewline) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : dataLines(count)) {
+            sb.append(line).append(beforeNewline).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static List<String> dataLines(int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add("EXT-" + i + ",Name " + i + "," + i + ",CAT" + (i % 5) + ",2024-01-01T10:00:00Z");
+        }
+        return lines;
+    }
+
+    /** The lines of every range, in order, without their '\n'. */
+    private static List<String> linesIn(byte[] bytes, List<ByteRange> ranges) {
+        List<String> lines = new ArrayList<>();
+        for (ByteRange range : ranges) {
+            String text = new String(bytes, (int) range.start(), (int) range.length(), StandardCharsets.US_ASCII);
+            for (String line : text.split("\n", -1)) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,112 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.file.FlatFileParseException;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvRecordParserTest {
+
+    private static final Timestamp TS = Timestamp.from(Instant.parse("2024-01-01T10:00:00Z"));
+
+    private final CsvRecordParser parser = new CsvRecordParser((byte) ',');
+
+    @Test
+    void plainLine() {
+        RecordDTO record = parse(parser, "EXT-1,Name 1,3.14,CAT,2024-01-01T10:00:00Z");
+        assertThat(record.getExternalId()).isEqualTo("EXT-1");
+        assertThat(record.getName()).isEqualTo("Name 1");
+        assertThat(record.getValueRec()).isEqualByComparingTo("3.14");
+        assertThat(record.getCategory()).isEqualTo("CAT");
+        assertThat(record.getEventTs()).isEqualTo(TS);
+    }
+
+    @Test
+    void quotedFieldsKeepDelimitersAndUnescapeDoubledQuotes() {
+        RecordDTO record = parse(parser, "\"EXT,1\",\"say \"\"hi\"\", then go\", \"1.5\" ,\"\",2024-01-01T10:00:00Z");
+        assertThat(record.getExternalId()).isEqualTo("EXT,1");
+        assertThat(record.getName()).isEqualTo("say \"hi\", then go");
+        assertThat(record.getValueRec()).isEqualTo(new BigDecimal("1.5"));
+        assertThat(record.getCategory()).isEmpty();
+        assertThat(record.getEventTs()).isEqualTo(TS);
+    }
+
+    @Test
+    void unquotedFieldsAreTrimmedAndMultiByteTextIsDecoded() {
+        RecordDTO record = parse(parser, "  EXT-1 , Zoë 注文 ,  7 ,\tCAT\t, 2024-01-01T10:00:00Z ");
+        assertThat(record.getExternalId()).isEqualTo("EXT-1");
+        assertThat(record.getName()).isEqualTo("Zoë 注文");
+        assertThat(record.getValueRec()).isEqualTo(new BigDecimal("7"));
+        assertThat(record.getCategory()).isEqualTo("CAT");
+        assertThat(record.getEventTs()).isEqualTo(TS);
+    }
+
+    @Test
+    void nonCommaDelimiter() {
+        CsvRecordParser pipes = new CsvRecordParser((byte) '|');
+        RecordDTO record = parse(pipes, "EXT-1|a,b|2.5|\"x|y\"|2024-01-01T10:00:00Z");
+        assertThat(record.getName()).isEqualTo("a,b");
+        assertThat(record.getValueRec()).isEqualTo(new BigDecimal("2.5"));
+        assertThat(record.getCategory()).isEqualTo("x|y");
+
+        CsvRecordParser tabs = new CsvRecordParser((byte) '\t');
+        record = parse(tabs, "EXT-1\tName\t2.5\tCAT\t2024-01-01T10:00:00Z");
+        assertThat(record.getName()).isEqualTo("Name");
+        assertThat(record.getCategory()).isEqualTo("CAT");
+        assertThat(record.getEventTs()).isEqualTo(TS);
+    }
+
+    @Test
+    void missingColumnsReadAsEmptyAndExtraColumnsAreIgnored() {
+        RecordDTO shortLine = parse(parser, "EXT-1,Name");
+        assertThat(shortLine.getExternalId()).isEqualTo("EXT-1");
+        assertThat(shortLine.getName()).isEqualTo("Name");
+        assertThat(shortLine.getValueRec()).isNull();
+        assertThat(shortLine.getCategory()).isEmpty();
+        assertThat(shortLine.getEventTs()).isNull();
+
+        RecordDTO longLine = parse(parser, "EXT-1,Name,1,CAT,2024-01-01T10:00:00Z,extra,\"more, extra\"");
+        assertThat(longLine.getCategory()).isEqualTo("CAT");
+        assertThat(longLine.getEventTs()).isEqualTo(TS);
+    }
+
+    @Test
+    void malformedLinesFailWithTheirLineNumber() {
+        assertThatThrownBy(() -> parse(parser, "EXT-1,\"unterminated,1,CAT,2024-01-01T10:00:00Z"))
+            .isInstanceOf(FlatFileParseException.class)
+            .satisfies(e -> assertThat(((FlatFileParseException) e).getLineNumber()).isEqualTo(42));
+        assertThatThrownBy(() -> parse(parser, "EXT-1,Name,1.2.3,CAT,2024-01-01T10:00:00Z"))
+            .isInstanceOf(FlatFileParseException.class)
+            .hasMessageContaining("value_rec");
+
+        // An unparseable eventTs is logged and left null, not fatal
+        assertThat(parse(parser, "EXT-1,Name,1,CAT,yesterday").getEventTs()).isNull();
+    }
+
+    @Test
+    void rejectsDelimitersItCannotTokenize() {
+        assertThat(CsvRecordParser.supports(",")).isTrue();
+        assertThat(CsvRecordParser.supports("\t")).isTrue();
+        assertThat(CsvRecordParser.supports("\"")).isFalse();
+        assertThat(CsvRecordParser.supports("||")).isFalse();
+        assertThat(CsvRecordParser.supports("§")).isFalse();
+        assertThatThrownBy(() -> new CsvRecordParser((byte) '"')).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /** Parses {@code line} from the middle of a larger buffer, as a mapped window presents it. */
+    private static RecordDTO parse(CsvRecordParser parser, String line) {
+        byte[] prefix = "previous,line\n".getBytes(StandardCharsets.UTF_8);
+        byte[] body = line.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(prefix.length + body.length + 1);
+        buf.put(prefix).put(body).put((byte) '\n');
+        return parser.parse(buf, prefix.length, prefix.length + body.length, 42);
+    }
+}
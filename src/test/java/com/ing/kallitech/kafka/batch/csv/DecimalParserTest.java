@@ -0,0 +1,42 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DecimalParserTest {
+
+    private final DecimalParser parser = new DecimalParser(4);
+
+    @Test
+    void matchesBigDecimalWithHalfUpRoundingToTheMaxScale() {
+        List<String> inputs = List.of(
+            "0", "-0", "+7", "3.14", "1.50", "000120", ".5", "5.", "-0.00005", "-0.00004",
+            "0.99995", "2.718281828459045", "-12345.67895", "123456789012345.1234",
+            "922337203685477.5807", "99999999999999999999.5", "1e3", "-2.5E-7", "12345678901234567890123");
+        for (String s : inputs) {
+            BigDecimal expected = new BigDecimal(s);
+            if (expected.scale() > 4) {
+                expected = expected.setScale(4, RoundingMode.HALF_UP);
+            }
+            byte[] bytes = ("  " + s + "  ").getBytes(StandardCharsets.US_ASCII);
+            assertThat(parser.parse(bytes, 2, s.length())).as(s).isEqualTo(expected);
+            assertThat(parser.parse(s)).as(s).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void emptyIsNullAndGarbageIsRejectedLikeBigDecimal() {
+        assertThat(parser.parse(new byte[0], 0, 0)).isNull();
+        assertThat(parser.parse("")).isNull();
+        for (String s : List.of("-", ".", "1.2.3", "12a", "1,000")) {
+            assertThatThrownBy(() -> parser.parse(s)).as(s).isInstanceOf(NumberFormatException.class);
+        }
+    }
+}
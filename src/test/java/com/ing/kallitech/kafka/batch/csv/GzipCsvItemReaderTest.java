@@ -0,0 +1,171 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GzipCsvItemReaderTest {
+
+    private static final int ROWS = 5_000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void multiMemberFileSplitsAtMembersAndEveryRowIsReadOnce() throws Exception {
+        byte[] csv = csv(ROWS);
+        Path file = tempDir.resolve("records.csv.gz");
+        // Member boundaries fall mid-line on purpose
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int from = 0; from < csv.length; from += 7_001) {
+                out.write(gzip(csv, from, Math.min(csv.length, from + 7_001)));
+            }
+        }
+
+        GzipBlockIndex index = GzipBlockIndex.load(file);
+        assertThat(index.memberCount()).isEqualTo((csv.length + 7_000) / 7_001);
+        assertThat(index.uncompressedSize()).isEqualTo(csv.length);
+        assertThat(GzipBlockIndex.sidecar(file)).exists();
+        assertThat(GzipBlockIndex.load(file).split(4)).isEqualTo(index.split(4));
+
+        assertThat(readAll(file, index.split(4))).isEqualTo(expectedIds());
+    }
+
+    @Test
+    void bgzfFileIsIndexedFromHeaders() throws Exception {
+        byte[] csv = csv(ROWS);
+        Path file = tempDir.resolve("records.csv.bgz");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int from = 0; from < csv.length; from += 10_000) {
+                out.write(bgzfBlock(csv, from, Math.min(csv.length, from + 10_000)));
+            }
+            out.write(bgzfBlock(csv, 0, 0));   // BGZF EOF marker
+        }
+
+        GzipBlockIndex index = GzipBlockIndex.build(file);
+        assertThat(index.memberCount()).isEqualTo((csv.length + 9_999) / 10_000);
+        assertThat(index.uncompressedSize()).isEqualTo(csv.length);
+
+        assertThat(readAll(file, index.split(3))).isEqualTo(expectedIds());
+    }
+
+    @Test
+    void singleMemberFileIsOneStreamingSpan() throws Exception {
+        byte[] csv = csv(ROWS);
+        Path file = tempDir.resolve("single.csv.gz");
+        Files.write(file, gzip(csv, 0, csv.length));
+
+        GzipBlockIndex index = GzipBlockIndex.load(file);
+        assertThat(GzipBlockIndex.isGzip(file)).isTrue();
+        assertThat(index.split(8)).hasSize(1);
+
+        assertThat(readAll(file, index.split(8))).isEqualTo(expectedIds());
+    }
+
+    @Test
+    void restartSkipsToTheCheckpointWithoutParsing() throws Exception {
+        byte[] csv = csv(ROWS);
+        Path file = tempDir.resolve("restart.csv.gz");
+        Files.write(file, gzip(csv, 0, csv.length));
+        GzipBlockIndex.Span span = GzipBlockIndex.load(file).split(1).get(0);
+
+        var first = new GzipCsvItemReader(new GzipRangeResource(file, span, "test-read-ahead"), (byte) ',');
+        var checkpoint = new ExecutionContext();
+        first.open(checkpoint);
+        for (int i = 0; i < 3_000; i++) {
+            first.read();
+        }
+        checkpoint.putLong(ByteOffsetAware.OFFSET_KEY, first.byteOffset());
+        checkpoint.putLong(ByteOffsetAware.LINE_KEY, first.lineNumber());
+        first.close();
+
+        var restarted = new GzipCsvItemReader(new GzipRangeResource(file, span, "test-read-ahead"), (byte) ',');
+        restarted.open(checkpoint);
+        try {
+            assertThat(restarted.read().getExternalId()).isEqualTo("EXT-3000");
+            assertThat(restarted.lineNumber()).isEqualTo(3_001);
+        } finally {
+            restarted.close();
+        }
+    }
+
+    private List<String> readAll(Path file, List<GzipBlockIndex.Span> spans) throws Exception {
+        List<String> ids = new ArrayList<>();
+        for (GzipBlockIndex.Span span : spans) {
+            var reader = new GzipCsvItemReader(new GzipRangeResource(file, span, "test-read-ahead"), (byte) ',');
+            reader.open(new ExecutionContext());
+            try {
+                RecordDTO record;
+                while ((record = reader.read()) != null) {
+                    ids.add(record.getExternalId());
+                }
+                assertThat(reader.byteOffset()).isGreaterThanOrEqualTo(span.end());
+            } finally {
+                reader.close();
+            }
+        }
+        return ids;
+    }
+
+    private static List<String> expectedIds() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            ids.add("EXT-" + i);
+        }
+        return ids;
+    }
+
+    private static byte[] csv(int rows) {
+        StringBuilder sb = new StringBuilder("externalId,name,value,category,eventTs\n");
+        for (int i = 0; i < rows; i++) {
+            sb.append("EXT-").append(i).append(",Name ").append(i).append(',').append(i * 3.14)
+                .append(",CAT").append(i % 5).append(",2024-01-01T10:00:00Z\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] gzip(byte[] data, int from, int to) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new GZIPOutputStream(bytes)) {
+            out.write(data, from, to - from);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** One BGZF block: gzip member with the "BC" extra field holding its total size - 1. */
+    private static byte[] bgzfBlock(byte[] data, int from, int to) {
+        var deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data, from, to - from);
+        deflater.finish();
+        byte[] deflated = new byte[(to - from) + 1024];
+        int length = deflater.deflate(deflated);
+        deflater.end();
+
+        var crc = new CRC32();
+        crc.update(data, from, to - from);
+        ByteBuffer block = ByteBuffer.allocate(18 + length + 8).order(ByteOrder.LITTLE_ENDIAN);
+        block.put((byte) 0x1f).put((byte) 0x8b).put((byte) 8).put((byte) 4).putInt(0).put((byte) 0).put((byte) 0xff);
+        block.putShort((short) 6).put((byte) 'B').put((byte) 'C').putShort((short) 2);
+        block.putShort((short) (block.capacity() - 1));
+        block.put(deflated, 0, length);
+        block.putInt((int) crc.getValue()).putInt(to - from);
+        return block.array();
+    }
+}
@@ -0,0 +1,50 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IsoTimestampParserTest {
+
+    private final IsoTimestampParser parser = new IsoTimestampParser();
+
+    @Test
+    void matchesInstantParse() {
+        List<String> inputs = List.of(
+            "2024-01-01T10:00:00Z", "2024-01-01T10:00:00.5Z", "2024-02-29T23:59:59.123Z",
+            "2023-12-31T00:00:00.123456789Z", "1969-07-20T20:17:40Z", "1900-03-01T00:00:00Z",
+            "2000-02-29T12:00:00.000Z", "0001-01-01T00:00:00Z", "9999-12-31T23:59:59.999999999Z",
+            // not the fast shape: Instant.parse decides
+            "2024-01-01T10:00:00+02:00", "2024-01-01t10:00:00z", "2024-06-30T23:59:60Z");
+        for (String s : inputs) {
+            Timestamp expected = Timestamp.from(Instant.parse(s));
+            byte[] bytes = ("," + s + ",").getBytes(StandardCharsets.US_ASCII);
+            assertThat(parser.parse(bytes, 1, s.length())).as(s).isEqualTo(expected);
+            assertThat(parser.parse(s)).as(s).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void repeatedInputReturnsTheCachedInstance() {
+        Timestamp first = parser.parse("2024-01-01T10:00:00Z");
+        assertThat(parser.parse("2024-01-01T10:00:00Z")).isSameAs(first);
+        Timestamp other = parser.parse("2024-01-01T10:00:01Z");
+        assertThat(other).isNotEqualTo(first);
+        assertThat(parser.parse("2024-01-01T10:00:01Z")).isSameAs(other);
+    }
+
+    @Test
+    void invalidDatesAreRejectedLikeInstantParse() {
+        assertThat(parser.parse("")).isNull();
+        for (String s : List.of("2023-02-29T00:00:00Z", "2024-13-01T00:00:00Z", "2024-01-01T10:00Z", "not a date")) {
+            assertThatThrownBy(() -> parser.parse(s)).as(s).isInstanceOf(DateTimeParseException.class);
+        }
+    }
+}
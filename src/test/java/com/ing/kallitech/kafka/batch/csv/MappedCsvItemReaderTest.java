@@ -0,0 +1,122 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedCsvItemReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void skipsBlankAndCommentLinesAndStripsCarriageReturns() throws Exception {
+        Path file = write("EXT-1,A,1,CAT,2024-01-01T10:00:00Z\r\n"
+            + "\r\n"
+            + "# comment,with,columns\n"
+            + "\n"
+            + "EXT-2,\"B, C\",2,CAT,2024-01-01T10:00:00Z\r\n"
+            + "EXT-3,D,3,CAT\r\n");
+
+        List<RecordDTO> records = readAll(file, MappedCsvItemReader.DEFAULT_WINDOW_SIZE);
+        assertThat(records).extracting(RecordDTO::getExternalId).containsExactly("EXT-1", "EXT-2", "EXT-3");
+        assertThat(records.get(0).getEventTs()).isNotNull();
+        assertThat(records.get(1).getName()).isEqualTo("B, C");
+        assertThat(records.get(2).getCategory()).isEqualTo("CAT");   // no trailing '\r' on the last field
+    }
+
+    @Test
+    void linesStraddlingTheWindowEndAreRemappedFromTheirStart() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            csv.append("EXT-").append(i).append(",Name ").append(i).append(',').append(i)
+                .append(",CAT").append(i % 5).append(",2024-01-01T10:00:00Z\n");
+        }
+        Path file = write(csv.toString());
+
+        // Windows much smaller than the file, so many lines straddle a window end
+        for (long window : List.of(97L, 128L, 1_000L, 4_096L)) {
+            List<RecordDTO> records = readAll(file, window);
+            assertThat(records).as("window " + window).hasSize(500);
+            for (int i = 0; i < 500; i++) {
+                assertThat(records.get(i).getExternalId()).isEqualTo("EXT-" + i);
+                assertThat(records.get(i).getCategory()).isEqualTo("CAT" + (i % 5));
+            }
+        }
+    }
+
+    @Test
+    void lineLongerThanTheWindowFails() throws Exception {
+        Path file = write("EXT-1,A,1,CAT,2024-01-01T10:00:00Z\n" + "EXT-2," + "x".repeat(200) + ",2,CAT,\n");
+
+        assertThatThrownBy(() -> readAll(file, 64))
+            .isInstanceOf(ItemStreamException.class)
+            .hasMessageContaining("longer than the 64-byte mmap window");
+    }
+
+    @Test
+    void restartResumesAtTheCheckpointedLine() throws Exception {
+        Path file = write("EXT-1,A,1,CAT,\n# skipped\nEXT-2,B,2,CAT,\nEXT-3,C,3,CAT,\n");
+        ByteRange range = new ByteRange(0, Files.size(file));
+
+        var first = new MappedCsvItemReader(file, range, (byte) ',', 32);
+        ExecutionContext checkpoint = new ExecutionContext();
+        first.open(checkpoint);
+        first.read();
+        first.read();
+        checkpoint.putLong(ByteOffsetAware.OFFSET_KEY, first.byteOffset());
+        checkpoint.putLong(ByteOffsetAware.LINE_KEY, first.lineNumber());
+        first.close();
+
+        var restarted = new MappedCsvItemReader(file, range, (byte) ',', 32);
+        restarted.open(checkpoint);
+        try {
+            assertThat(restarted.read().getExternalId()).isEqualTo("EXT-3");
+            assertThat(restarted.lineNumber()).isEqualTo(4);
+            assertThat(restarted.read()).isNull();
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void rejectsWindowsOutsideTheMappableRange() {
+        ByteRange range = new ByteRange(0, 1);
+        assertThatThrownBy(() -> new MappedCsvItemReader(tempDir, range, (byte) ',', 0))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new MappedCsvItemReader(tempDir, range, (byte) ',', 1L << 31))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Path write(String csv) throws Exception {
+        Path file = tempDir.resolve("records.csv");
+        Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<RecordDTO> readAll(Path file, long windowSize) throws Exception {
+        var reader = new MappedCsvItemReader(file, new ByteRange(0, Files.size(file)), (byte) ',', windowSize);
+        reader.open(new ExecutionContext());
+        try {
+            List<RecordDTO> records = new ArrayList<>();
+            RecordDTO record;
+            while ((record = reader.read()) != null) {
+                records.add(record);
+            }
+            return records;
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.FlatFileParseException;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PipelinedItemReaderTest {
+
+    @Test
+    void deliversItemsAndParseErrorsInSourceOrder() throws Exception {
+        var source = new ScriptedReader(List.of("a", new FlatFileParseException("bad", "x", 2), "b", "c"));
+        var reader = new PipelinedItemReader<StringBuilder>(source, sb -> sb.append('!'), 1, "test-pipeline");
+
+        reader.open(new ExecutionContext());
+        try {
+            assertThat(reader.read()).hasToString("a!");
+            assertThatThrownBy(reader::read).isInstanceOf(FlatFileParseException.class);
+            assertThat(reader.read()).hasToString("b!");
+            assertThat(reader.read()).hasToString("c!");
+            assertThat(reader.read()).isNull();
+            assertThat(reader.read()).isNull();
+            assertThat(reader.byteOffset()).isEqualTo(4);
+        } finally {
+            reader.close();
+        }
+        assertThat(source.closed).isTrue();
+    }
+
+    @Test
+    void fatalErrorEndsTheStream() throws Exception {
+        var source = new ScriptedReader(List.of("a", new IllegalStateException("disk gone"), "never"));
+        var reader = new PipelinedItemReader<StringBuilder>(source, sb -> { }, 4, "test-pipeline");
+
+        reader.open(new ExecutionContext());
+        try {
+            assertThat(reader.read()).hasToString("a");
+            assertThatThrownBy(reader::read).isInstanceOf(IllegalStateException.class);
+            assertThat(reader.read()).isNull();
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void closeStopsAProducerBlockedOnAFullQueue() {
+        List<Object> script = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            script.add("row" + i);
+        }
+        var source = new ScriptedReader(script);
+        var reader = new PipelinedItemReader<StringBuilder>(source, sb -> { }, 2, "test-pipeline");
+
+        reader.open(new ExecutionContext());
+        reader.close();
+
+        assertThat(source.closed).isTrue();
+        assertThat(source.reads).isLessThan(1_000);
+    }
+
+    /** Returns the scripted Strings as items and throws the scripted exceptions. */
+    private static final class ScriptedReader implements ItemStreamReader<StringBuilder>, ByteOffsetAware {
+
+        private final Iterator<Object> script;
+        private volatile int reads;
+        private volatile boolean closed;
+
+        ScriptedReader(List<Object> script) {
+            this.script = script.iterator();
+        }
+
+        @Override
+        public void open(ExecutionContext executionContext) {
+        }
+
+        @Override
+        public StringBuilder read() throws Exception {
+            if (!script.hasNext()) {
+                return null;
+            }
+            reads++;
+            Object next = script.next();
+            if (next instanceof Exception e) {
+                throw e;
+            }
+            return new StringBuilder((String) next);
+        }
+
+        @Override
+        public long byteOffset() {
+            return reads;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.ing.kallitech.kafka.batch.csv;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import com.ing.kallitech.kafka.batch.repository.WorkUnitRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorkUnitItemReaderTest {
+
+    private static final long INSTANCE = 7L;
+    private static final int ROWS = 20_000;
+
+    @TempDir
+    Path tempDir;
+
+    private WorkUnitRepository repository;
+    private ExecutorService pool;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=Oracle", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        repository = new WorkUnitRepository(new JdbcTemplate(dataSource), new DataSourceTransactionManager(dataSource));
+
+        file = tempDir.resolve("records.csv");
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("externalId,name,value,category,eventTs\n");
+            for (int i = 0; i < ROWS; i++) {
+                out.write("EXT-" + i + ",Name " + i + "," + i + ",CAT" + (i % 5) + ",2024-01-01T10:00:00Z\n");
+            }
+        }
+        repository.create(INSTANCE, CsvFileSplitter.split(file, 40));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void slowWorkerClaimsFewerUnitsAndEveryRowIsReadOnce() throws Exception {
+        pool = Executors.newFixedThreadPool(4);
+        List<Future<List<String>>> workers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            long delayMs = w == 0 ? 20 : 0;
+            int worker = w;
+            workers.add(pool.submit(() -> drain(reader(worker), delayMs)));
+        }
+
+        Set<String> ids = new HashSet<>();
+        int total = 0;
+        List<Integer> perWorker = new ArrayList<>();
+        for (Future<List<String>> worker : workers) {
+            List<String> read = worker.get();
+            perWorker.add(read.size());
+            ids.addAll(read);
+            total += read.size();
+        }
+
+        assertThat(total).isEqualTo(ROWS);
+        assertThat(ids).hasSize(ROWS);
+        assertThat(perWorker.get(0)).isLessThan(ROWS / 4);
+        assertThat(repository.countByStatus(INSTANCE, WorkUnitRepository.DONE)).isEqualTo(40);
+    }
+
+    @Test
+    void restartRequeuesClaimedUnitsAndSkipsDoneOnes() throws Exception {
+        WorkUnitItemReader<RecordDTO> first = reader(0);
+        first.open(new ExecutionContext());
+        // Finish three units, then stop three rows into the fourth
+        int consumed = 0;
+        int intoFourth = 0;
+        while (intoFourth < 3) {
+            boolean threeDone = repository.countByStatus(INSTANCE, WorkUnitRepository.DONE) == 3;
+            assertThat(first.read()).isNotNull();
+            consumed++;
+            if (threeDone) {
+                intoFourth++;
+            }
+            List<WorkUnit> done = first.completedUpTo(first.byteOffset());
+            if (!done.isEmpty()) {
+                repository.markDone(INSTANCE, done);
+            }
+        }
+        first.close();
+        assertThat(repository.countByStatus(INSTANCE, WorkUnitRepository.CLAIMED)).isEqualTo(1);
+
+        assertThat(repository.resetClaimed(INSTANCE)).isEqualTo(1);
+        List<String> rest = drain(reader(1), 0);
+
+        // The three rows of the unfinished unit are read again; nothing else is
+        assertThat(consumed - 3 + rest.size()).isEqualTo(ROWS);
+        assertThat(repository.countByStatus(INSTANCE, WorkUnitRepository.DONE)).isEqualTo(40);
+    }
+
+    @Test
+    void consumedBytesGrowWithEveryChunkAndEndAtTheDataSize() throws Exception {
+        WorkUnitItemReader<RecordDTO> reader = reader(0);
+        reader.open(new ExecutionContext());
+        long previous = 0;
+        int rows = 0;
+        while (reader.read() != null) {
+            if (++rows % 100 == 0) {
+                long offset = reader.byteOffset();
+                reader.completedUpTo(offset);
+                long consumed = reader.consumedBytes(offset);
+                assertThat(consumed).isGreaterThan(previous);
+                previous = consumed;
+            }
+        }
+        long offset = reader.byteOffset();
+        reader.completedUpTo(offset);
+        reader.close();
+
+        assertThat(reader.consumedBytes(offset)).isEqualTo(Files.size(file) - CsvFileSplitter.dataStart(file));
+    }
+
+    private WorkUnitItemReader<RecordDTO> reader(int worker) {
+        return new WorkUnitItemReader<>(() -> repository.claimNext(INSTANCE, worker),
+            range -> new MappedCsvItemReader(file, range, (byte) ','));
+    }
+
+    /** Reads like a step: marks finished units DONE after every 100-row "chunk" and at the end. */
+    private List<String> drain(WorkUnitItemReader<RecordDTO> reader, long delayMs) throws Exception {
+        List<String> ids = new ArrayList<>();
+        reader.open(new ExecutionContext());
+        try {
+            RecordDTO record;
+            while ((record = reader.read()) != null) {
+                ids.add(record.getExternalId());
+                if (ids.size() % 100 == 0) {
+                    commit(reader);
+                    if (delayMs > 0) {
+                        Thread.sleep(delayMs);
+                    }
+                }
+            }
+            commit(reader);
+        } finally {
+            reader.close();
+        }
+        return ids;
+    }
+
+    private void commit(WorkUnitItemReader<RecordDTO> reader) {
+        List<WorkUnit> done = reader.completedUpTo(reader.byteOffset());
+        if (!done.isEmpty()) {
+            repository.markDone(INSTANCE, done);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.ing.kallitech.kafka.batch.dedup;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import com.ing.kallitech.kafka.batch.service.OracleJdbcBatchWriter;
+import com.ing.kallitech.kafka.batch.service.RecordHasher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.item.Chunk;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordHashFilterTest {
+
+    private static final RecordHasher HASHER = new RecordHasher("sha256-hex");
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=Oracle", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegativesAndStaysNearTargetFpp() {
+        BloomFilter filter = BloomFilter.create(100_000, 0.01);
+        for (long i = 0; i < 100_000; i++) {
+            filter.put(mix(i), mix(~i));
+        }
+        for (long i = 0; i < 100_000; i++) {
+            assertThat(filter.mightContain(mix(i), mix(~i))).isTrue();
+        }
+        int falsePositives = 0;
+        for (long i = 100_000; i < 200_000; i++) {
+            if (filter.mightContain(mix(i), mix(~i))) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+        assertThat(filter.expectedFpp()).isBetween(0.005, 0.015);
+    }
+
+    @Test
+    void seedsFromDatabaseAndTagsLoadedRowsForTheWritersMerge() throws Exception {
+        RecordDTO loaded = record("EXT-1");
+        jdbcTemplate.update("INSERT INTO batch_records (external_id, name, record_hash) VALUES (?, ?, ?)",
+            loaded.getExternalId(), loaded.getName(), loaded.getRecordHash());
+
+        RecordHashFilter filter = filter("");
+        filter.init();
+
+        RecordDTO replayed = record("EXT-1");
+        RecordDTO fresh = record("EXT-2");
+        filter.tagMaybeDuplicate(replayed);
+        filter.tagMaybeDuplicate(fresh);
+        assertThat(replayed.isMaybeDuplicate()).isTrue();
+        assertThat(fresh.isMaybeDuplicate()).isFalse();
+
+        // The tagged row skips the INSERT: no duplicate-key fallback, no per-row lookup
+        Chunk<RecordDTO> chunk = new Chunk<>(replayed, fresh);
+        new OracleJdbcBatchWriter(jdbcTemplate, meterRegistry, HASHER, OracleJdbcBatchWriter.WRITE_MODE_INSERT)
+            .write(chunk);
+        filter.afterWrite(chunk);
+
+        assertThat(chunk.getItems()).extracting(RecordDTO::getStatus)
+            .containsExactly(OracleJdbcBatchWriter.STATUS_DUPLICATE, OracleJdbcBatchWriter.STATUS_LOADED);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM batch_records", Integer.class)).isEqualTo(2);
+        assertThat(meterRegistry.find("batch.records.upsert_fallback").counter()).isNull();
+        assertThat(lookups("duplicate")).isEqualTo(1);
+        assertThat(lookups("new")).isEqualTo(1);
+        assertThat(lookups("false_positive")).isZero();
+    }
+
+    @Test
+    void writtenHashesSurviveARestartThroughTheSnapshot() {
+        Path snapshot = tempDir.resolve("bloom.bin");
+        RecordHashFilter first = filter(snapshot.toString());
+        first.init();
+        first.afterWrite(new Chunk<>(record("EXT-9")));
+        first.saveSnapshot();
+        assertThat(Files.exists(snapshot)).isTrue();
+
+        // Row is in the DB but, with a snapshot present, the DB is not rescanned
+        RecordDTO rec = record("EXT-9");
+        jdbcTemplate.update("INSERT INTO batch_records (external_id, name, record_hash) VALUES (?, ?, ?)",
+            rec.getExternalId(), rec.getName(), rec.getRecordHash());
+        meterRegistry = new SimpleMeterRegistry();
+        RecordHashFilter restarted = filter(snapshot.toString());
+        restarted.init();
+
+        RecordDTO replayed = record("EXT-9");
+        restarted.tagMaybeDuplicate(replayed);
+        assertThat(replayed.isMaybeDuplicate()).isTrue();
+        assertThat(meterRegistry.get("batch.dedup.filter.insertions").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void snapshotIsSavedAfterEachJobNotOnlyAtShutdown() throws Exception {
+        Path snapshot = tempDir.resolve("bloom.bin");
+        RecordHashFilter filter = filter(snapshot.toString());
+        filter.init();
+
+        filter.afterWrite(new Chunk<>(record("EXT-1")));
+        filter.afterJob(new JobExecution(1L));
+        assertThat(Files.exists(snapshot)).isTrue();
+
+        // Pod killed here: no @PreDestroy, yet a restart starts from the job's keys
+        meterRegistry = new SimpleMeterRegistry();
+        RecordHashFilter restarted = filter(snapshot.toString());
+        restarted.init();
+        RecordDTO replayed = record("EXT-1");
+        restarted.tagMaybeDuplicate(replayed);
+        assertThat(replayed.isMaybeDuplicate()).isTrue();
+
+        // Nothing added since: the next job end leaves the file alone
+        Files.delete(snapshot);
+        restarted.afterJob(new JobExecution(2L));
+        assertThat(Files.exists(snapshot)).isFalse();
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("batch.dedup.filter.lookups").tag("result", result).counter().count();
+    }
+
+    private RecordHashFilter filter(String snapshotPath) {
+        return new RecordHashFilter(jdbcTemplate, meterRegistry, HASHER, true, 10_000, 0.01, snapshotPath);
+    }
+
+    private static RecordDTO record(String externalId) {
+        RecordDTO r = new RecordDTO();
+        r.setExternalId(externalId);
+        r.setName("Name");
+        r.setCategory("CAT");
+        HASHER.hash(r);
+        return r;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
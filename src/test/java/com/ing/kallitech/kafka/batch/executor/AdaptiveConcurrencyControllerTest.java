@@ -0,0 +1,66 @@
+package com.ing.kallitech.kafka.batch.executor;
+
+import com.ing.kallitech.kafka.batch.executor.AdaptiveConcurrencyController.Sample;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyControllerTest {
+
+    @Test
+    void growsWhileThroughputRisesAndStopsAtThePoolCap() {
+        var controller = new AdaptiveConcurrencyController(1, 16, 2, 2, 2.0, 0.7);
+
+        double throughput = 1_000;
+        for (int i = 0; i < 20; i++) {
+            controller.update(new Sample(0, controller.limit(), 10, 15, throughput));
+            throughput *= 1.5;
+        }
+
+        // 10 pooled connections, 2 reserved for the JobRepository
+        assertThat(controller.limit()).isEqualTo(8);
+    }
+
+    @Test
+    void holdsWhenAnotherThreadDoesNotBuyThroughput() {
+        var controller = new AdaptiveConcurrencyController(1, 16, 4, 2, 2.0, 0.7);
+
+        controller.update(new Sample(0, 4, 10, 15, 10_000));
+        int afterFirstGain = controller.limit();
+        controller.update(new Sample(0, 5, 10, 15, 10_100));
+        controller.update(new Sample(0, 5, 10, 15, 10_050));
+
+        assertThat(afterFirstGain).isEqualTo(5);
+        assertThat(controller.limit()).isEqualTo(5);
+    }
+
+    @Test
+    void backsOffWhenThreadsQueueForConnections() {
+        var controller = new AdaptiveConcurrencyController(1, 16, 8, 2, 2.0, 0.7);
+
+        controller.update(new Sample(3, 10, 10, 15, 10_000));
+
+        assertThat(controller.limit()).isEqualTo(5);
+    }
+
+    @Test
+    void backsOffWhenWriteLatencyClimbsAndNeverDropsBelowMin() {
+        var controller = new AdaptiveConcurrencyController(2, 16, 8, 2, 2.0, 0.7);
+
+        controller.update(new Sample(0, 4, 10, 15, 10_000));
+        for (int i = 0; i < 10; i++) {
+            controller.update(new Sample(0, 4, 10, 60, 10_000));
+        }
+
+        assertThat(controller.limit()).isEqualTo(2);
+    }
+
+    @Test
+    void idleIntervalsLeaveTheLimitAlone() {
+        var controller = new AdaptiveConcurrencyController(1, 16, 4, 2, 2.0, 0.7);
+
+        controller.update(new Sample(0, 0, 10, Double.NaN, 0));
+
+        assertThat(controller.limit()).isEqualTo(4);
+    }
+}
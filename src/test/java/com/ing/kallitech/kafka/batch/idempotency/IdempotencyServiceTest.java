@@ -0,0 +1,102 @@
+package com.ing.kallitech.kafka.batch.idempotency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdempotencyServiceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MutableClock clock = new MutableClock();
+    private JdbcTemplate jdbcTemplate;
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=Oracle", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        service = new IdempotencyService(jdbcTemplate, registry, 2, Duration.ofMinutes(10), clock);
+    }
+
+    @Test
+    void answersCompletedFilesFromTheCacheUntilTheyExpire() {
+        service.markProcessingStarted("f1");
+        assertThat(service.isAlreadyProcessed("f1")).isFalse();
+        service.markCompleted("f1", 10);
+
+        // Served from the cache even though the row is gone
+        jdbcTemplate.update("DELETE FROM job_file_log");
+        assertThat(service.isAlreadyProcessed("f1")).isTrue();
+        assertThat(count("hit")).isEqualTo(1);
+        assertThat(count("miss")).isEqualTo(1);
+
+        clock.advance(Duration.ofMinutes(11));
+        assertThat(service.isAlreadyProcessed("f1")).isFalse();
+        assertThat(count("miss")).isEqualTo(2);
+    }
+
+    @Test
+    void bulkLookupQueriesOnlyCacheMissesAndKeepsTheCacheBounded() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < IdempotencyService.MAX_IN_LIST + 5; i++) {
+            ids.add("f" + i);
+        }
+        for (String id : List.of("f0", "f3", "f1002")) {
+            jdbcTemplate.update("INSERT INTO job_file_log (file_id, status) VALUES (?, 'COMPLETED')", id);
+        }
+        jdbcTemplate.update("INSERT INTO job_file_log (file_id, status) VALUES ('f4', 'FAILED')");
+
+        assertThat(service.findAlreadyProcessed(ids)).containsExactlyInAnyOrder("f0", "f3", "f1002");
+        assertThat(count("miss")).isEqualTo(ids.size());
+
+        // max-size 2: only the two most recently cached ids are still answered in-process
+        assertThat(service.findAlreadyProcessed(List.of("f0", "f3", "f1002", "f1002")))
+            .containsExactlyInAnyOrder("f0", "f3", "f1002");
+        assertThat(count("hit")).isEqualTo(2);
+        assertThat(registry.get("batch.idempotency.cache.size").gauge().value()).isEqualTo(2);
+    }
+
+    private double count(String result) {
+        return registry.get("batch.idempotency.cache").tag("result", result).counter().count();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
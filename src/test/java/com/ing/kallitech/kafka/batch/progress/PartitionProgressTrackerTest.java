@@ -0,0 +1,201 @@
+package com.ing.kallitech.kafka.batch.progress;
+
+import com.ing.kallitech.kafka.batch.progress.PartitionProgressTracker.JobProgress;
+import com.ing.kallitech.kafka.batch.progress.PartitionProgressTracker.PartitionProgress;
+import com.ing.kallitech.kafka.batch.service.CsvItemReader;
+import com.ing.kallitech.kafka.batch.service.CsvPartitioner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionProgressTrackerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final PartitionProgressTracker tracker = new PartitionProgressTracker(1);
+
+    @Test
+    void tracksBytePartitionsAgainstTheWholeFile() throws Exception {
+        Path file = Files.write(tempDir.resolve("in.csv"), new byte[1000]);
+        JobExecution job = job("file-1", file);
+        tracker.beforeJob(job);
+
+        // Two of four 250-byte partitions started; the other two are still queued
+        StepExecution p0 = partition(job, 0, 0, 250);
+        StepExecution p1 = partition(job, 1, 250, 500);
+        tracker.beforeStep(p0);
+        tracker.beforeStep(p1);
+
+        Thread.sleep(10);
+        chunk(p0, 100, 50);
+        chunk(p1, 100, 300);
+
+        JobProgress progress = tracker.progress("file-1").orElseThrow();
+        assertThat(progress.status()).isEqualTo("STARTED");
+        assertThat(progress.read()).isEqualTo(200);
+        assertThat(progress.partitions()).extracting(PartitionProgress::percent).containsExactly(20.0, 20.0);
+        assertThat(progress.percent()).isEqualTo(10.0);
+        assertThat(progress.rowsPerSecond()).isPositive();
+        assertThat(progress.etaSeconds()).isNotNull().isPositive();
+        assertThat(tracker.progress("unknown")).isEmpty();
+
+        p0.setStatus(BatchStatus.COMPLETED);
+        tracker.afterStep(p0);
+        PartitionProgress done = tracker.progress("file-1").orElseThrow().partitions().get(0);
+        assertThat(done.percent()).isEqualTo(100.0);
+        assertThat(done.etaSeconds()).isZero();
+        assertThat(done.rowsPerSecond()).isZero();
+    }
+
+    @Test
+    void tracksGzipSpansAgainstTheUncompressedSize() throws Exception {
+        // Two 500-byte members: offsets and spans are uncompressed, the file is much smaller
+        Path file = tempDir.resolve("in.csv.gz");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(gzip(new byte[500]));
+            out.write(gzip(new byte[500]));
+        }
+        assertThat(Files.size(file)).isLessThan(1000);
+        JobExecution job = job("file-gz", file);
+        tracker.beforeJob(job);
+
+        StepExecution p0 = gzipPartition(job, 0, 0, 500);
+        StepExecution p1 = gzipPartition(job, 1, 500, 1000);
+        tracker.beforeStep(p0);
+        tracker.beforeStep(p1);
+        Thread.sleep(10);
+        chunk(p0, 10, 250);
+        chunk(p1, 10, 750);
+
+        JobProgress progress = tracker.progress("file-gz").orElseThrow();
+        assertThat(progress.partitions()).extracting(PartitionProgress::percent).containsExactly(50.0, 50.0);
+        assertThat(progress.partitions()).extracting(PartitionProgress::etaSeconds).doesNotContainNull();
+        assertThat(progress.percent()).isEqualTo(50.0);
+        assertThat(progress.etaSeconds()).isNotNull();
+    }
+
+    @Test
+    void workUnitPartitionsReportTheSharedQueuesProgress() throws Exception {
+        Path file = Files.write(tempDir.resolve("in.csv"), new byte[1000]);
+        JobExecution job = job("file-units", file);
+        tracker.beforeJob(job);
+
+        StepExecution p0 = unitPartition(job, 0);
+        StepExecution p1 = unitPartition(job, 1);
+        tracker.beforeStep(p0);
+        tracker.beforeStep(p1);
+        Thread.sleep(10);
+        unitChunk(p0, 10, 200);
+        unitChunk(p1, 10, 300);
+
+        JobProgress progress = tracker.progress("file-units").orElseThrow();
+        assertThat(progress.percent()).isEqualTo(50.0);
+        assertThat(progress.etaSeconds()).isNotNull();
+        assertThat(progress.partitions()).allSatisfy(p -> {
+            assertThat(p.percent()).isEqualTo(50.0);
+            assertThat(p.etaSeconds()).isEqualTo(progress.etaSeconds());
+        });
+
+        p0.setStatus(BatchStatus.COMPLETED);
+        tracker.afterStep(p0);
+        PartitionProgress done = tracker.progress("file-units").orElseThrow().partitions().get(0);
+        assertThat(done.percent()).isEqualTo(100.0);
+        assertThat(done.etaSeconds()).isZero();
+        assertThat(tracker.progress("file-units").orElseThrow().percent()).isEqualTo(50.0);
+    }
+
+    @Test
+    void keepsOnlyTheConfiguredNumberOfFinishedJobs() throws Exception {
+        Path file = Files.write(tempDir.resolve("in.csv"), new byte[10]);
+        JobExecution first = job("file-1", file);
+        JobExecution second = job("file-2", file);
+
+        tracker.beforeJob(first);
+        tracker.beforeJob(second);
+        first.setStatus(BatchStatus.COMPLETED);
+        tracker.afterJob(first);
+        assertThat(tracker.progress("file-1")).get()
+            .satisfies(p -> assertThat(p.percent()).isEqualTo(100.0));
+
+        second.setStatus(BatchStatus.FAILED);
+        tracker.afterJob(second);
+        assertThat(tracker.progress("file-1")).isEmpty();
+        assertThat(tracker.progress("file-2")).get()
+            .satisfies(p -> assertThat(p.status()).isEqualTo("FAILED"));
+    }
+
+    private void chunk(StepExecution step, long readCount, long offset) {
+        step.setReadCount(readCount);
+        step.setWriteCount(readCount);
+        step.getExecutionContext().putLong(CsvItemReader.OFFSET_KEY, offset);
+        tracker.afterChunk(new ChunkContext(new StepContext(step)));
+    }
+
+    private void unitChunk(StepExecution step, long readCount, long unitBytes) {
+        step.setReadCount(readCount);
+        step.setWriteCount(readCount);
+        step.getExecutionContext().putLong(CsvItemReader.UNIT_BYTES_KEY, unitBytes);
+        tracker.afterChunk(new ChunkContext(new StepContext(step)));
+    }
+
+    private static JobExecution job(String fileId, Path file) {
+        JobExecution job = MetaDataInstanceFactory.createJobExecution("csvImportJob", 1L, 1L,
+            new JobParametersBuilder()
+                .addString("fileId", fileId)
+                .addString("filePath", file.toString())
+                .toJobParameters());
+        job.setStatus(BatchStatus.STARTED);
+        return job;
+    }
+
+    private static StepExecution partition(JobExecution job, int index, long startByte, long endByte) {
+        StepExecution step = job.createStepExecution("workerStep:partition" + index);
+        step.setStatus(BatchStatus.STARTED);
+        step.getExecutionContext().putInt("partitionIndex", index);
+        step.getExecutionContext().putLong("startByte", startByte);
+        step.getExecutionContext().putLong("endByte", endByte);
+        return step;
+    }
+
+    private static StepExecution gzipPartition(JobExecution job, int index, long start, long end) {
+        StepExecution step = job.createStepExecution("workerStep:partition-" + index);
+        step.setStatus(BatchStatus.STARTED);
+        step.getExecutionContext().putInt("partitionIndex", index);
+        step.getExecutionContext().putLong(CsvPartitioner.GZIP_MEMBER_KEY, 0);
+        step.getExecutionContext().putLong(CsvPartitioner.GZIP_START_KEY, start);
+        step.getExecutionContext().putLong(CsvPartitioner.GZIP_END_KEY, end);
+        return step;
+    }
+
+    private static StepExecution unitPartition(JobExecution job, int index) {
+        StepExecution step = job.createStepExecution("workerStep:partition-" + index);
+        step.setStatus(BatchStatus.STARTED);
+        step.getExecutionContext().putInt("partitionIndex", index);
+        step.getExecutionContext().putLong(CsvPartitioner.WORK_UNIT_INSTANCE_KEY, 1L);
+        return step;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,161 @@
+package com.ing.kallitech.kafka.batch.remote;
+
+import com.ing.kallitech.kafka.batch.config.RemotePartitioningConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Manager and two workers (two consumers of one group, as two pods would be) over an
+ * embedded broker, sharing one H2 JobRepository like the pods share the database.
+ */
+@EmbeddedKafka(partitions = 4, topics = KafkaPartitionHandlerTest.TOPIC)
+class KafkaPartitionHandlerTest {
+
+    static final String TOPIC = "partition-requests";
+
+    private final List<ConcurrentMessageListenerContainer<String, PartitionRequest>> pods = new ArrayList<>();
+    private final List<ThreadPoolTaskExecutor> executors = new ArrayList<>();
+
+    @AfterEach
+    void stopWorkers() {
+        pods.forEach(ConcurrentMessageListenerContainer::stop);
+        executors.forEach(ThreadPoolTaskExecutor::shutdown);
+    }
+
+    @Test
+    void workersExecuteEveryPartitionAndTheManagerAggregatesTheirResults(EmbeddedKafkaBroker broker) throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("org/springframework/batch/core/schema-h2.sql"))
+            .execute(dataSource);
+        var txManager = new DataSourceTransactionManager(dataSource);
+        JobRepository jobRepository = jobRepository(dataSource, txManager);
+        JobExplorer jobExplorer = jobExplorer(dataSource, txManager);
+
+        Set<String> executedOn = ConcurrentHashMap.newKeySet();
+        Set<Integer> executedPartitions = ConcurrentHashMap.newKeySet();
+        Step workerStep = new StepBuilder("workerStep", jobRepository)
+            .tasklet((contribution, chunkContext) -> {
+                StepExecution step = chunkContext.getStepContext().getStepExecution();
+                executedPartitions.add(step.getExecutionContext().getInt("partitionIndex"));
+                executedOn.add(Thread.currentThread().getName());
+                contribution.incrementWriteCount(10);
+                return RepeatStatus.FINISHED;
+            }, txManager)
+            .build();
+
+        KafkaProperties kafkaProperties = new KafkaProperties();
+        kafkaProperties.setBootstrapServers(List.of(broker.getBrokersAsString()));
+        kafkaProperties.getConsumer().setGroupId("partition-workers");
+        kafkaProperties.getConsumer().setAutoOffsetReset("earliest");
+        var noSsl = new DefaultListableBeanFactory().getBeanProvider(SslBundles.class);
+        RemotePartitioningConfig config = new RemotePartitioningConfig();
+        ReflectionTestUtils.setField(config, "topic", TOPIC);
+
+        var registry = new DefaultListableBeanFactory().getBeanProvider(KafkaListenerEndpointRegistry.class);
+        for (int pod = 0; pod < 2; pod++) {
+            ThreadPoolTaskExecutor executor = config.partitionWorkerExecutor(2);
+            executors.add(executor);
+            RemotePartitionWorker worker = new RemotePartitionWorker(
+                jobExplorer, workerStep, executor, registry, Duration.ofMinutes(10));
+            var container = config.partitionRequestListenerContainerFactory(kafkaProperties, noSsl)
+                .createContainer(TOPIC);
+            container.setupMessageListener((AcknowledgingMessageListener<String, PartitionRequest>)
+                (record, ack) -> worker.onRequest(record.value(), ack));
+            container.start();
+            pods.add(container);
+        }
+        for (var container : pods) {
+            ContainerTestUtils.waitForAssignment(container, 2);
+        }
+
+        KafkaPartitionHandler handler = config.remotePartitionHandler(
+            config.partitionRequestKafkaTemplate(kafkaProperties, noSsl), jobExplorer,
+            4, Duration.ofMillis(100), Duration.ofMinutes(1), Duration.ofMinutes(10));
+        Step managerStep = new StepBuilder("partitionedStep", jobRepository)
+            .partitioner("workerStep", gridSize -> {
+                Map<String, ExecutionContext> partitions = new HashMap<>();
+                for (int i = 0; i < gridSize; i++) {
+                    ExecutionContext ctx = new ExecutionContext();
+                    ctx.putInt("partitionIndex", i);
+                    partitions.put("partition" + i, ctx);
+                }
+                return partitions;
+            })
+            .partitionHandler(handler)
+            .build();
+        Job job = new JobBuilder("csvImportJob", jobRepository).start(managerStep).build();
+
+        var launcher = new TaskExecutorJobLauncher();
+        launcher.setJobRepository(jobRepository);
+        launcher.afterPropertiesSet();
+        JobExecution execution = launcher.run(job, new JobParametersBuilder()
+            .addString("fileId", "remote-1").toJobParameters());
+
+        assertThat(execution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(executedPartitions).containsExactlyInAnyOrder(0, 1, 2, 3);
+        assertThat(executedOn).noneMatch(name -> name.equals(Thread.currentThread().getName()));
+        StepExecution manager = execution.getStepExecutions().stream()
+            .filter(s -> s.getStepName().equals("partitionedStep")).findFirst().orElseThrow();
+        assertThat(manager.getWriteCount()).isEqualTo(40);
+    }
+
+    private static JobRepository jobRepository(DriverManagerDataSource dataSource,
+                                               DataSourceTransactionManager txManager) throws Exception {
+        var factory = new JobRepositoryFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setTransactionManager(txManager);
+        factory.afterPropertiesSet();
+        return factory.getObject();
+    }
+
+    private static JobExplorer jobExplorer(DriverManagerDataSource dataSource,
+                                           DataSourceTransactionManager txManager) throws Exception {
+        var factory = new JobExplorerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setTransactionManager(txManager);
+        factory.afterPropertiesSet();
+        return factory.getObject();
+    }
+}
@@ -0,0 +1,115 @@
+package com.ing.kallitech.kafka.batch.remote;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RemotePartitionWorkerTest {
+
+    private static final Duration STALE_AFTER = Duration.ofMinutes(10);
+
+    private final JobExplorer jobExplorer = mock(JobExplorer.class);
+    private final Step workerStep = mock(Step.class);
+    private final RecordingAck ack = new RecordingAck();
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void startedPartitionIsReExecutedOnlyOnceItsLeaseIsStale() throws Exception {
+        RemotePartitionWorker worker = worker(1);
+
+        StepExecution live = stepExecution(1L, BatchStatus.STARTED, LocalDateTime.now().minusMinutes(1));
+        worker.onRequest(new PartitionRequest(1L, 1L, "workerStep"), ack);
+        assertThat(ack.events).containsExactly("ack");
+        verify(workerStep, never()).execute(live);
+
+        StepExecution dead = stepExecution(2L, BatchStatus.STARTED, LocalDateTime.now().minusMinutes(30));
+        worker.onRequest(new PartitionRequest(1L, 2L, "workerStep"), ack);
+        verify(workerStep, timeout(5_000)).execute(dead);
+        assertThat(ack.events).containsExactly("ack", "ack");
+    }
+
+    @Test
+    void busyWorkerRewindsTheRequestAndPausesUntilAPartitionFinishes() throws Exception {
+        RemotePartitionWorker worker = worker(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(workerStep).execute(any());
+
+        stepExecution(1L, BatchStatus.STARTING, LocalDateTime.now());
+        stepExecution(2L, BatchStatus.STARTING, LocalDateTime.now());
+        worker.onRequest(new PartitionRequest(1L, 1L, "workerStep"), ack);
+        assertThat(worker.isPaused()).isTrue();
+
+        worker.onRequest(new PartitionRequest(1L, 2L, "workerStep"), ack);   // delivered before the pause applied
+        assertThat(ack.events).containsExactly("ack", "nack");
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (worker.isPaused() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(worker.isPaused()).isFalse();
+    }
+
+    private RemotePartitionWorker worker(int threads) {
+        when(workerStep.getName()).thenReturn("workerStep");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads);
+        executor.initialize();
+        return new RemotePartitionWorker(jobExplorer, workerStep, executor,
+            new DefaultListableBeanFactory().getBeanProvider(KafkaListenerEndpointRegistry.class), STALE_AFTER);
+    }
+
+    private StepExecution stepExecution(long id, BatchStatus status, LocalDateTime lastUpdated) {
+        StepExecution execution = new StepExecution("workerStep:partition" + id,
+            new JobExecution(1L, new JobParameters()), id);
+        execution.setStatus(status);
+        execution.setLastUpdated(lastUpdated);
+        when(jobExplorer.getStepExecution(1L, id)).thenReturn(execution);
+        return execution;
+    }
+
+    private static final class RecordingAck implements Acknowledgment {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void acknowledge() {
+            events.add("ack");
+        }
+
+        @Override
+        public void nack(Duration sleep) {
+            events.add("nack");
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.ing.kallitech.kafka.batch.repository;
+
+import com.ing.kallitech.kafka.batch.repository.RecordStreamRepository.RecordRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Keyset paging against H2 in Oracle mode with the real schema.sql, so the
+ * FETCH FIRST syntax and the batch_records indexes are the production ones.
+ */
+class RecordStreamRepositoryTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private RecordStreamRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=Oracle", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new RecordStreamRepository(jdbcTemplate, 4);
+
+        // 2 jobs x 2 partitions x 5 rows, interleaved so ids of one partition are not contiguous
+        for (int i = 0; i < 5; i++) {
+            for (String job : List.of("1", "2")) {
+                for (int p = 0; p < 2; p++) {
+                    jdbcTemplate.update(
+                        "INSERT INTO batch_records (external_id, name, job_id, partition_idx, record_hash) VALUES (?, ?, ?, ?, ?)",
+                        "EXT-" + job + "-" + p + "-" + i, "Name", job, p, job + p + i);
+                }
+            }
+        }
+        jdbcTemplate.update("INSERT INTO batch_records (external_id, name, record_hash_bin) VALUES ('EXT-BIN', 'Bin', X'0aff')");
+    }
+
+    @Test
+    void pagesThroughAPartitionInIdOrderWithoutGapsOrRepeats() {
+        List<RecordRow> all = drain("1", 1, 3);
+
+        assertThat(all).hasSize(5);
+        assertThat(all).extracting(RecordRow::externalId)
+            .containsExactly("EXT-1-1-0", "EXT-1-1-1", "EXT-1-1-2", "EXT-1-1-3", "EXT-1-1-4");
+        assertThat(all).extracting(RecordRow::id).isSorted();
+    }
+
+    @Test
+    void filtersByJobAndCapsThePageSize() {
+        assertThat(repository.page("2", null, 0, 100)).hasSize(4);   // max-page-size
+        assertThat(drain("2", null, 100)).hasSize(10)
+            .allSatisfy(r -> assertThat(r.jobId()).isEqualTo("2"));
+        assertThat(drain(null, null, 7)).hasSize(21);
+    }
+
+    @Test
+    void jobAndPartitionPagesEachHaveAnIndexInIdOrder() {
+        assertThat(plan("job_id = '1' AND id > 0")).containsIgnoringCase("IDX_BATCH_RECORDS_JOB_PAGE");
+        assertThat(plan("job_id = '1' AND partition_idx = 1 AND id > 0")).containsIgnoringCase("IDX_BATCH_RECORDS_JOB_ID");
+    }
+
+    @Test
+    void rendersBinaryHashesAsHex() {
+        RecordRow bin = drain(null, null, 100).get(20);
+
+        assertThat(bin.recordHash()).isEqualTo("0aff");
+        assertThat(bin.partitionIndex()).isNull();
+    }
+
+    private String plan(String where) {
+        return jdbcTemplate.queryForObject(
+            "EXPLAIN SELECT id FROM batch_records WHERE " + where + " ORDER BY id FETCH FIRST 4 ROWS ONLY", String.class);
+    }
+
+    private List<RecordRow> drain(String jobId, Integer partition, int pageSize) {
+        List<RecordRow> all = new ArrayList<>();
+        long cursor = 0;
+        while (true) {
+            List<RecordRow> page = repository.page(jobId, partition, cursor, pageSize);
+            if (page.isEmpty()) {
+                return all;
+            }
+            all.addAll(page);
+            cursor = page.get(page.size() - 1).id();
+        }
+    }
+}
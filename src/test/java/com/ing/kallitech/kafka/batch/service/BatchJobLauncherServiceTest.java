@@ -0,0 +1,84 @@
+package com.ing.kallitech.kafka.batch.service;
+
+import com.ing.kallitech.kafka.batch.admission.JobAdmissionController;
+import com.ing.kallitech.kafka.batch.idempotency.IdempotencyService;
+import com.ing.kallitech.kafka.batch.model.KafkaBatchMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class BatchJobLauncherServiceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private JdbcTemplate jdbcTemplate;
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=Oracle", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        idempotencyService = new IdempotencyService(jdbcTemplate, registry, 100, Duration.ofHours(1));
+    }
+
+    @Test
+    void recordsTheFileAsProcessingAndHoldsItsCostUntilAfterJob() {
+        // An async launcher returns the stored, not yet started execution
+        BatchJobLauncherService service = service((job, params) -> new JobExecution(1L, params), 1);
+
+        JobExecution execution = service.tryLaunch(message("f1")).orElseThrow();
+        assertThat(status("f1")).isEqualTo("PROCESSING");
+        assertThat(execution.getJobParameters().getLong(JobAdmissionController.COST_PARAMETER)).isEqualTo(1);
+        assertThat(service.hasCapacity()).isFalse();
+        assertThat(service.tryLaunch(message("f2"))).isEmpty();
+
+        service.release(execution);   // JobCompletionListener.afterJob
+        assertThat(service.hasCapacity()).isTrue();
+    }
+
+    @Test
+    void releasesTheCostWhenTheLaunchExecutorRejectsTheJob() {
+        BatchJobLauncherService service = service((job, params) -> {
+            JobExecution rejected = new JobExecution(1L, params);
+            rejected.upgradeStatus(BatchStatus.FAILED);
+            rejected.setExitStatus(ExitStatus.FAILED.addExitDescription("queue full"));
+            return rejected;
+        }, 1);
+
+        assertThatThrownBy(() -> service.tryLaunch(message("f1"))).hasMessageContaining("f1");
+        assertThat(status("f1")).isEqualTo("FAILED");
+        assertThat(service.hasCapacity()).isTrue();
+        assertThat(registry.get("batch.trigger.launch_failed").counter().count()).isEqualTo(1);
+    }
+
+    private BatchJobLauncherService service(JobLauncher launcher, int maxConcurrentJobs) {
+        return new BatchJobLauncherService(launcher, Optional.of(mock(Job.class)), idempotencyService, registry,
+            new JobAdmissionController(16, 2, 1, maxConcurrentJobs, 1 << 29, 100, registry));
+    }
+
+    private String status(String fileId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM job_file_log WHERE file_id = ?", String.class, fileId);
+    }
+
+    private static KafkaBatchMessage message(String fileId) {
+        return new KafkaBatchMessage(fileId, "/data/" + fileId + ".csv", 0, ",", "test");
+    }
+}
@@ -0,0 +1,92 @@
+package com.ing.kallitech.kafka.batch.service;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChunkMetricsListenerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ChunkMetricsListener listener = new ChunkMetricsListener(registry);
+
+    @Test
+    void splitsChunkTimeIntoPhasesTaggedByStepAndPartition() throws Exception {
+        StepExecution step = workerStep(3);
+        ChunkContext context = new ChunkContext(new StepContext(step));
+        RecordDTO item = new RecordDTO();
+
+        listener.beforeStep(step);
+        listener.beforeChunk(context);
+        listener.beforeRead();
+        Thread.sleep(20);
+        listener.afterRead(item);
+        listener.beforeRead();              // end of input: no afterRead
+        listener.beforeProcess(item);
+        listener.afterProcess(item, item);
+        listener.beforeWrite(new Chunk<>(List.of(item)));
+        Thread.sleep(30);
+        listener.afterWrite(new Chunk<>(List.of(item)));
+        listener.afterChunk(context);
+
+        Timer chunk = registry.get("batch.chunk.duration").tag("step", "workerStep").tag("partition", "3").timer();
+        Timer read = phase("read");
+        Timer write = phase("write");
+
+        assertThat(chunk.count()).isEqualTo(1);
+        assertThat(read.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(20);
+        assertThat(write.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(30);
+        assertThat(chunk.totalTime(TimeUnit.MILLISECONDS))
+            .isGreaterThanOrEqualTo(read.totalTime(TimeUnit.MILLISECONDS) + write.totalTime(TimeUnit.MILLISECONDS));
+        assertThat(registry.get("batch.chunk.completed").tag("partition", "3").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void reusesMetersAcrossChunksAndRuns() {
+        for (int run = 0; run < 2; run++) {
+            StepExecution step = workerStep(0);
+            ChunkContext context = new ChunkContext(new StepContext(step));
+            listener.beforeStep(step);
+            for (int i = 0; i < 5; i++) {
+                listener.beforeChunk(context);
+                listener.afterChunk(context);
+            }
+            listener.afterStep(step);
+        }
+
+        assertThat(registry.find("batch.chunk.duration").timers()).hasSize(1);
+        assertThat(registry.get("batch.chunk.duration").timer().count()).isEqualTo(10);
+        assertThat(registry.find("batch.chunk.phase.duration").timers()).hasSize(3);
+    }
+
+    @Test
+    void partitionTagComesFromTheIndexOrThePartitionerStepName() {
+        assertThat(ChunkMetricsListener.partitionTag("workerStep:partition-3", 3)).isEqualTo("3");
+        assertThat(ChunkMetricsListener.partitionTag("workerStep:partition-12", -1)).isEqualTo("12");
+        assertThat(ChunkMetricsListener.partitionTag("workerStep:partition7", -1)).isEqualTo("7");
+        assertThat(ChunkMetricsListener.partitionTag("workerStep", -1)).isEqualTo("none");
+        assertThat(ChunkMetricsListener.partitionTag("workerStep:partition-x", -1)).isEqualTo("none");
+    }
+
+    private Timer phase(String phase) {
+        return registry.get("batch.chunk.phase.duration").tag("partition", "3").tag("phase", phase).timer();
+    }
+
+    private static StepExecution workerStep(int partitionIndex) {
+        JobExecution job = MetaDataInstanceFactory.createJobExecution();
+        StepExecution step = new StepExecution("workerStep:partition-" + partitionIndex, job);
+        step.getExecutionContext().putInt("partitionIndex", partitionIndex);
+        return step;
+    }
+}
@@ -0,0 +1,212 @@
+package com.ing.kallitech.kafka.batch.service;
+
+import com.ing.kallitech.kafka.batch.dedup.RecordHashFilter;
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs one reader + processor per partition concurrently over the same file,
+ * the way TaskExecutorPartitionHandler does with step-scoped beans.
+ */
+class CsvItemReaderConcurrencyTest {
+
+    private static final int PARTITIONS = 4;
+    private static final int ROWS = 50_000;
+    private static final RecordHasher HASHER = new RecordHasher("sha256-hex");
+    private static final RecordHashFilter NO_FILTER =
+        new RecordHashFilter(null, new SimpleMeterRegistry(), HASHER, false, 1, 0.01, "");
+
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentPartitionsReadDisjointRangesCoveringTheWholeFile() throws Exception {
+        Path file = writeCsv(ROWS);
+        List<ExecutionContext> partitions = partition(file, PARTITIONS);
+        assertThat(partitions).hasSize(PARTITIONS);
+
+        pool = Executors.newFixedThreadPool(PARTITIONS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<RecordDTO>>> results = new ArrayList<>();
+        for (ExecutionContext ctx : partitions) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return readPartition(ctx);
+            }));
+        }
+        start.countDown();
+
+        Set<String> seen = new HashSet<>();
+        int total = 0;
+        for (int i = 0; i < results.size(); i++) {
+            List<RecordDTO> records = results.get(i).get();
+            assertThat(records).isNotEmpty();
+            for (RecordDTO record : records) {
+                assertThat(record.getPartitionIndex()).isEqualTo(i);
+                assertThat(seen.add(record.getExternalId()))
+                    .as("record %s read by more than one partition", record.getExternalId())
+                    .isTrue();
+                total++;
+            }
+        }
+        assertThat(total).isEqualTo(ROWS);
+    }
+
+    @Test
+    void restartResumesAtTheCheckpointOfTheLastCommittedChunk() throws Exception {
+        Path file = writeCsv(ROWS);
+        ExecutionContext partition = partition(file, 1).get(0);
+
+        for (String engine : List.of(CsvItemReader.ENGINE_MMAP, CsvItemReader.ENGINE_FLATFILE)) {
+            for (boolean pipelined : engine.equals(CsvItemReader.ENGINE_MMAP) ? List.of(false, true) : List.of(false)) {
+                ExecutionContext stepCtx = new ExecutionContext(partition);
+                CsvItemReader first = reader(stepCtx, engine, pipelined);
+                first.open(stepCtx);
+                for (int i = 0; i < 1234; i++) {
+                    first.read();
+                }
+                first.update(stepCtx);            // chunk committed
+                for (int i = 0; i < 100; i++) {
+                    first.read();                 // chunk rolled back by the failure
+                }
+                first.close();
+
+                CsvItemReader restarted = reader(stepCtx, engine, pipelined);
+                restarted.open(stepCtx);
+                List<String> rest = new ArrayList<>();
+                RecordDTO record;
+                while ((record = restarted.read()) != null) {
+                    rest.add(record.getExternalId());
+                }
+                restarted.close();
+
+                assertThat(rest).as("%s pipelined=%s", engine, pipelined).hasSize(ROWS - 1234);
+                assertThat(rest.get(0)).isEqualTo("EXT-1234");
+                if (engine.equals(CsvItemReader.ENGINE_MMAP)) {
+                    assertThat(stepCtx.getLong(CsvItemReader.LINE_KEY)).isEqualTo(1234);
+                }
+            }
+        }
+    }
+
+    private CsvItemReader reader(ExecutionContext ctx, String engine, boolean pipelined) {
+        return new CsvItemReader(MetaDataInstanceFactory.createStepExecution(ctx), engine, HASHER, pipelined, 100);
+    }
+
+    /** Wall-clock ratio, so it only runs with -Pbenchmark: shared CI runners are too noisy. */
+    @Test
+    @Tag("perf")
+    void throughputScalesWithPartitionThreads() throws Exception {
+        assumeTrue(Runtime.getRuntime().availableProcessors() >= PARTITIONS,
+            "needs one core per partition to measure scaling");
+
+        Path file = writeCsv(ROWS * 4);
+        List<ExecutionContext> partitions = partition(file, PARTITIONS);
+        pool = Executors.newFixedThreadPool(PARTITIONS);
+
+        // Warm up the JIT and the page cache before timing
+        for (int i = 0; i < 3; i++) {
+            readAllSerially(partitions);
+            readAllConcurrently(partitions);
+        }
+
+        long serialNanos = readAllSerially(partitions);
+        long parallelNanos = readAllConcurrently(partitions);
+
+        // N threads over N disjoint ranges: allow half of the ideal N× speed-up for scheduling noise
+        assertThat((double) serialNanos / parallelNanos).isGreaterThan(PARTITIONS / 2.0);
+    }
+
+    private long readAllSerially(List<ExecutionContext> partitions) throws Exception {
+        long start = System.nanoTime();
+        for (ExecutionContext ctx : partitions) {
+            readPartition(ctx);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long readAllConcurrently(List<ExecutionContext> partitions) throws Exception {
+        long start = System.nanoTime();
+        List<Future<List<RecordDTO>>> futures = new ArrayList<>();
+        for (ExecutionContext ctx : partitions) {
+            futures.add(pool.submit(() -> readPartition(ctx)));
+        }
+        for (Future<List<RecordDTO>> future : futures) {
+            future.get();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private List<RecordDTO> readPartition(ExecutionContext ctx) throws Exception {
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution(ctx);
+        CsvItemReader reader = new CsvItemReader(stepExecution, CsvItemReader.ENGINE_MMAP, HASHER, false, 0);
+        CsvItemProcessor processor = new CsvItemProcessor(stepExecution, HASHER, NO_FILTER);
+
+        List<RecordDTO> records = new ArrayList<>();
+        reader.open(new ExecutionContext());
+        try {
+            RecordDTO record;
+            while ((record = reader.read()) != null) {
+                records.add(processor.process(record));
+            }
+        } finally {
+            reader.close();
+        }
+        return records;
+    }
+
+    private List<ExecutionContext> partition(Path file, int gridSize) {
+        StepExecution managerStep = MetaDataInstanceFactory.createStepExecution(
+            new JobParametersBuilder().addString("filePath", file.toString()).toJobParameters());
+        StepSynchronizationManager.register(managerStep);
+        try {
+            return new ArrayList<>(new CsvPartitioner(CsvPartitioner.MODE_BYTES).partition(gridSize).values());
+        } finally {
+            StepSynchronizationManager.close();
+        }
+    }
+
+    private Path writeCsv(int rows) throws Exception {
+        Path file = tempDir.resolve("records-" + rows + ".csv");
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("externalId,name,value,category,eventTs\n");
+            for (int i = 0; i < rows; i++) {
+                out.write("EXT-" + i + ",Name " + i + "," + (i * 3.14) + ",CAT" + (i % 5) + ",2024-01-01T10:00:00Z\n");
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,233 @@
+package com.ing.kallitech.kafka.batch.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.TaskExecutorJobLauncher;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvPartitionerTest {
+
+    private static final long MB = 1 << 20;
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger threads = new AtomicInteger(8);
+    private final AtomicInteger jobs = new AtomicInteger(1);
+
+    private CsvPartitioner dynamic(int minGrid) {
+        return new CsvPartitioner(CsvPartitioner.MODE_BYTES, true, minGrid, 64 * MB, 500_000, 2,
+            threads::get, jobs::get, null, 1, 1, null);
+    }
+
+    @Test
+    void byteModeCutsTheDataSectionIntoContiguousLineAlignedRanges() throws Exception {
+        Path file = writeCsv("records.csv", 1_000);
+        byte[] bytes = Files.readAllBytes(file);
+        long headerEnd = "externalId,name,value,category,eventTs\n".length();
+
+        Map<String, ExecutionContext> partitions = partition(new CsvPartitioner(CsvPartitioner.MODE_BYTES), file, 4);
+
+        assertThat(partitions).containsOnlyKeys("partition-0", "partition-1", "partition-2", "partition-3");
+        long expectedStart = headerEnd;
+        for (int i = 0; i < 4; i++) {
+            ExecutionContext ctx = partitions.get("partition-" + i);
+            assertThat(ctx.getInt("partitionIndex")).isEqualTo(i);
+            assertThat(ctx.getString("filePath")).isEqualTo(file.toString());
+            assertThat(ctx.getString("delimiter")).isEqualTo(",");
+            assertThat(ctx.getLong("startByte")).isEqualTo(expectedStart);
+            assertThat(bytes[(int) ctx.getLong("startByte") - 1]).isEqualTo((byte) '\n');
+            assertThat(ctx.containsKey("startLine")).isFalse();
+            expectedStart = ctx.getLong("endByte");
+        }
+        assertThat(expectedStart).isEqualTo(bytes.length);
+    }
+
+    @Test
+    void smallFileGetsOnePartition() {
+        assertThat(dynamic(4).gridSize(10_000, 5, 20)).isEqualTo(1);
+        assertThat(dynamic(4).gridSize(0, -1, 20)).isEqualTo(1);
+    }
+
+    @Test
+    void gridFollowsDataVolumeUpToTheThreadShare() {
+        CsvPartitioner partitioner = dynamic(1);
+
+        assertThat(partitioner.gridSize(200 * MB, -1, 20)).isEqualTo(4);
+        assertThat(partitioner.gridSize(10 * MB, 2_000_000, 20)).isEqualTo(4);
+        // 8 threads x 2 partitions per thread
+        assertThat(partitioner.gridSize(50_000 * MB, -1, 20)).isEqualTo(16);
+        assertThat(partitioner.gridSize(50_000 * MB, -1, 10)).isEqualTo(10);
+    }
+
+    @Test
+    void busyPodShrinksTheGridButNotBelowTheMinimum() {
+        jobs.set(4);
+        assertThat(dynamic(1).gridSize(50_000 * MB, -1, 20)).isEqualTo(4);
+
+        jobs.set(16);
+        assertThat(dynamic(1).gridSize(50_000 * MB, -1, 20)).isEqualTo(2);
+        assertThat(dynamic(6).gridSize(50_000 * MB, -1, 20)).isEqualTo(6);
+        // the minimum never splits a file beyond its own demand
+        assertThat(dynamic(6).gridSize(130 * MB, -1, 20)).isEqualTo(3);
+    }
+
+    @Test
+    void remoteHandlerIgnoresLocalThreads() {
+        threads.set(0);
+        jobs.set(4);
+        assertThat(dynamic(1).gridSize(50_000 * MB, -1, 20)).isEqualTo(20);
+    }
+
+    @Test
+    void partitionRecordsTheChosenGridSize() throws Exception {
+        Path file = writeCsv("small.csv", 5);
+        StepExecution managerStep = managerStep(file);
+
+        Map<String, ExecutionContext> partitions = partition(dynamic(1), managerStep, 20);
+
+        assertThat(partitions).containsOnlyKeys("partition-0");
+        assertThat(partitions.get("partition-0").getLong("endByte")).isEqualTo(Files.size(file));
+        assertThat(managerStep.getExecutionContext().getInt("gridSize")).isEqualTo(1);
+    }
+
+    @Test
+    void restartAfterACrashKeepsTheFirstRunsGridWhenThePodGotBusier() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("org/springframework/batch/core/schema-h2.sql"))
+            .execute(dataSource);
+        var txManager = new DataSourceTransactionManager(dataSource);
+        var repositoryFactory = new JobRepositoryFactoryBean();
+        repositoryFactory.setDataSource(dataSource);
+        repositoryFactory.setTransactionManager(txManager);
+        repositoryFactory.afterPropertiesSet();
+        JobRepository jobRepository = repositoryFactory.getObject();
+        var explorerFactory = new JobExplorerFactoryBean();
+        explorerFactory.setDataSource(dataSource);
+        explorerFactory.setTransactionManager(txManager);
+        explorerFactory.afterPropertiesSet();
+        JobExplorer jobExplorer = explorerFactory.getObject();
+
+        // What the database holds for the manager step while its partitions run, i.e. at a pod kill
+        AtomicReference<ExecutionContext> managerContextAtCrash = new AtomicReference<>();
+        AtomicInteger run = new AtomicInteger(1);
+        Map<Integer, Long> executed = new ConcurrentHashMap<>();
+        Step workerStep = new StepBuilder("workerStep", jobRepository)
+            .tasklet((contribution, chunkContext) -> {
+                StepExecution step = chunkContext.getStepContext().getStepExecution();
+                JobExecution persisted = jobExplorer.getJobExecution(step.getJobExecutionId());
+                persisted.getStepExecutions().stream()
+                    .filter(s -> s.getStepName().equals("csvStep"))
+                    .findFirst()
+                    .ifPresent(s -> managerContextAtCrash.compareAndSet(null, new ExecutionContext(s.getExecutionContext())));
+                int partition = step.getExecutionContext().getInt("partitionIndex");
+                executed.put(partition, step.getExecutionContext().getLong("startByte"));
+                if (run.get() == 1 && partition == 3) {
+                    throw new IllegalStateException("pod killed");
+                }
+                return RepeatStatus.FINISHED;
+            }, txManager)
+            .build();
+
+        var handler = new TaskExecutorPartitionHandler();
+        handler.setStep(workerStep);
+        handler.setTaskExecutor(new SyncTaskExecutor());
+        handler.setGridSize(4);
+        CsvPartitioner partitioner = new CsvPartitioner(CsvPartitioner.MODE_BYTES, true, 1, 1024, 500_000, 2,
+            threads::get, jobs::get, null, 1, 1, jobRepository);
+        Step managerStep = new StepBuilder("csvStep", jobRepository)
+            .partitioner("workerStep", partitioner)
+            .partitionHandler(handler)
+            .build();
+        Job job = new JobBuilder("csvImportJob", jobRepository).start(managerStep).build();
+        var launcher = new TaskExecutorJobLauncher();
+        launcher.setJobRepository(jobRepository);
+        launcher.afterPropertiesSet();
+        var params = new JobParametersBuilder()
+            .addString("filePath", writeCsv("restart.csv", 1_000).toString()).toJobParameters();
+
+        jobs.set(1);    // 8 threads x 2 per thread: capped by the grid size of 4
+        JobExecution first = launcher.run(job, params);
+        assertThat(first.getStatus()).isEqualTo(BatchStatus.FAILED);
+        assertThat(executed).containsOnlyKeys(0, 1, 2, 3);
+        Map<Integer, Long> firstRanges = Map.copyOf(executed);
+
+        // The pod dies: the manager step keeps only what was saved before the partitions ran
+        StepExecution manager = first.getStepExecutions().stream()
+            .filter(s -> s.getStepName().equals("csvStep")).findFirst().orElseThrow();
+        assertThat(managerContextAtCrash.get().getInt(CsvPartitioner.GRID_SIZE_KEY)).isEqualTo(4);
+        manager.setExecutionContext(managerContextAtCrash.get());
+        jobRepository.updateExecutionContext(manager);
+
+        jobs.set(8);    // a busier pod would now choose 8 / 8 x 2 = 2 partitions
+        executed.clear();
+        run.set(2);
+        JobExecution restarted = launcher.run(job, params);
+
+        assertThat(restarted.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(executed).containsExactly(Map.entry(3, firstRanges.get(3)));
+    }
+
+    private Path writeCsv(String name, int rows) throws Exception {
+        Path file = tempDir.resolve(name);
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("externalId,name,value,category,eventTs\n");
+            for (int i = 0; i < rows; i++) {
+                out.write("EXT-" + i + ",Name " + i + ",1.0,CAT,2024-01-01T10:00:00Z\n");
+            }
+        }
+        return file;
+    }
+
+    private static StepExecution managerStep(Path file) {
+        return MetaDataInstanceFactory.createStepExecution(
+            new JobParametersBuilder().addString("filePath", file.toString()).toJobParameters());
+    }
+
+    private static Map<String, ExecutionContext> partition(CsvPartitioner partitioner, Path file, int gridSize) {
+        return partition(partitioner, managerStep(file), gridSize);
+    }
+
+    private static Map<String, ExecutionContext> partition(CsvPartitioner partitioner, StepExecution managerStep,
+                                                           int gridSize) {
+        StepSynchronizationManager.register(managerStep);
+        try {
+            return partitioner.partition(gridSize);
+        } finally {
+            StepSynchronizationManager.close();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.ing.kallitech.kafka.batch.service;
+
+import com.ing.kallitech.kafka.batch.admission.JobAdmissionController;
+import com.ing.kallitech.kafka.batch.idempotency.IdempotencyService;
+import com.ing.kallitech.kafka.batch.model.KafkaBatchMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class KafkaBatchMessageListenerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> launched = new ArrayList<>();
+    private final RecordingAck ack = new RecordingAck();
+    private JdbcTemplate jdbcTemplate;
+    private IdempotencyService idempotencyService;
+    private BatchJobLauncherService launcher;
+    private TriggerFlowControl flowControl;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=Oracle", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        idempotencyService = new IdempotencyService(jdbcTemplate, registry, 100, Duration.ofHours(1));
+    }
+
+    @Test
+    void collapsesDuplicatesSkipsCompletedFilesAndLaunchesTheRest() {
+        jdbcTemplate.update("INSERT INTO job_file_log (file_id, status) VALUES ('done', 'COMPLETED')");
+
+        listener(10).handleFileMessages(List.of(
+            record(0, "a"), record(1, "done"), record(2, "a"), record(3, null), record(4, "b"), record(5, "done")),
+            ack);
+
+        assertThat(launched).containsExactly("a", "b");
+        assertThat(ack.events).containsExactly("ack 0", "ack 4", "ack 5");
+        assertThat(registry.get("batch.trigger.duplicate").counter().count()).isEqualTo(1);
+        assertThat(registry.get("batch.trigger.collapsed").counter().count()).isEqualTo(2);
+        assertThat(registry.get("batch.trigger.invalid").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rewindsTheRestOfThePollAndPausesWhenAtMaxConcurrency() {
+        listener(1).handleFileMessages(List.of(record(0, "a"), record(1, "b"), record(2, "c")), ack);
+
+        assertThat(launched).containsExactly("a");
+        assertThat(ack.events).containsExactly("ack 0", "nack 1");
+        assertThat(flowControl.isPaused()).isTrue();
+        assertThat(registry.get("batch.trigger.paused").gauge().value()).isEqualTo(1);
+
+        // JobCompletionListener.afterJob of "a"
+        launcher.release(new JobExecution(1L, BatchJobLauncherService.jobParameters(record(0, "a").value(), 1)));
+        flowControl.resumeIfCapacity();
+        assertThat(flowControl.isPaused()).isFalse();
+    }
+
+    @Test
+    void staysPausedUntilTheRejectedLargeJobFits() {
+        KafkaBatchMessageListener listener = listener(10);
+        var running = record(0, "big", units(14));
+        listener.handleFileMessages(List.of(running), ack);
+
+        // 14 of 16 units used: a small job would fit, the rejected cost-4 trigger does not
+        listener.handleFileMessages(List.of(record(1, "large", units(4))), ack);
+        assertThat(ack.events).containsExactly("ack 0", "nack 0");
+        assertThat(flowControl.isPaused()).isTrue();
+
+        flowControl.resumeIfCapacity();
+        assertThat(flowControl.isPaused()).isTrue();
+
+        launcher.release(new JobExecution(1L, BatchJobLauncherService.jobParameters(running.value(), 14)));
+        flowControl.resumeIfCapacity();
+        assertThat(flowControl.isPaused()).isFalse();
+        assertThat(launched).containsExactly("big");
+    }
+
+    private KafkaBatchMessageListener listener(int maxConcurrentJobs) {
+        JobLauncher jobLauncher = (job, params) -> {
+            launched.add(params.getString("fileId"));
+            return new JobExecution(1L, params);
+        };
+        launcher = new BatchJobLauncherService(
+            jobLauncher, Optional.of(mock(Job.class)), idempotencyService, registry,
+            new JobAdmissionController(16, 2, 1, maxConcurrentJobs, 1 << 29, 100, registry));
+        // No listener containers registered: only the pause state is observable here
+        flowControl = new TriggerFlowControl(
+            new DefaultListableBeanFactory().getBeanProvider(KafkaListenerEndpointRegistry.class), launcher, registry);
+        return new KafkaBatchMessageListener(launcher, idempotencyService, flowControl, registry);
+    }
+
+    private static ConsumerRecord<String, KafkaBatchMessage> record(long offset, String fileId) {
+        return record(offset, fileId, 0);
+    }
+
+    private static ConsumerRecord<String, KafkaBatchMessage> record(long offset, String fileId, long recordCount) {
+        KafkaBatchMessage message = fileId == null ? null
+            : new KafkaBatchMessage(fileId, "/data/" + fileId + ".csv", recordCount, ",", "test");
+        return new ConsumerRecord<>("triggers", 0, offset, null, message);
+    }
+
+    /** Record count whose estimated size is {@code units} admission units (512 MB at 100 B/row). */
+    private static long units(int units) {
+        return units * (1L << 29) / 100;
+    }
+
+    private static final class RecordingAck implements Acknowledgment {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void acknowledge() {
+            events.add("ack");
+        }
+
+        @Override
+        public void acknowledge(int index) {
+            events.add("ack " + index);
+        }
+
+        @Override
+        public void nack(int index, Duration sleep) {
+            events.add("nack " + index);
+        }
+    }
+}
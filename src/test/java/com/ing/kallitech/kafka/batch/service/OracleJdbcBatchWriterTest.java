@@ -0,0 +1,129 @@
+package com.ing.kallitech.kafka.batch.service;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.Chunk;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the writer against H2 in Oracle mode with the real schema.sql, so the
+ * MERGE statement is checked against the same unique keys as production.
+ */
+class OracleJdbcBatchWriterTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=Oracle", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void insertModeSkipsDuplicatesOfAReplayedChunk() throws Exception {
+        OracleJdbcBatchWriter writer = writer("sha256-hex", OracleJdbcBatchWriter.WRITE_MODE_INSERT);
+
+        writer.write(chunk("sha256-hex", 0, 3));
+        Chunk<RecordDTO> replay = chunk("sha256-hex", 1, 5);   // rows 1-2 were already loaded
+        writer.write(replay);
+
+        assertThat(rowCount()).isEqualTo(5);
+        assertThat(counter("batch.records.written")).isEqualTo(5);
+        assertThat(counter("batch.records.skipped.duplicate")).isEqualTo(2);
+        assertThat(replay.getItems()).extracting(RecordDTO::getStatus).containsExactly(
+            OracleJdbcBatchWriter.STATUS_DUPLICATE, OracleJdbcBatchWriter.STATUS_DUPLICATE,
+            OracleJdbcBatchWriter.STATUS_LOADED, OracleJdbcBatchWriter.STATUS_LOADED);
+    }
+
+    @Test
+    void insertModeMergesRowsTaggedMaybeDuplicateWithoutAFailedInsert() throws Exception {
+        OracleJdbcBatchWriter writer = writer("sha256-hex", OracleJdbcBatchWriter.WRITE_MODE_INSERT);
+
+        writer.write(chunk("sha256-hex", 0, 3));
+        Chunk<RecordDTO> replay = chunk("sha256-hex", 1, 5);
+        replay.getItems().get(0).setMaybeDuplicate(true);   // loaded
+        replay.getItems().get(1).setMaybeDuplicate(true);   // loaded
+        replay.getItems().get(2).setMaybeDuplicate(true);   // false positive
+        writer.write(replay);
+
+        assertThat(rowCount()).isEqualTo(5);
+        assertThat(meterRegistry.find("batch.records.upsert_fallback").counter()).isNull();
+        assertThat(replay.getItems()).extracting(RecordDTO::getStatus).containsExactly(
+            OracleJdbcBatchWriter.STATUS_DUPLICATE, OracleJdbcBatchWriter.STATUS_DUPLICATE,
+            OracleJdbcBatchWriter.STATUS_LOADED, OracleJdbcBatchWriter.STATUS_LOADED);
+    }
+
+    @Test
+    void mergeModeWritesOnlyNewRows() throws Exception {
+        OracleJdbcBatchWriter writer = writer("sha256-hex", OracleJdbcBatchWriter.WRITE_MODE_MERGE);
+
+        writer.write(chunk("sha256-hex", 0, 4));
+        writer.write(chunk("sha256-hex", 0, 4));
+
+        assertThat(rowCount()).isEqualTo(4);
+        assertThat(counter("batch.records.written")).isEqualTo(4);
+        assertThat(counter("batch.records.skipped.duplicate")).isEqualTo(4);
+    }
+
+    @Test
+    void binaryHashModeDeduplicatesOnRecordHashBin() throws Exception {
+        OracleJdbcBatchWriter writer = writer("murmur3-128", OracleJdbcBatchWriter.WRITE_MODE_INSERT);
+
+        writer.write(chunk("murmur3-128", 0, 3));
+        writer.write(chunk("murmur3-128", 0, 6));
+
+        assertThat(rowCount()).isEqualTo(6);
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM batch_records WHERE record_hash_bin IS NOT NULL", Integer.class)).isEqualTo(6);
+        assertThat(counter("batch.records.skipped.duplicate")).isEqualTo(3);
+    }
+
+    private OracleJdbcBatchWriter writer(String hashMode, String writeMode) {
+        return new OracleJdbcBatchWriter(jdbcTemplate, meterRegistry, new RecordHasher(hashMode), writeMode);
+    }
+
+    private Chunk<RecordDTO> chunk(String hashMode, int from, int to) {
+        RecordHasher hasher = new RecordHasher(hashMode);
+        List<RecordDTO> items = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            RecordDTO r = new RecordDTO();
+            r.setExternalId("EXT-" + i);
+            r.setName("Name " + i);
+            r.setValueRec(new BigDecimal("1.2500"));
+            r.setCategory("CAT" + (i % 3));
+            r.setEventTs(Timestamp.from(Instant.parse("2024-01-01T10:00:00Z")));
+            r.setJobId("1");
+            r.setPartitionIndex(0);
+            hasher.hash(r);
+            items.add(r);
+        }
+        return new Chunk<>(items);
+    }
+
+    private int rowCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM batch_records", Integer.class);
+    }
+
+    private double counter(String name) {
+        return meterRegistry.counter(name).count();
+    }
+}
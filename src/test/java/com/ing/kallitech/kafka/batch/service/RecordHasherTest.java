@@ -0,0 +1,97 @@
+package com.ing.kallitech.kafka.batch.service;
+
+import com.ing.kallitech.kafka.batch.model.RecordDTO;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecordHasherTest {
+
+    private static final Timestamp TS = Timestamp.from(Instant.parse("2024-01-01T10:00:00.123456789Z"));
+
+    private static final List<RecordDTO> RECORDS = List.of(
+        record("EXT-1", "A", TS),
+        record("EXT-1", "A", Timestamp.from(Instant.parse("2024-01-01T10:00:00Z"))),
+        record(null, "A", TS),
+        record("EXT-1", null, TS),
+        record("EXT-1", "A", null),
+        record(null, null, null),
+        record("", "", TS),
+        record("ÄÖü-é", "Kategorie ß", TS),                    // 2-byte UTF-8
+        record("注文-42", "€ 商品", TS),                         // 3-byte UTF-8
+        record("id-😀", "𝄞 cat", TS),                          // surrogate pairs (4-byte UTF-8)
+        record("lone-\uD83D", "lone-\uDE00", TS),               // unpaired surrogates
+        record("x".repeat(300), "y".repeat(200), TS));          // outgrows the 256-byte scratch buffer
+
+    @Test
+    void hexModeMatchesTheLegacyProcessorHash() {
+        RecordHasher hasher = new RecordHasher("sha256-hex");
+        for (RecordDTO rec : RECORDS) {
+            hasher.hash(rec);
+            assertThat(rec.getRecordHash()).as(rec.getExternalId()).isEqualTo(legacyHash(rec));
+            assertThat(rec.getRecordHashBytes()).isNull();
+        }
+    }
+
+    @Test
+    void binaryModesAreDeterministicAndDistinguishFieldBoundaries() {
+        for (String mode : List.of("sha256", "murmur3-128")) {
+            RecordHasher hasher = new RecordHasher(mode);
+            int size = mode.equals("sha256") ? 32 : 16;
+
+            byte[] first = hash(hasher, record("EXT-1", "A", TS));
+            assertThat(first).as(mode).hasSize(size);
+            assertThat(hash(hasher, record("EXT-1", "A", TS))).as(mode).isEqualTo(first);
+
+            // ("a|b", "c") and ("a", "b|c") join to the same String, but not to the same length-prefixed key
+            assertThat(hash(hasher, record("a|b", "c", TS))).as(mode).isNotEqualTo(hash(hasher, record("a", "b|c", TS)));
+            assertThat(hash(hasher, record(null, "", TS))).as(mode).isEqualTo(hash(hasher, record("", "", TS)));
+            assertThat(hash(hasher, record("EXT-1", "A", null))).as(mode).isNotEqualTo(first);
+
+            long distinct = RECORDS.stream().map(r -> Arrays.toString(hash(hasher, copy(r)))).distinct().count();
+            assertThat(distinct).as(mode).isEqualTo(RECORDS.size());
+        }
+    }
+
+    @Test
+    void unknownModeIsRejected() {
+        assertThatThrownBy(() -> new RecordHasher("md5")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /** The hash CsvItemProcessor computed before RecordHasher existed. */
+    private static String legacyHash(RecordDTO rec) {
+        String key = String.join("|",
+            nullSafe(rec.getExternalId()),
+            nullSafe(rec.getCategory()),
+            rec.getEventTs() != null ? rec.getEventTs().toString() : "");
+        return DigestUtils.sha256Hex(key);
+    }
+
+    private static String nullSafe(String s) {
+        return s != null ? s : "";
+    }
+
+    private static byte[] hash(RecordHasher hasher, RecordDTO rec) {
+        hasher.hash(rec);
+        return rec.getRecordHashBytes();
+    }
+
+    private static RecordDTO copy(RecordDTO rec) {
+        return record(rec.getExternalId(), rec.getCategory(), rec.getEventTs());
+    }
+
+    private static RecordDTO record(String externalId, String category, Timestamp eventTs) {
+        RecordDTO rec = new RecordDTO();
+        rec.setExternalId(externalId);
+        rec.setCategory(category);
+        rec.setEventTs(eventTs);
+        return rec;
+    }
+}